@@ -0,0 +1,83 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Range arithmetic done for every write: {@code deriveRange} and column naming in the library, against the
+ * original string building versions kept in {@link LegacyA1}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class A1NotationBenchmark {
+
+    @Param({"1", "28", "703", "16384"})
+    public int column;
+
+    private AutoCloseable sheetsUtil;
+    private List<List<Object>> rows;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Object clientProvider = LibraryBridge.newClientProvider("bench", new NetHttpTransport(), request -> {
+        });
+        sheetsUtil = LibraryBridge.newSheetsUtil("bench", clientProvider);
+        rows = Datasets.rows(1000, 12);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        sheetsUtil.close();
+    }
+
+    @Benchmark
+    public String columnName() throws Throwable {
+        return LibraryBridge.columnName(column);
+    }
+
+    @Benchmark
+    public String legacyColumnName() {
+        return LegacyA1.getColumnName(column);
+    }
+
+    /**
+     * Scans every row for the widest one, where the legacy version only looks at the first row.
+     */
+    @Benchmark
+    public String deriveRange() throws Throwable {
+        return LibraryBridge.deriveRange(sheetsUtil, rows, "H10");
+    }
+
+    @Benchmark
+    public String legacyDeriveRange() {
+        return LegacyA1.deriveRange(rows, "H10");
+    }
+
+    @Benchmark
+    public String rangeOfSize() throws Throwable {
+        return LibraryBridge.rangeOfSize("Q1 Sales", "AB10", 1000, column);
+    }
+
+    @Benchmark
+    public Object parseRange() throws Throwable {
+        return LibraryBridge.parseRange("'Q1 Sales'!AB10:AC1200");
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.sheets.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Entry point of the benchmark jar. Accepts the usual JMH command line and, unless a result file is given
+ * with {@code -rf}/{@code -rff}, writes the results as JSON to {@code jmh-results/<timestamp>.json} so runs
+ * can be compared over time.
+ */
+public final class BenchmarkRunner {
+
+    private static final Path RESULTS_DIRECTORY = Path.of("jmh-results");
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue() && !commandLine.getResult().hasValue()) {
+            Files.createDirectories(RESULTS_DIRECTORY);
+            Path results = RESULTS_DIRECTORY.resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+            options.resultFormat(ResultFormatType.JSON).result(results.toString());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full CSV import through {@code BulkImporter} against {@link FakeSheetsServer}: parsing, conversion and
+ * chunked upload over HTTP. Each invocation imports the whole file, so the score divided into the row count
+ * gives rows per second. Run with a small {@code -Xmx} to check that memory stays flat as the file grows.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class BulkImportBenchmark {
+
+    @Param({"10000", "200000"})
+    public int rows;
+
+    @Param({"0", "20"})
+    public long latencyMillis;
+
+    private FakeSheetsServer server;
+    private ApacheHttpTransport transport;
+    private AutoCloseable sheetsUtil;
+    private Object bulkImporter;
+    private Path csvFile;
+
+    @Setup
+    public void setUp() throws Throwable {
+        server = new FakeSheetsServer(latencyMillis, 0, 1, Datasets.COLUMNS);
+        transport = new ApacheHttpTransport();
+        Object clientProvider = LibraryBridge.newClientProvider("bench", transport, server.requestInitializer());
+        LibraryBridge.configureScheduler(clientProvider, 1_000_000, 1);
+        sheetsUtil = LibraryBridge.newSheetsUtil("bench", clientProvider);
+        bulkImporter = LibraryBridge.newBulkImporter(sheetsUtil);
+        csvFile = Files.createTempFile("bulk-import", ".csv");
+        writeCsv(csvFile, rows);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        sheetsUtil.close();
+        transport.shutdown();
+        server.close();
+        Files.deleteIfExists(csvFile);
+    }
+
+    @Benchmark
+    public long importCsv() throws Throwable {
+        long written = LibraryBridge.importCsv(bulkImporter, "bench", "Bench", csvFile, "RAW");
+        if (written != rows)
+            throw new IllegalStateException("Imported " + written + " of " + rows + " rows");
+        return written;
+    }
+
+    private static void writeCsv(Path file, int rowCount) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (List<Object> row : Datasets.rows(rowCount, Datasets.COLUMNS)) {
+                for (int column = 0; column < row.size(); column++) {
+                    if (column > 0)
+                        writer.write(',');
+                    writer.write(String.valueOf(row.get(column)));
+                }
+                writer.write('\n');
+            }
+        }
+    }
+}
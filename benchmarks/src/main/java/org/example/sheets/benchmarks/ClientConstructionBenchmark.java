@@ -0,0 +1,69 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.sheets.v4.Sheets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting a Sheets client: reused from a shared provider, built by a new provider over an existing
+ * transport, and built the way every call used to, with a new trusted transport each time. Credential
+ * loading is left out since it needs a real service account key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientConstructionBenchmark {
+
+    private static final HttpRequestInitializer NO_CREDENTIALS = request -> {
+    };
+
+    private ApacheHttpTransport transport;
+    private Object sharedProvider;
+
+    @Setup
+    public void setUp() throws Throwable {
+        transport = new ApacheHttpTransport();
+        sharedProvider = LibraryBridge.newClientProvider("bench", transport, NO_CREDENTIALS);
+        LibraryBridge.getSheetService(sharedProvider);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        transport.shutdown();
+    }
+
+    @Benchmark
+    public Sheets sharedProvider() throws Throwable {
+        return LibraryBridge.getSheetService(sharedProvider);
+    }
+
+    @Benchmark
+    public Sheets newProvider() throws Throwable {
+        return LibraryBridge.getSheetService(LibraryBridge.newClientProvider("bench", transport, NO_CREDENTIALS));
+    }
+
+    @Benchmark
+    public Sheets newTransportPerCall() throws Exception {
+        return new Sheets.Builder(GoogleNetHttpTransport.newTrustedTransport(), GsonFactory.getDefaultInstance(), NO_CREDENTIALS)
+                .setApplicationName("bench")
+                .build();
+    }
+}
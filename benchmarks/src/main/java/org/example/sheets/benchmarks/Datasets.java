@@ -0,0 +1,70 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.sheets.v4.model.ValueRange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic sheet data shared by the benchmarks: a mix of text, whole and fractional numbers and
+ * booleans, repeating every four columns.
+ */
+final class Datasets {
+
+    static final int COLUMNS = 10;
+
+    private Datasets() {
+    }
+
+    static List<List<Object>> rows(int rowCount, int columnCount) {
+        List<List<Object>> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            List<Object> cells = new ArrayList<>(columnCount);
+            for (int column = 0; column < columnCount; column++)
+                cells.add(cell(row, column));
+            rows.add(cells);
+        }
+        return rows;
+    }
+
+    /**
+     * Column types of {@link #rows(int, int)} as {@code ColumnarRowBuffer.ColumnType} names.
+     */
+    static String[] columnTypes(int columnCount) {
+        String[] types = new String[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            types[column] = switch (column % 4) {
+                case 0 -> "STRING";
+                case 3 -> "BOOLEAN";
+                default -> "NUMBER";
+            };
+        }
+        return types;
+    }
+
+    static byte[] valueRangeJson(List<List<Object>> rows) throws IOException {
+        return GsonFactory.getDefaultInstance().toByteArray(new ValueRange()
+                .setRange("Bench!A1")
+                .setMajorDimension("ROWS")
+                .setValues(rows));
+    }
+
+    /**
+     * The body of a values read with the {@code values} field mask: only the grid.
+     */
+    static byte[] valuesJson(List<List<Object>> rows) throws IOException {
+        return GsonFactory.getDefaultInstance().toByteArray(new ValueRange()
+                .setValues(rows));
+    }
+
+    private static Object cell(int row, int column) {
+        return switch (column % 4) {
+            case 0 -> "item-" + row + "-" + column;
+            case 1 -> row * 31 + column;
+            case 2 -> (row * 7 + column) / 4.0;
+            default -> (row + column) % 2 == 0;
+        };
+    }
+}
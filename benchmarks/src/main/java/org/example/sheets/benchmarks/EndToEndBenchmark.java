@@ -0,0 +1,85 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full {@code GoogleSheetsUtil} calls over HTTP against {@link FakeSheetsServer}, with added server latency
+ * and a share of throttled responses that go through the scheduler's retry path. The client side quota is
+ * lifted so the token bucket does not dominate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final String WORKBOOK_ID = "bench";
+    private static final String SHEET_NAME = "Bench";
+    private static final int ROWS = 100;
+
+    @Param({"0", "20"})
+    public long latencyMillis;
+
+    @Param({"0", "10"})
+    public int throttlePercent;
+
+    private FakeSheetsServer server;
+    private ApacheHttpTransport transport;
+    private AutoCloseable sheetsUtil;
+    private List<List<Object>> rows;
+    private List<Object> ranges;
+
+    @Setup
+    public void setUp() throws Throwable {
+        server = new FakeSheetsServer(latencyMillis, throttlePercent, ROWS, Datasets.COLUMNS);
+        transport = new ApacheHttpTransport();
+        Object clientProvider = LibraryBridge.newClientProvider("bench", transport, server.requestInitializer());
+        LibraryBridge.configureScheduler(clientProvider, 1_000_000, 1);
+        sheetsUtil = LibraryBridge.newSheetsUtil("bench", clientProvider);
+        rows = Datasets.rows(ROWS, Datasets.COLUMNS);
+        ranges = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            ranges.add(LibraryBridge.sheetRange(SHEET_NAME + " " + i, "A1:J" + ROWS));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        sheetsUtil.close();
+        transport.shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    public List<List<Object>> readRange() throws Throwable {
+        return LibraryBridge.readRange(sheetsUtil, WORKBOOK_ID, SHEET_NAME, "A1:J" + ROWS);
+    }
+
+    @Benchmark
+    public Object writeToRange() throws Throwable {
+        return LibraryBridge.writeToRange(sheetsUtil, WORKBOOK_ID, SHEET_NAME, "A1", "RAW", rows);
+    }
+
+    @Benchmark
+    public Map<String, List<List<Object>>> readRanges() throws Throwable {
+        return LibraryBridge.readRanges(sheetsUtil, WORKBOOK_ID, ranges);
+    }
+}
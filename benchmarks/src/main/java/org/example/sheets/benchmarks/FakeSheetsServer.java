@@ -0,0 +1,217 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process stand-in for the Sheets and Drive endpoints used by the end-to-end benchmarks.
+ * <p>
+ * Values reads return a fixed grid, writes are drained and acknowledged, and metadata calls return a small
+ * fixed document. Every response can be delayed by a fixed latency, and a share of requests can be answered
+ * with {@code 429 Too Many Requests} to exercise the retry path. Clients are pointed at the server with
+ * {@link #requestInitializer()}, which rewrites the Google host of each request.
+ * <p>
+ * Like the real API, a request with a {@code fields} parameter gets only the fields the library asks for,
+ * and a request that accepts gzip gets a compressed body. Request and response body bytes are counted as
+ * they went over the wire, next to the JSON size of the response with and without the field mask.
+ */
+final class FakeSheetsServer implements AutoCloseable {
+
+    private static final byte[] UPDATE_RESPONSE = ("{\"spreadsheetId\":\"bench\",\"updatedRange\":\"Bench!A1\","
+            + "\"updatedRows\":0,\"updatedColumns\":0,\"updatedCells\":0}").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MASKED_UPDATE_RESPONSE = ("{\"updatedRange\":\"Bench!A1\","
+            + "\"updatedRows\":0,\"updatedColumns\":0,\"updatedCells\":0}").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BATCH_RESPONSE = "{\"spreadsheetId\":\"bench\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FILE_RESPONSE = "{\"version\":\"1\",\"modifiedTime\":\"2024-01-01T00:00:00.000Z\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] THROTTLED_RESPONSE = ("{\"error\":{\"code\":429,\"message\":\"Quota exceeded\","
+            + "\"errors\":[{\"reason\":\"rateLimitExceeded\"}]}}").getBytes(StandardCharsets.UTF_8);
+
+    static {
+        // Headers and body go out in separate writes; without TCP_NODELAY every response waits on a delayed ACK.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long latencyMillis;
+    private final int throttlePercent;
+    private final byte[] valuesResponse;
+    private final byte[] maskedValuesResponse;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong responseJsonBytes = new AtomicLong();
+    private final AtomicLong unmaskedJsonBytes = new AtomicLong();
+
+    /**
+     * @param latencyMillis   delay added before every response
+     * @param throttlePercent share of requests, 0 to 100, answered with a 429
+     * @param rows            rows of the grid returned by values reads
+     * @param columns         columns of the grid returned by values reads
+     */
+    FakeSheetsServer(long latencyMillis, int throttlePercent, int rows, int columns) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.throttlePercent = throttlePercent;
+        this.valuesResponse = Datasets.valueRangeJson(Datasets.rows(rows, columns));
+        this.maskedValuesResponse = Datasets.valuesJson(Datasets.rows(rows, columns));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getThrottled() {
+        return throttled.get();
+    }
+
+    /**
+     * Request body bytes received, compressed if the client compressed them.
+     */
+    long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    /**
+     * Response body bytes sent, compressed if the client accepted gzip.
+     */
+    long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    /**
+     * Uncompressed JSON bytes of the responses sent.
+     */
+    long getResponseJsonBytes() {
+        return responseJsonBytes.get();
+    }
+
+    /**
+     * Uncompressed JSON bytes the responses would have had without a field mask.
+     */
+    long getUnmaskedJsonBytes() {
+        return unmaskedJsonBytes.get();
+    }
+
+    /**
+     * Request initializer that sends every request to this server instead of the Google endpoints.
+     */
+    HttpRequestInitializer requestInitializer() {
+        int port = getPort();
+        return request -> request.setInterceptor(intercepted -> {
+            GenericUrl url = intercepted.getUrl();
+            url.setScheme("http");
+            url.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+            url.setPort(port);
+        });
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            try (InputStream body = exchange.getRequestBody()) {
+                requestBytes.addAndGet(body.transferTo(OutputStream.nullOutputStream()));
+            }
+            if (latencyMillis > 0)
+                Thread.sleep(latencyMillis);
+            if (throttlePercent > 0 && ThreadLocalRandom.current().nextInt(100) < throttlePercent) {
+                throttled.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "0");
+                respond(exchange, 429, THROTTLED_RESPONSE);
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            boolean masked = query != null && query.contains("fields=");
+            byte[] response = responseFor(method, path, query, masked);
+            responseJsonBytes.addAndGet(response.length);
+            unmaskedJsonBytes.addAndGet(masked ? responseFor(method, path, query, false).length : response.length);
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                response = gzip(response);
+            }
+            respond(exchange, 200, response);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Picks the response body. A masked response keeps only the fields the library's masks ask for, which
+     * is an approximation of the API's field filtering good enough for the fixed responses served here.
+     */
+    private byte[] responseFor(String method, String path, String query, boolean masked) {
+        if (path.startsWith("/drive/"))
+            return FILE_RESPONSE;
+        if (path.endsWith(":batchGet"))
+            return batchGetResponse(query, masked ? maskedValuesResponse : valuesResponse);
+        if (path.contains("/values/") && "GET".equals(method))
+            return masked ? maskedValuesResponse : valuesResponse;
+        if (path.contains("/values/"))
+            return masked ? MASKED_UPDATE_RESPONSE : UPDATE_RESPONSE;
+        return BATCH_RESPONSE;
+    }
+
+    /**
+     * Returns the values grid once for every {@code ranges} parameter of the query.
+     */
+    private static byte[] batchGetResponse(String query, byte[] valuesResponse) {
+        int ranges = 0;
+        for (int index = query != null ? query.indexOf("ranges=") : -1; index >= 0; index = query.indexOf("ranges=", index + 1))
+            ranges++;
+        StringBuilder response = new StringBuilder(ranges * valuesResponse.length + 32).append("{\"valueRanges\":[");
+        String valueRange = new String(valuesResponse, StandardCharsets.UTF_8);
+        for (int i = 0; i < ranges; i++)
+            response.append(i > 0 ? "," : "").append(valueRange);
+        return response.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        responseBytes.addAndGet(body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.sheets.benchmarks;
+
+import java.util.List;
+
+/**
+ * The range helpers {@code GoogleSheetsUtil} used before the A1 notation engine, kept as a baseline. The
+ * debug messages they built are included because they were concatenated whatever the log level.
+ */
+final class LegacyA1 {
+
+    static volatile String lastMessage;
+
+    private LegacyA1() {
+    }
+
+    static String deriveRange(List<List<Object>> values, String startingCell) {
+        lastMessage = "Deriving range with starting cell " + startingCell;
+        String range = "";
+        if (!values.isEmpty()) {
+            String endCol = getColumnName(values.get(0).size() + (startingCell.charAt(0) - 'A' + 1) - 1);
+            int endRow = Integer.parseInt(startingCell.substring(1)) + values.size() - 1;
+            range = startingCell + ":" + endCol + endRow;
+        }
+        lastMessage = "Got range " + range;
+        return range;
+    }
+
+    static String getColumnName(int column) {
+        StringBuilder columnName = new StringBuilder();
+        while (column > 0) {
+            int remainder = (column - 1) % 26;
+            columnName.insert(0, (char) ('A' + remainder));
+            column = (column - remainder) / 26;
+        }
+        lastMessage = "Got column name " + columnName;
+        return columnName.toString();
+    }
+}
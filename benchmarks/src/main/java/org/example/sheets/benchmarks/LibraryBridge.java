@@ -0,0 +1,293 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.UpdateValuesResponse;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Method handles onto the library classes.
+ * <p>
+ * The library lives in the unnamed package, which Java code in a named package cannot reference, while JMH
+ * refuses benchmarks in the unnamed package. The handles are resolved once, adapted to erased signatures
+ * and kept in static finals so the JIT can inline them like direct calls. Package-private members are
+ * reached with a private lookup, which works because both sides share the class path module.
+ */
+final class LibraryBridge {
+
+    private static final MethodHandle NEW_CLIENT_PROVIDER;
+    private static final MethodHandle SET_SCHEDULER_CONFIG;
+    private static final MethodHandle SET_GZIP_ENABLED;
+    private static final MethodHandle GET_SHEET_SERVICE;
+    private static final MethodHandle GET_SCHEDULER;
+    private static final MethodHandle GET_METRICS;
+    private static final MethodHandle SET_METRICS_ENABLED;
+    private static final MethodHandle SCHEDULER_EXECUTE;
+    private static final MethodHandle NEW_BULK_IMPORTER;
+    private static final MethodHandle IMPORT_CSV;
+    private static final MethodHandle IMPORT_ROWS_WRITTEN;
+    private static final MethodHandle NEW_SCHEDULER_CONFIG;
+    private static final MethodHandle SET_READ_REQUESTS_PER_MINUTE;
+    private static final MethodHandle SET_WRITE_REQUESTS_PER_MINUTE;
+    private static final MethodHandle SET_INITIAL_BACKOFF_MILLIS;
+    private static final MethodHandle NEW_SHEETS_UTIL;
+    private static final MethodHandle READ_RANGE;
+    private static final MethodHandle READ_RANGES;
+    private static final MethodHandle WRITE_TO_RANGE;
+    private static final MethodHandle DERIVE_RANGE;
+    private static final MethodHandle SHEET_RANGE_OF;
+    private static final MethodHandle COLUMN_NAME;
+    private static final MethodHandle RANGE_OF_SIZE;
+    private static final MethodHandle RANGE_TO_A1;
+    private static final MethodHandle RANGE_PARSE;
+    private static final MethodHandle NEW_COLUMNAR_BUFFER;
+    private static final MethodHandle BUFFER_ADD_ROW;
+    private static final MethodHandle BUFFER_WRITE_VALUES;
+    private static final MethodHandle BUFFER_READ_VALUE_RANGE;
+    private static final MethodHandle NEW_VALUES_CONTENT;
+    private static final Class<?> COLUMN_TYPE;
+    private static final Class<?> OPERATION;
+    private static final Class<?> API_CALL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> clientProvider = Class.forName("GoogleClientProvider");
+            Class<?> schedulerConfig = Class.forName("RequestScheduler$Config");
+            Class<?> sheetsUtil = Class.forName("GoogleSheetsUtil");
+            Class<?> sheetRange = Class.forName("SheetRange");
+            Class<?> a1Notation = Class.forName("A1Notation");
+            Class<?> a1Range = Class.forName("A1Range");
+            Class<?> columnarBuffer = Class.forName("ColumnarRowBuffer");
+            COLUMN_TYPE = Class.forName("ColumnarRowBuffer$ColumnType");
+            OPERATION = Class.forName("SheetsOperation");
+            API_CALL = Class.forName("RequestScheduler$ApiCall");
+            Class<?> scheduler = Class.forName("RequestScheduler");
+            Class<?> metrics = Class.forName("SheetsMetrics");
+            MethodHandles.Lookup providerLookup = MethodHandles.privateLookupIn(clientProvider, lookup);
+            MethodHandles.Lookup utilLookup = MethodHandles.privateLookupIn(sheetsUtil, lookup);
+            Class<?> valuesContent = Class.forName("SheetsValuesRequest$ValuesContent");
+
+            NEW_CLIENT_PROVIDER = erase(providerLookup.findConstructor(clientProvider,
+                    MethodType.methodType(void.class, String.class, HttpTransport.class, HttpRequestInitializer.class)));
+            SET_SCHEDULER_CONFIG = erase(lookup.findVirtual(clientProvider, "setSchedulerConfig",
+                    MethodType.methodType(clientProvider, schedulerConfig)));
+            SET_GZIP_ENABLED = erase(lookup.findVirtual(clientProvider, "setGzipEnabled",
+                    MethodType.methodType(clientProvider, boolean.class)));
+            GET_SHEET_SERVICE = erase(lookup.findVirtual(clientProvider, "getSheetService",
+                    MethodType.methodType(Sheets.class)));
+            GET_SCHEDULER = erase(lookup.findVirtual(clientProvider, "getScheduler", MethodType.methodType(scheduler)));
+            GET_METRICS = erase(lookup.findVirtual(clientProvider, "getMetrics", MethodType.methodType(metrics)));
+            SET_METRICS_ENABLED = erase(lookup.findVirtual(metrics, "setEnabled", MethodType.methodType(metrics, boolean.class)));
+            SCHEDULER_EXECUTE = erase(lookup.findVirtual(scheduler, "execute",
+                    MethodType.methodType(Object.class, OPERATION, API_CALL)));
+            Class<?> bulkImporter = Class.forName("BulkImporter");
+            Class<?> importResult = Class.forName("BulkImporter$ImportResult");
+            NEW_BULK_IMPORTER = erase(lookup.findConstructor(bulkImporter, MethodType.methodType(void.class, sheetsUtil)));
+            IMPORT_CSV = erase(lookup.findVirtual(bulkImporter, "importCsv",
+                    MethodType.methodType(importResult, String.class, String.class, Path.class, String.class)));
+            IMPORT_ROWS_WRITTEN = erase(lookup.findVirtual(importResult, "getRowsWritten", MethodType.methodType(long.class)));
+            NEW_SCHEDULER_CONFIG = erase(lookup.findConstructor(schedulerConfig, MethodType.methodType(void.class)));
+            SET_READ_REQUESTS_PER_MINUTE = erase(lookup.findVirtual(schedulerConfig, "setReadRequestsPerMinute",
+                    MethodType.methodType(schedulerConfig, int.class)));
+            SET_WRITE_REQUESTS_PER_MINUTE = erase(lookup.findVirtual(schedulerConfig, "setWriteRequestsPerMinute",
+                    MethodType.methodType(schedulerConfig, int.class)));
+            SET_INITIAL_BACKOFF_MILLIS = erase(lookup.findVirtual(schedulerConfig, "setInitialBackoffMillis",
+                    MethodType.methodType(schedulerConfig, long.class)));
+            NEW_SHEETS_UTIL = erase(utilLookup.findConstructor(sheetsUtil,
+                    MethodType.methodType(void.class, String.class, clientProvider)));
+            READ_RANGE = erase(lookup.findVirtual(sheetsUtil, "readRange",
+                    MethodType.methodType(List.class, String.class, String.class, String.class)));
+            READ_RANGES = erase(lookup.findVirtual(sheetsUtil, "readRanges",
+                    MethodType.methodType(Map.class, String.class, List.class)));
+            WRITE_TO_RANGE = erase(lookup.findVirtual(sheetsUtil, "writeToRange",
+                    MethodType.methodType(UpdateValuesResponse.class, String.class, String.class, String.class, String.class, List.class)));
+            DERIVE_RANGE = erase(utilLookup.findVirtual(sheetsUtil, "deriveRange",
+                    MethodType.methodType(String.class, List.class, String.class)));
+            SHEET_RANGE_OF = erase(lookup.findStatic(sheetRange, "of",
+                    MethodType.methodType(sheetRange, String.class, String.class)));
+            COLUMN_NAME = lookup.findStatic(a1Notation, "columnName", MethodType.methodType(String.class, int.class));
+            RANGE_OF_SIZE = erase(lookup.findStatic(a1Range, "ofSize",
+                    MethodType.methodType(a1Range, String.class, String.class, int.class, int.class)));
+            RANGE_TO_A1 = erase(lookup.findVirtual(a1Range, "toA1Notation", MethodType.methodType(String.class)));
+            RANGE_PARSE = erase(lookup.findStatic(a1Range, "parse", MethodType.methodType(a1Range, String.class)));
+            NEW_COLUMNAR_BUFFER = lookup.findConstructor(columnarBuffer,
+                    MethodType.methodType(void.class, COLUMN_TYPE.arrayType())).asFixedArity()
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+            BUFFER_ADD_ROW = erase(lookup.findVirtual(columnarBuffer, "addRow", MethodType.methodType(int.class, List.class)));
+            BUFFER_WRITE_VALUES = erase(lookup.findVirtual(columnarBuffer, "writeValues",
+                    MethodType.methodType(void.class, JsonWriter.class, int.class, int.class)));
+            BUFFER_READ_VALUE_RANGE = erase(lookup.findVirtual(columnarBuffer, "readValueRange",
+                    MethodType.methodType(void.class, JsonReader.class)));
+            NEW_VALUES_CONTENT = MethodHandles.privateLookupIn(valuesContent, lookup).findConstructor(valuesContent,
+                    MethodType.methodType(void.class, String.class, columnarBuffer, int.class, int.class))
+                    .asType(MethodType.methodType(HttpContent.class, String.class, Object.class, int.class, int.class));
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private LibraryBridge() {
+    }
+
+    /**
+     * Adapts library types in a handle's signature to {@code Object} so call sites can use {@code invokeExact}.
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isLibraryType(type.parameterType(i)))
+                type = type.changeParameterType(i, Object.class);
+        }
+        if (isLibraryType(type.returnType()))
+            type = type.changeReturnType(Object.class);
+        return handle.asType(type);
+    }
+
+    private static boolean isLibraryType(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+
+    static Object newClientProvider(String applicationName, HttpTransport transport, HttpRequestInitializer initializer) throws Throwable {
+        return (Object) NEW_CLIENT_PROVIDER.invokeExact(applicationName, transport, initializer);
+    }
+
+    /**
+     * Lifts the client side quota so that benchmarks measure the library rather than the token bucket, and
+     * shortens backoff so injected throttling costs milliseconds instead of seconds.
+     */
+    static void configureScheduler(Object clientProvider, int requestsPerMinute, long initialBackoffMillis) throws Throwable {
+        Object config = (Object) NEW_SCHEDULER_CONFIG.invokeExact();
+        config = (Object) SET_READ_REQUESTS_PER_MINUTE.invokeExact(config, requestsPerMinute);
+        config = (Object) SET_WRITE_REQUESTS_PER_MINUTE.invokeExact(config, requestsPerMinute);
+        config = (Object) SET_INITIAL_BACKOFF_MILLIS.invokeExact(config, initialBackoffMillis);
+        Object ignored = (Object) SET_SCHEDULER_CONFIG.invokeExact(clientProvider, config);
+    }
+
+    static void setGzipEnabled(Object clientProvider, boolean enabled) throws Throwable {
+        Object ignored = (Object) SET_GZIP_ENABLED.invokeExact(clientProvider, enabled);
+    }
+
+    static Sheets getSheetService(Object clientProvider) throws Throwable {
+        return (Sheets) GET_SHEET_SERVICE.invokeExact(clientProvider);
+    }
+
+    static void setMetricsEnabled(Object clientProvider, boolean enabled) throws Throwable {
+        Object metrics = (Object) GET_METRICS.invokeExact(clientProvider);
+        Object ignored = (Object) SET_METRICS_ENABLED.invokeExact(metrics, enabled);
+    }
+
+    static Object getScheduler(Object clientProvider) throws Throwable {
+        return (Object) GET_SCHEDULER.invokeExact(clientProvider);
+    }
+
+    /**
+     * Creates an {@code ApiCall} that returns {@code result} without doing any I/O.
+     */
+    static Object constantCall(Object result) {
+        return MethodHandleProxies.asInterfaceInstance(API_CALL, MethodHandles.constant(Object.class, result));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object operation(String name) {
+        return Enum.valueOf((Class) OPERATION, name);
+    }
+
+    static Object execute(Object scheduler, Object operation, Object apiCall) throws Throwable {
+        return (Object) SCHEDULER_EXECUTE.invokeExact(scheduler, operation, apiCall);
+    }
+
+    static Object newBulkImporter(Object sheetsUtil) throws Throwable {
+        return (Object) NEW_BULK_IMPORTER.invokeExact(sheetsUtil);
+    }
+
+    /**
+     * Imports a CSV file and returns the number of rows acknowledged by the server.
+     */
+    static long importCsv(Object bulkImporter, String workBookId, String sheetName, Path csvFile, String inputType) throws Throwable {
+        Object result = (Object) IMPORT_CSV.invokeExact(bulkImporter, workBookId, sheetName, csvFile, inputType);
+        return (long) IMPORT_ROWS_WRITTEN.invokeExact(result);
+    }
+
+    static AutoCloseable newSheetsUtil(String applicationName, Object clientProvider) throws Throwable {
+        return (AutoCloseable) (Object) NEW_SHEETS_UTIL.invokeExact(applicationName, clientProvider);
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<List<Object>> readRange(Object sheetsUtil, String workBookId, String sheetName, String range) throws Throwable {
+        return (List<List<Object>>) READ_RANGE.invokeExact(sheetsUtil, workBookId, sheetName, range);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, List<List<Object>>> readRanges(Object sheetsUtil, String workBookId, List<Object> sheetRanges) throws Throwable {
+        return (Map<String, List<List<Object>>>) READ_RANGES.invokeExact(sheetsUtil, workBookId, (List) sheetRanges);
+    }
+
+    static UpdateValuesResponse writeToRange(Object sheetsUtil, String workBookId, String sheetName, String startingCell,
+                                             String inputType, List<List<Object>> values) throws Throwable {
+        return (UpdateValuesResponse) WRITE_TO_RANGE.invokeExact(sheetsUtil, workBookId, sheetName, startingCell, inputType, (List) values);
+    }
+
+    static String deriveRange(Object sheetsUtil, List<List<Object>> values, String startingCell) throws Throwable {
+        return (String) DERIVE_RANGE.invokeExact(sheetsUtil, (List) values, startingCell);
+    }
+
+    static Object sheetRange(String sheetName, String range) throws Throwable {
+        return (Object) SHEET_RANGE_OF.invokeExact(sheetName, range);
+    }
+
+    static String columnName(int column) throws Throwable {
+        return (String) COLUMN_NAME.invokeExact(column);
+    }
+
+    static String rangeOfSize(String sheetName, String startingCell, int rowCount, int columnCount) throws Throwable {
+        Object range = (Object) RANGE_OF_SIZE.invokeExact(sheetName, startingCell, rowCount, columnCount);
+        return (String) RANGE_TO_A1.invokeExact(range);
+    }
+
+    static Object parseRange(String a1) throws Throwable {
+        return (Object) RANGE_PARSE.invokeExact(a1);
+    }
+
+    /**
+     * Creates a columnar buffer from column type names such as {@code NUMBER} or {@code STRING}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object newColumnarBuffer(String... types) throws Throwable {
+        Object[] columnTypes = (Object[]) java.lang.reflect.Array.newInstance(COLUMN_TYPE, types.length);
+        for (int i = 0; i < types.length; i++)
+            columnTypes[i] = Enum.valueOf((Class) COLUMN_TYPE, types[i]);
+        return (Object) NEW_COLUMNAR_BUFFER.invokeExact(columnTypes);
+    }
+
+    static int addRow(Object buffer, List<Object> values) throws Throwable {
+        return (int) BUFFER_ADD_ROW.invokeExact(buffer, (List) values);
+    }
+
+    static void writeValues(Object buffer, JsonWriter writer, int fromRow, int toRow) throws Throwable {
+        BUFFER_WRITE_VALUES.invokeExact(buffer, writer, fromRow, toRow);
+    }
+
+    static void readValueRange(Object buffer, JsonReader reader) throws Throwable {
+        BUFFER_READ_VALUE_RANGE.invokeExact(buffer, reader);
+    }
+
+    /**
+     * Returns the request body {@code writeToRange} streams for rows {@code fromRow} to {@code toRow} of a buffer.
+     */
+    static HttpContent valuesContent(String range, Object buffer, int fromRow, int toRow) throws Throwable {
+        return (HttpContent) NEW_VALUES_CONTENT.invokeExact(range, buffer, fromRow, toRow);
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-call metrics, measured with recording switched on and off: once on a scheduled call that
+ * does no I/O, which isolates the bookkeeping, and once on a full read over HTTP, which adds the byte
+ * counting hooks on the request and response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"true", "false"})
+    public boolean metricsEnabled;
+
+    private FakeSheetsServer server;
+    private ApacheHttpTransport transport;
+    private AutoCloseable sheetsUtil;
+    private Object scheduler;
+    private Object operation;
+    private Object constantCall;
+
+    @Setup
+    public void setUp() throws Throwable {
+        server = new FakeSheetsServer(0, 0, 100, Datasets.COLUMNS);
+        transport = new ApacheHttpTransport();
+        Object clientProvider = LibraryBridge.newClientProvider("bench", transport, server.requestInitializer());
+        LibraryBridge.configureScheduler(clientProvider, Integer.MAX_VALUE, 1);
+        LibraryBridge.setMetricsEnabled(clientProvider, metricsEnabled);
+        sheetsUtil = LibraryBridge.newSheetsUtil("bench", clientProvider);
+        scheduler = LibraryBridge.getScheduler(clientProvider);
+        operation = LibraryBridge.operation("READ");
+        constantCall = LibraryBridge.constantCall("done");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        sheetsUtil.close();
+        transport.shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    public Object scheduledCall() throws Throwable {
+        return LibraryBridge.execute(scheduler, operation, constantCall);
+    }
+
+    @Benchmark
+    public List<List<Object>> readRange() throws Throwable {
+        return LibraryBridge.readRange(sheetsUtil, "bench", "Bench", "A1:J100");
+    }
+}
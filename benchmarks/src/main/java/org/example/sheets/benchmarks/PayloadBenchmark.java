@@ -0,0 +1,137 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes on the wire per call, with and without gzip, for reads and writes against {@link FakeSheetsServer}.
+ * <p>
+ * Next to the time per call, the {@link Bytes} counters report the request and response body sizes as sent,
+ * the JSON size of the responses and what it would have been without the field mask. They are totals over
+ * all measured calls, and {@code calls} counts those calls, so each counter divided by {@code calls} is the
+ * size of one call.
+ * The server adds no latency, so the time shows the CPU cost of compressing on loopback; over a real
+ * network the smaller bodies are what counts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class PayloadBenchmark {
+
+    private static final String WORKBOOK_ID = "bench";
+    private static final String SHEET_NAME = "Bench";
+    private static final int ROWS = 1000;
+
+    @Param({"true", "false"})
+    public boolean gzip;
+
+    private FakeSheetsServer server;
+    private ApacheHttpTransport transport;
+    private AutoCloseable sheetsUtil;
+    private List<List<Object>> rows;
+    private List<Object> ranges;
+
+    /**
+     * Body sizes summed over the calls of an iteration. JMH adds up event counters across iterations, so
+     * they are reset at the start of each one and only the measured calls are counted.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Bytes {
+
+        public long calls;
+        public long requestBytes;
+        public long responseBytes;
+        public long responseJsonBytes;
+        public long unmaskedJsonBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            calls = 0;
+            requestBytes = 0;
+            responseBytes = 0;
+            responseJsonBytes = 0;
+            unmaskedJsonBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Throwable {
+        server = new FakeSheetsServer(0, 0, ROWS, Datasets.COLUMNS);
+        transport = new ApacheHttpTransport();
+        Object clientProvider = LibraryBridge.newClientProvider("bench", transport, server.requestInitializer());
+        LibraryBridge.configureScheduler(clientProvider, 1_000_000, 1);
+        LibraryBridge.setGzipEnabled(clientProvider, gzip);
+        sheetsUtil = LibraryBridge.newSheetsUtil("bench", clientProvider);
+        rows = Datasets.rows(ROWS, Datasets.COLUMNS);
+        ranges = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            ranges.add(LibraryBridge.sheetRange(SHEET_NAME + " " + i, "A1:J" + ROWS));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        sheetsUtil.close();
+        transport.shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    public List<List<Object>> readRange(Bytes bytes) throws Throwable {
+        long[] before = snapshot();
+        List<List<Object>> values = LibraryBridge.readRange(sheetsUtil, WORKBOOK_ID, SHEET_NAME, "A1:J" + ROWS);
+        record(bytes, before);
+        return values;
+    }
+
+    @Benchmark
+    public Map<String, List<List<Object>>> readRanges(Bytes bytes) throws Throwable {
+        long[] before = snapshot();
+        Map<String, List<List<Object>>> values = LibraryBridge.readRanges(sheetsUtil, WORKBOOK_ID, ranges);
+        record(bytes, before);
+        return values;
+    }
+
+    @Benchmark
+    public Object writeToRange(Bytes bytes) throws Throwable {
+        long[] before = snapshot();
+        Object response = LibraryBridge.writeToRange(sheetsUtil, WORKBOOK_ID, SHEET_NAME, "A1", "RAW", rows);
+        record(bytes, before);
+        return response;
+    }
+
+    private long[] snapshot() {
+        return new long[]{server.getRequestBytes(), server.getResponseBytes(), server.getResponseJsonBytes(), server.getUnmaskedJsonBytes()};
+    }
+
+    private void record(Bytes bytes, long[] before) {
+        bytes.calls++;
+        bytes.requestBytes += server.getRequestBytes() - before[0];
+        bytes.responseBytes += server.getResponseBytes() - before[1];
+        bytes.responseJsonBytes += server.getResponseJsonBytes() - before[2];
+        bytes.unmaskedJsonBytes += server.getUnmaskedJsonBytes() - before[3];
+    }
+}
@@ -0,0 +1,109 @@
+package org.example.sheets.benchmarks;
+
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning cell values into a {@code values.update} body and a {@code values.get} response back into
+ * values, through the generic {@link ValueRange} model used by {@code readRange}/{@code writeToRange} and
+ * through the streaming {@code ColumnarRowBuffer} path. No I/O is involved.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SerializationBenchmark {
+
+    private static final String RANGE = "Bench!A1";
+
+    @Param({"1000", "100000", "1000000"})
+    public int cells;
+
+    private List<List<Object>> rows;
+    private String[] columnTypes;
+    private Object buffer;
+    private byte[] responseJson;
+
+    @Setup
+    public void setUp() throws Throwable {
+        rows = Datasets.rows(cells / Datasets.COLUMNS, Datasets.COLUMNS);
+        columnTypes = Datasets.columnTypes(Datasets.COLUMNS);
+        buffer = LibraryBridge.newColumnarBuffer(columnTypes);
+        for (List<Object> row : rows)
+            LibraryBridge.addRow(buffer, row);
+        responseJson = Datasets.valueRangeJson(rows);
+    }
+
+    @Benchmark
+    public long writeValueRange() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        new JsonHttpContent(GsonFactory.getDefaultInstance(), new ValueRange()
+                .setRange(RANGE)
+                .setValues(rows))
+                .writeTo(out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long writeColumnar() throws Throwable {
+        CountingOutputStream out = new CountingOutputStream();
+        LibraryBridge.valuesContent(RANGE, buffer, 0, rows.size()).writeTo(out);
+        return out.count;
+    }
+
+    @Benchmark
+    public ValueRange readValueRange() throws Exception {
+        return GsonFactory.getDefaultInstance()
+                .createJsonParser(new ByteArrayInputStream(responseJson), StandardCharsets.UTF_8)
+                .parseAndClose(ValueRange.class);
+    }
+
+    @Benchmark
+    public Object readColumnar() throws Throwable {
+        Object values = LibraryBridge.newColumnarBuffer(columnTypes);
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(responseJson), StandardCharsets.UTF_8))) {
+            LibraryBridge.readValueRange(values, reader);
+        }
+        return values;
+    }
+
+    /**
+     * Discards what is written, keeping only the byte count so the body size shows up in the results.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Parsing and formatting of A1 notation: column letters, cell references and sheet names.
+ * <p>
+ * Column names up to {@code ZZ} come from a precomputed table, and cell references are parsed in place
+ * without substrings, so the chunked and batched writers can derive thousands of ranges per job cheaply.
+ * Rows and columns are 1-based throughout.
+ */
+public final class A1Notation {
+
+    /**
+     * Highest column number the Sheets API allows, column {@code ZZZ}.
+     */
+    public static final int MAX_COLUMN = 18_278;
+
+    private static final int TABLE_COLUMNS = 26 + 26 * 26;
+    private static final String[] COLUMN_NAMES = new String[TABLE_COLUMNS + 1];
+
+    static {
+        for (int column = 1; column <= TABLE_COLUMNS; column++)
+            COLUMN_NAMES[column] = computeColumnName(column);
+    }
+
+    private A1Notation() {
+    }
+
+    /**
+     * Returns the letters of a column, e.g. {@code 1} is {@code A} and {@code 28} is {@code AB}.
+     */
+    public static String columnName(int column) {
+        if (column < 1 || column > MAX_COLUMN)
+            throw new IllegalArgumentException("Column " + column + " is outside 1.." + MAX_COLUMN);
+        return column <= TABLE_COLUMNS ? COLUMN_NAMES[column] : computeColumnName(column);
+    }
+
+    public static StringBuilder appendColumnName(StringBuilder builder, int column) {
+        return builder.append(columnName(column));
+    }
+
+    /**
+     * Returns the column of a cell reference such as {@code AB10}, or of bare column letters such as
+     * {@code AB}. Returns 0 when the reference has no column letters, e.g. a whole row reference {@code 10}.
+     */
+    public static int columnNumber(CharSequence cell) {
+        return columnNumber(cell, 0, cell.length());
+    }
+
+    /**
+     * Returns the row of a cell reference such as {@code AB10}, or 0 when it has no row number.
+     */
+    public static int rowNumber(CharSequence cell) {
+        return rowNumber(cell, 0, cell.length());
+    }
+
+    static int columnNumber(CharSequence text, int from, int to) {
+        int column = 0;
+        for (int i = from; i < to && isLetter(text.charAt(i)); i++) {
+            column = column * 26 + (Character.toUpperCase(text.charAt(i)) - 'A' + 1);
+            if (column > MAX_COLUMN)
+                throw new IllegalArgumentException("Column of " + text.subSequence(from, to) + " is outside 1.." + MAX_COLUMN);
+        }
+        return column;
+    }
+
+    static int rowNumber(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to && isLetter(text.charAt(i)))
+            i++;
+        int row = 0;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                throw new IllegalArgumentException("Invalid cell reference " + text.subSequence(from, to));
+            row = Math.addExact(Math.multiplyExact(row, 10), c - '0');
+        }
+        return row;
+    }
+
+    /**
+     * Returns a cell reference such as {@code AB10}.
+     */
+    public static String cell(int column, int row) {
+        return appendCell(new StringBuilder(12), column, row).toString();
+    }
+
+    /**
+     * Appends a cell reference. A column or row of 0 is left out, giving a whole row or whole column reference.
+     */
+    public static StringBuilder appendCell(StringBuilder builder, int column, int row) {
+        if (column > 0)
+            appendColumnName(builder, column);
+        if (row > 0)
+            builder.append(row);
+        return builder;
+    }
+
+    /**
+     * Returns the sheet name as it must appear before the {@code !} of a range. Names that are not plain
+     * identifiers, or that could be read as a cell reference, are put in single quotes with embedded quotes
+     * doubled. Names that are already quoted are returned unchanged.
+     */
+    public static String quoteSheetName(String sheetName) {
+        if (sheetName.length() >= 2 && sheetName.charAt(0) == '\'' && sheetName.charAt(sheetName.length() - 1) == '\'')
+            return sheetName;
+        if (!needsQuotes(sheetName))
+            return sheetName;
+        StringBuilder quoted = new StringBuilder(sheetName.length() + 2).append('\'');
+        for (int i = 0; i < sheetName.length(); i++) {
+            char c = sheetName.charAt(i);
+            if (c == '\'')
+                quoted.append('\'');
+            quoted.append(c);
+        }
+        return quoted.append('\'').toString();
+    }
+
+    /**
+     * Reverses {@link #quoteSheetName(String)}.
+     */
+    public static String unquoteSheetName(String sheetName) {
+        return unquoteSheetName(sheetName, 0, sheetName.length());
+    }
+
+    static String unquoteSheetName(String text, int from, int to) {
+        if (to - from < 2 || text.charAt(from) != '\'' || text.charAt(to - 1) != '\'')
+            return text.substring(from, to);
+        StringBuilder name = new StringBuilder(to - from - 2);
+        for (int i = from + 1; i < to - 1; i++) {
+            char c = text.charAt(i);
+            name.append(c);
+            if (c == '\'' && i + 1 < to - 1 && text.charAt(i + 1) == '\'')
+                i++;
+        }
+        return name.toString();
+    }
+
+    /**
+     * Returns the index of the {@code !} separating the sheet name from the range, or -1 when there is none.
+     * A {@code !} inside a quoted sheet name is not a separator.
+     */
+    static int separatorIndex(String a1) {
+        boolean quoted = false;
+        for (int i = 0; i < a1.length(); i++) {
+            char c = a1.charAt(i);
+            if (c == '\'')
+                quoted = !quoted;
+            else if (c == '!' && !quoted)
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean needsQuotes(String sheetName) {
+        if (sheetName.isEmpty())
+            return true;
+        int letters = 0;
+        while (letters < sheetName.length() && isLetter(sheetName.charAt(letters)))
+            letters++;
+        boolean looksLikeCell = letters < sheetName.length();
+        for (int i = 0; i < sheetName.length(); i++) {
+            char c = sheetName.charAt(i);
+            if (!isLetter(c) && !(c >= '0' && c <= '9') && c != '_')
+                return true;
+            if (i >= letters && !(c >= '0' && c <= '9'))
+                looksLikeCell = false;
+        }
+        if (Character.isDigit(sheetName.charAt(0)))
+            return true;
+        return looksLikeCell && letters <= 3 || isR1C1(sheetName);
+    }
+
+    private static boolean isR1C1(String name) {
+        char first = Character.toUpperCase(name.charAt(0));
+        return (first == 'R' || first == 'C') && name.length() > 1
+                && (Character.isDigit(name.charAt(1)) || Character.toUpperCase(name.charAt(1)) == 'C');
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static String computeColumnName(int column) {
+        char[] letters = new char[3];
+        int position = letters.length;
+        while (column > 0) {
+            int remainder = (column - 1) % 26;
+            letters[--position] = (char) ('A' + remainder);
+            column = (column - remainder - 1) / 26;
+        }
+        return new String(letters, position, letters.length - position);
+    }
+}
@@ -0,0 +1,257 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rectangular range of a sheet with 1-based, inclusive bounds, e.g. {@code 'Q1 Sales'!B2:AB10}.
+ * <p>
+ * A bound of 0 is open: {@code A:C} has no row bounds, {@code 2:10} has no column bounds and {@code A5:C}
+ * runs from row 5 to the end of the sheet. A range with every bound open is the whole sheet. The sheet name
+ * is kept unquoted and may be {@code null} for a range that is not tied to a sheet.
+ */
+public record A1Range(String sheetName, int startColumn, int startRow, int endColumn, int endRow) {
+
+    public A1Range {
+        if (startColumn < 0 || startRow < 0 || endColumn < 0 || endRow < 0)
+            throw new IllegalArgumentException("Range bounds must not be negative");
+        if (endColumn > A1Notation.MAX_COLUMN)
+            throw new IllegalArgumentException("Column " + endColumn + " is outside 1.." + A1Notation.MAX_COLUMN);
+        if (endColumn > 0 && endColumn < startColumn || endRow > 0 && endRow < startRow)
+            throw new IllegalArgumentException("Range ends before it starts");
+    }
+
+    /**
+     * Returns the range of {@code rowCount} rows and {@code columnCount} columns whose top left cell is
+     * {@code startingCell}, e.g. 3 rows and 2 columns from {@code AB10} is {@code AB10:AC12}.
+     */
+    public static A1Range ofSize(String sheetName, String startingCell, int rowCount, int columnCount) {
+        int column = Math.max(A1Notation.columnNumber(startingCell), 1);
+        int row = Math.max(A1Notation.rowNumber(startingCell), 1);
+        return ofSize(sheetName, column, row, rowCount, columnCount);
+    }
+
+    public static A1Range ofSize(String sheetName, int startColumn, int startRow, int rowCount, int columnCount) {
+        if (rowCount < 1 || columnCount < 1)
+            throw new IllegalArgumentException("Range must have at least one row and column but was "
+                    + rowCount + " by " + columnCount);
+        return new A1Range(sheetName, startColumn, startRow, startColumn + columnCount - 1, startRow + rowCount - 1);
+    }
+
+    public static A1Range wholeSheet(String sheetName) {
+        return new A1Range(sheetName, 0, 0, 0, 0);
+    }
+
+    /**
+     * Parses {@code sheet!range}, a bare range such as {@code B2:D10}, or a bare sheet name such as
+     * {@code 'Q1 Sales'}. Text without {@code !} is read as a range when it looks like one and as a sheet
+     * name otherwise.
+     */
+    public static A1Range parse(String a1) {
+        int separator = A1Notation.separatorIndex(a1);
+        if (separator >= 0)
+            return parseRange(A1Notation.unquoteSheetName(a1, 0, separator), a1, separator + 1);
+        if (isRange(a1))
+            return parseRange(null, a1, 0);
+        return wholeSheet(A1Notation.unquoteSheetName(a1));
+    }
+
+    /**
+     * Parses a range without a sheet name, such as {@code B2:D10}, and places it in {@code sheetName}.
+     */
+    public static A1Range parse(String sheetName, String range) {
+        if (range == null || range.isEmpty())
+            return wholeSheet(sheetName);
+        return parseRange(sheetName, range, 0);
+    }
+
+    private static A1Range parseRange(String sheetName, String text, int from) {
+        if (from == text.length())
+            return wholeSheet(sheetName);
+        int colon = text.indexOf(':', from);
+        int startEnd = colon >= 0 ? colon : text.length();
+        int startColumn = A1Notation.columnNumber(text, from, startEnd);
+        int startRow = A1Notation.rowNumber(text, from, startEnd);
+        if (colon < 0)
+            return new A1Range(sheetName, startColumn, startRow, startColumn, startRow);
+        int endColumn = A1Notation.columnNumber(text, colon + 1, text.length());
+        int endRow = A1Notation.rowNumber(text, colon + 1, text.length());
+        if (startColumn == 0 && startRow == 0 || endColumn == 0 && endRow == 0)
+            throw new IllegalArgumentException("Invalid range " + text.substring(from));
+        return new A1Range(sheetName, startColumn, startRow, endColumn, endRow);
+    }
+
+    private static boolean isRange(String text) {
+        int colon = text.indexOf(':');
+        try {
+            if (colon < 0)
+                return A1Notation.columnNumber(text) > 0 && A1Notation.rowNumber(text) > 0;
+            int start = A1Notation.columnNumber(text, 0, colon) + A1Notation.rowNumber(text, 0, colon);
+            int end = A1Notation.columnNumber(text, colon + 1, text.length()) + A1Notation.rowNumber(text, colon + 1, text.length());
+            return start > 0 && end > 0;
+        }
+        catch (IllegalArgumentException | ArithmeticException e) {
+            return false;
+        }
+    }
+
+    public boolean isWholeSheet() {
+        return startColumn == 0 && startRow == 0 && endColumn == 0 && endRow == 0;
+    }
+
+    public boolean hasRowBounds() {
+        return startRow > 0 && endRow > 0;
+    }
+
+    public boolean hasColumnBounds() {
+        return startColumn > 0 && endColumn > 0;
+    }
+
+    /**
+     * Number of rows, or -1 when the range has no row bounds.
+     */
+    public int getRowCount() {
+        return hasRowBounds() ? endRow - startRow + 1 : -1;
+    }
+
+    /**
+     * Number of columns, or -1 when the range has no column bounds.
+     */
+    public int getColumnCount() {
+        return hasColumnBounds() ? endColumn - startColumn + 1 : -1;
+    }
+
+    public A1Range withSheetName(String sheetName) {
+        return new A1Range(sheetName, startColumn, startRow, endColumn, endRow);
+    }
+
+    /**
+     * Moves the range by the given number of rows and columns. Open bounds stay open.
+     */
+    public A1Range offset(int rows, int columns) {
+        return new A1Range(sheetName, shift(startColumn, columns), shift(startRow, rows),
+                shift(endColumn, columns), shift(endRow, rows));
+    }
+
+    /**
+     * Splits the range into consecutive ranges of at most {@code maxRows} rows each.
+     */
+    public List<A1Range> splitRows(int maxRows) {
+        if (maxRows < 1)
+            throw new IllegalArgumentException("maxRows must be positive but was " + maxRows);
+        if (!hasRowBounds())
+            throw new IllegalStateException("Cannot split range " + this + " without row bounds");
+        List<A1Range> parts = new ArrayList<>((getRowCount() + maxRows - 1) / maxRows);
+        for (int row = startRow; row <= endRow; row += maxRows)
+            parts.add(new A1Range(sheetName, startColumn, row, endColumn, Math.min(row + maxRows - 1, endRow)));
+        return parts;
+    }
+
+    /**
+     * Splits the range into consecutive ranges of at most {@code maxColumns} columns each.
+     */
+    public List<A1Range> splitColumns(int maxColumns) {
+        if (maxColumns < 1)
+            throw new IllegalArgumentException("maxColumns must be positive but was " + maxColumns);
+        if (!hasColumnBounds())
+            throw new IllegalStateException("Cannot split range " + this + " without column bounds");
+        List<A1Range> parts = new ArrayList<>((getColumnCount() + maxColumns - 1) / maxColumns);
+        for (int column = startColumn; column <= endColumn; column += maxColumns)
+            parts.add(new A1Range(sheetName, column, startRow, Math.min(column + maxColumns - 1, endColumn), endRow));
+        return parts;
+    }
+
+    /**
+     * Returns the smallest range covering both ranges, which must be on the same sheet.
+     */
+    public A1Range union(A1Range other) {
+        requireSameSheet(other);
+        return new A1Range(sheetName,
+                minStart(startColumn, other.startColumn), minStart(startRow, other.startRow),
+                maxEnd(endColumn, other.endColumn), maxEnd(endRow, other.endRow));
+    }
+
+    /**
+     * Returns the cells both ranges have in common, or {@code null} when they do not overlap.
+     */
+    public A1Range intersect(A1Range other) {
+        requireSameSheet(other);
+        int column = Math.max(startColumn, other.startColumn);
+        int row = Math.max(startRow, other.startRow);
+        int lastColumn = minEnd(endColumn, other.endColumn);
+        int lastRow = minEnd(endRow, other.endRow);
+        if (lastColumn > 0 && lastColumn < Math.max(column, 1) || lastRow > 0 && lastRow < Math.max(row, 1))
+            return null;
+        return new A1Range(sheetName, column, row, lastColumn, lastRow);
+    }
+
+    public boolean contains(int column, int row) {
+        return column >= Math.max(startColumn, 1) && (endColumn == 0 || column <= endColumn)
+                && row >= Math.max(startRow, 1) && (endRow == 0 || row <= endRow);
+    }
+
+    /**
+     * Returns the range without the sheet name, e.g. {@code B2:D10}, or an empty string for the whole sheet.
+     */
+    public String getRange() {
+        return appendRange(new StringBuilder(24)).toString();
+    }
+
+    /**
+     * Returns the range in the {@code sheet!range} form used by the Sheets API, quoting the sheet name when needed.
+     */
+    public String toA1Notation() {
+        if (sheetName == null)
+            return getRange();
+        String quotedName = A1Notation.quoteSheetName(sheetName);
+        if (isWholeSheet())
+            return quotedName;
+        return appendRange(new StringBuilder(quotedName.length() + 25).append(quotedName).append('!')).toString();
+    }
+
+    public SheetRange toSheetRange() {
+        return SheetRange.of(sheetName, isWholeSheet() ? null : getRange());
+    }
+
+    private StringBuilder appendRange(StringBuilder builder) {
+        if (isWholeSheet())
+            return builder;
+        A1Notation.appendCell(builder, startColumn, startRow);
+        if (startColumn == endColumn && startRow == endRow && startColumn > 0 && startRow > 0)
+            return builder;
+        return A1Notation.appendCell(builder.append(':'), endColumn, endRow);
+    }
+
+    private void requireSameSheet(A1Range other) {
+        if (sheetName == null ? other.sheetName != null : !sheetName.equals(other.sheetName))
+            throw new IllegalArgumentException("Ranges " + this + " and " + other + " are on different sheets");
+    }
+
+    private static int shift(int bound, int delta) {
+        if (bound == 0)
+            return 0;
+        int shifted = bound + delta;
+        if (shifted < 1)
+            throw new IllegalArgumentException("Offset moves the range before the first row or column");
+        return shifted;
+    }
+
+    private static int minStart(int a, int b) {
+        return a == 0 || b == 0 ? 0 : Math.min(a, b);
+    }
+
+    private static int maxEnd(int a, int b) {
+        return a == 0 || b == 0 ? 0 : Math.max(a, b);
+    }
+
+    private static int minEnd(int a, int b) {
+        if (a == 0)
+            return b;
+        if (b == 0)
+            return a;
+        return Math.min(a, b);
+    }
+
+    @Override
+    public String toString() {
+        return toA1Notation();
+    }
+}
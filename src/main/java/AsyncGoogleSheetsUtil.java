@@ -0,0 +1,210 @@
+import com.google.api.services.sheets.v4.model.UpdateValuesResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking counterpart of {@link GoogleSheetsUtil}.
+ * <p>
+ * Every call runs on its own virtual thread, so fanning out to hundreds of workbooks needs no thread pool
+ * sizing. A global limit caps the number of calls in progress and a per-workbook limit keeps concurrent
+ * writes to one spreadsheet from conflicting or exhausting its quota. A call takes its workbook permit before
+ * a global one, so a burst on one busy workbook waits without holding up calls on other workbooks. Cancelling
+ * a returned future, or
+ * letting it time out, interrupts the virtual thread and with it the in-flight HTTP request.
+ * <p>
+ * Where {@link GoogleSheetsUtil} logs a failed call and returns an empty result, the future returned here
+ * completes exceptionally with the failure instead. Shares report failures per user in their result.
+ */
+public class AsyncGoogleSheetsUtil implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(AsyncGoogleSheetsUtil.class);
+
+    private static final int DEFAULT_GLOBAL_CONCURRENCY = 64;
+    private static final int DEFAULT_PER_WORKBOOK_CONCURRENCY = 2;
+
+    private final GoogleSheetsUtil sheetsUtil;
+    private final int perWorkbookConcurrency;
+    private final Semaphore globalPermits;
+    private final Map<String, WorkbookPermits> workbookPermits = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile Duration timeout;
+
+    public AsyncGoogleSheetsUtil(GoogleSheetsUtil sheetsUtil) {
+        this(sheetsUtil, DEFAULT_GLOBAL_CONCURRENCY, DEFAULT_PER_WORKBOOK_CONCURRENCY);
+    }
+
+    public AsyncGoogleSheetsUtil(GoogleSheetsUtil sheetsUtil, int globalConcurrency, int perWorkbookConcurrency) {
+        this.sheetsUtil = sheetsUtil;
+        this.perWorkbookConcurrency = perWorkbookConcurrency;
+        this.globalPermits = new Semaphore(globalConcurrency, true);
+    }
+
+    public GoogleSheetsUtil getSheetsUtil() {
+        return sheetsUtil;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets a timeout applied to every future returned from now on, or {@code null} for none. The timeout
+     * includes time spent waiting for a concurrency permit.
+     */
+    public AsyncGoogleSheetsUtil setTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public CompletableFuture<List<List<Object>>> readRange(String workBookId, String sheetName, String range) {
+        return submit(workBookId, () -> sheetsUtil.fetchRange(workBookId, sheetName, range, ReadOptions.defaults()));
+    }
+
+    public CompletableFuture<Map<String, List<List<Object>>>> readRanges(String workBookId, List<SheetRange> ranges) {
+        return submit(workBookId, () -> {
+            Map<String, List<List<Object>>> values = new LinkedHashMap<>();
+            sheetsUtil.fetchRanges(workBookId, ranges, ReadOptions.defaults(), values);
+            return values;
+        });
+    }
+
+    public CompletableFuture<UpdateValuesResponse> writeToRange(String workBookId, String sheetName, String startingCell, String inputType, List<List<Object>> values) {
+        return submit(workBookId, () -> sheetsUtil.updateRange(workBookId, sheetName, startingCell, inputType, values));
+    }
+
+    public CompletableFuture<Map<String, UpdateValuesResponse>> writeRanges(String workBookId, Map<SheetRange, List<List<Object>>> data, String inputType) {
+        return submit(workBookId, () -> {
+            Map<String, UpdateValuesResponse> responses = new LinkedHashMap<>();
+            sheetsUtil.updateRanges(workBookId, data, inputType, responses);
+            return responses;
+        });
+    }
+
+    public CompletableFuture<Void> clearSheetData(String workBookId, List<String> sheetNames) {
+        return submit(workBookId, () -> {
+            sheetsUtil.clearSheets(workBookId, sheetNames);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Map<String, WorkbookSharer.ShareResult>> shareWorkBook(String workBookId, List<String> users, String role) {
+        return submit(workBookId, () -> sheetsUtil.shareWorkBook(workBookId, users, role));
+    }
+
+    public CompletableFuture<String> createWorkBookWithCustomSheets(String spreadSheetName, List<String> sheetNames) {
+        return submit(null, () -> sheetsUtil.provisionWorkBook(spreadSheetName, WorkbookTemplate.of(sheetNames)));
+    }
+
+    public CompletableFuture<String> createWorkBook(String spreadSheetName, WorkbookTemplate template) {
+        return submit(null, () -> sheetsUtil.provisionWorkBook(spreadSheetName, template));
+    }
+
+    public CompletableFuture<String> findWorkBookWithName(String spreadSheetName) {
+        return submit(null, () -> {
+            List<String> workBookIds = new ArrayList<>();
+            sheetsUtil.findWorkBooks(spreadSheetName, workBookIds);
+            return workBookIds.isEmpty() ? "" : workBookIds.get(0);
+        });
+    }
+
+    /**
+     * Runs a task on a virtual thread once a permit for the workbook, when {@code workBookId} is not null, and
+     * then a global permit are available. The future completes exceptionally with whatever the task throws.
+     */
+    <T> CompletableFuture<T> submit(String workBookId, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            if (future.isDone())
+                return;
+            Semaphore perWorkbook = workBookId != null ? retainPermits(workBookId) : null;
+            try {
+                if (perWorkbook != null)
+                    perWorkbook.acquire();
+                try {
+                    globalPermits.acquire();
+                    try {
+                        if (!future.isDone())
+                            future.complete(task.call());
+                    }
+                    finally {
+                        globalPermits.release();
+                    }
+                }
+                finally {
+                    if (perWorkbook != null)
+                        perWorkbook.release();
+                }
+            }
+            catch (InterruptedException e) {
+                logger.debug("Call on workbook " + workBookId + " interrupted while waiting for a permit");
+                future.cancel(false);
+            }
+            catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+            finally {
+                if (perWorkbook != null)
+                    releasePermits(workBookId);
+            }
+        });
+        future.whenComplete((result, failure) -> {
+            if (failure != null)
+                running.cancel(true);
+        });
+        Duration callTimeout = timeout;
+        if (callTimeout != null)
+            future.orTimeout(callTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    /**
+     * Returns the permit semaphore of a workbook, registering one more call that uses it.
+     */
+    private Semaphore retainPermits(String workBookId) {
+        return workbookPermits.compute(workBookId, (id, permits) -> {
+            WorkbookPermits retained = permits != null ? permits : new WorkbookPermits(perWorkbookConcurrency);
+            retained.users++;
+            return retained;
+        }).semaphore;
+    }
+
+    /**
+     * Unregisters a call, dropping the workbook's semaphore once no call waits on it or holds it.
+     */
+    private void releasePermits(String workBookId) {
+        workbookPermits.computeIfPresent(workBookId, (id, permits) -> --permits.users == 0 ? null : permits);
+    }
+
+    /**
+     * Permit semaphore of one workbook and the number of calls using it. The count is only changed inside
+     * the map's atomic compute functions.
+     */
+    private static class WorkbookPermits {
+
+        private final Semaphore semaphore;
+        private int users;
+
+        WorkbookPermits(int permits) {
+            this.semaphore = new Semaphore(permits, true);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,601 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads a CSV file or a JDBC {@link ResultSet} into a sheet without holding the whole input in memory.
+ * <p>
+ * The import runs as a three stage pipeline. A reader thread parses the input into batches of raw rows, a pool
+ * of converter threads turns each batch into cell values, and the calling thread takes the converted batches in
+ * input order and hands them to a {@link ChunkedSheetWriter}, after clearing or creating the target sheet with
+ * {@link GoogleSheetsUtil#createOrClearSheets(String, String)}. If the sheet cannot be cleared or created nothing
+ * is written, so old rows are never left below new ones, and the result reports the failure. The queue between the
+ * stages holds a bounded number of batches and the writer bounds the chunks in flight, so memory use depends on the
+ * batch and chunk sizes, not on the size of the input.
+ */
+public class BulkImporter {
+
+    private static final Logger logger = LogManager.getLogger(BulkImporter.class);
+
+    private static final int DEFAULT_BATCH_ROWS = 1000;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final String STARTING_CELL = "A1";
+
+    private final GoogleSheetsUtil sheetsUtil;
+    private final ChunkedSheetWriter writer;
+    private int converterThreads = Runtime.getRuntime().availableProcessors();
+    private int batchRows = DEFAULT_BATCH_ROWS;
+    private char delimiter = ',';
+    private char quote = '"';
+    private Charset charset = StandardCharsets.UTF_8;
+    private RowConverter rowConverter = BulkImporter::convertRow;
+
+    public BulkImporter(GoogleSheetsUtil sheetsUtil) {
+        this.sheetsUtil = sheetsUtil;
+        this.writer = new ChunkedSheetWriter(sheetsUtil.getClientProvider());
+    }
+
+    /**
+     * Writer used for the upload stage, e.g. to change the chunk size or the number of chunks in flight.
+     */
+    public ChunkedSheetWriter getWriter() {
+        return writer;
+    }
+
+    public int getConverterThreads() {
+        return converterThreads;
+    }
+
+    public BulkImporter setConverterThreads(int converterThreads) {
+        this.converterThreads = converterThreads;
+        return this;
+    }
+
+    public int getBatchRows() {
+        return batchRows;
+    }
+
+    public BulkImporter setBatchRows(int batchRows) {
+        this.batchRows = batchRows;
+        return this;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public BulkImporter setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    public char getQuote() {
+        return quote;
+    }
+
+    public BulkImporter setQuote(char quote) {
+        this.quote = quote;
+        return this;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public BulkImporter setCharset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    public RowConverter getRowConverter() {
+        return rowConverter;
+    }
+
+    /**
+     * Replaces the conversion of raw rows to cell values. The converter is called from several threads at once.
+     */
+    public BulkImporter setRowConverter(RowConverter rowConverter) {
+        this.rowConverter = rowConverter;
+        return this;
+    }
+
+    /**
+     * Imports a CSV file into the sheet, replacing its contents. Fields follow RFC 4180: quoted fields may
+     * contain delimiters, doubled quotes and line breaks, and lines may end with LF or CRLF.
+     */
+    public ImportResult importCsv(String workBookId, String sheetName, Path csvFile, String inputType) {
+        logger.debug("Inside method importCsv for file " + csvFile + " into sheet " + sheetName);
+        return importRows(workBookId, sheetName, inputType, () -> new CsvReader(
+                FileChannel.open(csvFile, StandardOpenOption.READ), charset, delimiter, quote));
+    }
+
+    /**
+     * Imports the remaining rows of a result set into the sheet, replacing its contents, optionally preceded by a
+     * header row of column labels. The result set is read on a separate thread and is not closed.
+     */
+    public ImportResult importResultSet(String workBookId, String sheetName, ResultSet resultSet, boolean includeHeader,
+                                        String inputType) {
+        logger.debug("Inside method importResultSet into sheet " + sheetName);
+        return importRows(workBookId, sheetName, inputType, () -> new ResultSetReader(resultSet, includeHeader));
+    }
+
+    private ImportResult importRows(String workBookId, String sheetName, String inputType, ReaderFactory readerFactory) {
+        long startNanos = System.nanoTime();
+        ImportResult result = new ImportResult();
+        RowReader reader;
+        try {
+            reader = readerFactory.open();
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in opening import input " + e.getMessage(), e);
+            result.failure = e;
+            return result;
+        }
+        if (!sheetsUtil.createOrClearSheets(workBookId, sheetName)) {
+            result.failure = new IOException("Could not clear or create sheet " + sheetName + " of workbook " + workBookId);
+            try {
+                reader.close();
+            }
+            catch (IOException e) {
+                logger.error("Exception occurred in closing import input " + e.getMessage(), e);
+            }
+            result.elapsedNanos = System.nanoTime() - startNanos;
+            return result;
+        }
+        ExecutorService converters = Executors.newFixedThreadPool(Math.max(converterThreads, 1));
+        BlockingQueue<Future<List<List<Object>>>> batches = new ArrayBlockingQueue<>(Math.max(converterThreads, 1) * 2);
+        Thread readerThread = new Thread(() -> read(reader, converters, batches, result), "bulk-import-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        try {
+            result.writeResult = writer.write(workBookId, sheetName, STARTING_CELL, inputType, new BatchIterator(batches, result));
+            if (result.failure == null)
+                result.failure = result.writeResult.getFailure();
+        }
+        finally {
+            readerThread.interrupt();
+            try {
+                readerThread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            converters.shutdownNow();
+        }
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        logger.debug("Imported " + result.getRowsWritten() + " of " + result.getRowsRead() + " rows into " + sheetName
+                + " at " + Math.round(result.getRowsPerSecond()) + " rows per second");
+        return result;
+    }
+
+    /**
+     * Reader stage: reads batches of raw rows and queues their conversion in input order. Ends the queue with an
+     * empty batch, or with a failed one if reading fails.
+     */
+    private void read(RowReader input, ExecutorService converters,
+                      BlockingQueue<Future<List<List<Object>>>> batches, ImportResult result) {
+        RowConverter converter = rowConverter;
+        int size = Math.max(batchRows, 1);
+        try (RowReader reader = input) {
+            List<List<?>> batch = new ArrayList<>(size);
+            List<?> row;
+            while ((row = reader.next()) != null) {
+                batch.add(row);
+                result.rowsRead.incrementAndGet();
+                if (batch.size() == size) {
+                    batches.put(convert(converters, converter, batch));
+                    batch = new ArrayList<>(size);
+                }
+            }
+            if (!batch.isEmpty())
+                batches.put(convert(converters, converter, batch));
+            batches.put(CompletableFuture.completedFuture(List.of()));
+        }
+        catch (InterruptedException | ClosedByInterruptException e) {
+            logger.debug("Import reader stopped after " + result.rowsRead.get() + " rows");
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in reading import input " + e.getMessage(), e);
+            try {
+                batches.put(CompletableFuture.failedFuture(e));
+            }
+            catch (InterruptedException ie) {
+                logger.debug("Import reader stopped before reporting failure");
+            }
+        }
+    }
+
+    private static Future<List<List<Object>>> convert(ExecutorService converters, RowConverter converter, List<List<?>> batch) {
+        return converters.submit(() -> {
+            List<List<Object>> rows = new ArrayList<>(batch.size());
+            for (List<?> row : batch)
+                rows.add(converter.convert(row));
+            return rows;
+        });
+    }
+
+    /**
+     * Default conversion: numbers and booleans written as text become numbers and booleans, nulls become empty
+     * cells, dates and other objects are written as their string form.
+     */
+    static List<Object> convertRow(List<?> row) {
+        List<Object> cells = new ArrayList<>(row.size());
+        for (Object value : row)
+            cells.add(convertCell(value));
+        return cells;
+    }
+
+    static Object convertCell(Object value) {
+        if (value == null)
+            return "";
+        if (value instanceof String text)
+            return parseText(text);
+        if (value instanceof Number || value instanceof Boolean)
+            return value;
+        return value.toString();
+    }
+
+    /**
+     * Parses plain integers, decimals and booleans. Text with leading zeros, such as codes, and anything the JSON
+     * number syntax would not accept is kept as text.
+     */
+    static Object parseText(String text) {
+        int length = text.length();
+        if (length == 0)
+            return text;
+        if (length == 4 && text.equalsIgnoreCase("true"))
+            return Boolean.TRUE;
+        if (length == 5 && text.equalsIgnoreCase("false"))
+            return Boolean.FALSE;
+        if (!isNumber(text))
+            return text;
+        boolean integral = text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0;
+        if (integral && length <= 18)
+            return Long.parseLong(text);
+        double value = Double.parseDouble(text);
+        return Double.isInfinite(value) ? text : value;
+    }
+
+    private static boolean isNumber(String text) {
+        int i = text.charAt(0) == '-' ? 1 : 0;
+        int digits = 0;
+        int firstDigit = i;
+        while (i < text.length() && Character.isDigit(text.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (digits == 0 || (digits > 1 && text.charAt(firstDigit) == '0'))
+            return false;
+        if (i < text.length() && text.charAt(i) == '.') {
+            int fraction = ++i;
+            while (i < text.length() && Character.isDigit(text.charAt(i)))
+                i++;
+            if (i == fraction)
+                return false;
+        }
+        if (i < text.length() && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < text.length() && (text.charAt(i) == '+' || text.charAt(i) == '-'))
+                i++;
+            int exponent = i;
+            while (i < text.length() && Character.isDigit(text.charAt(i)))
+                i++;
+            if (i == exponent)
+                return false;
+        }
+        return i == text.length();
+    }
+
+    /**
+     * Turns one raw row, strings for CSV input and column objects for result sets, into cell values.
+     */
+    @FunctionalInterface
+    public interface RowConverter {
+        List<Object> convert(List<?> row);
+    }
+
+    @FunctionalInterface
+    private interface ReaderFactory {
+        RowReader open() throws Exception;
+    }
+
+    private interface RowReader extends AutoCloseable {
+
+        /**
+         * Returns the next row, or {@code null} at the end of the input.
+         */
+        List<?> next() throws Exception;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Upload stage input: hands out the converted rows batch by batch in input order. Failures of the earlier
+     * stages are rethrown unchecked, which makes the chunked writer stop and report them.
+     */
+    private static class BatchIterator implements Iterator<List<Object>> {
+
+        private final BlockingQueue<Future<List<List<Object>>>> batches;
+        private final ImportResult result;
+        private Iterator<List<Object>> current = List.<List<Object>>of().iterator();
+        private boolean finished;
+
+        BatchIterator(BlockingQueue<Future<List<List<Object>>>> batches, ImportResult result) {
+            this.batches = batches;
+            this.result = result;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && !finished) {
+                List<List<Object>> batch;
+                try {
+                    batch = batches.take().get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw fail(e);
+                }
+                catch (ExecutionException e) {
+                    throw fail(e.getCause() instanceof Exception cause ? cause : e);
+                }
+                if (batch.isEmpty())
+                    finished = true;
+                else
+                    current = batch.iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public List<Object> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.next();
+        }
+
+        private IllegalStateException fail(Exception e) {
+            result.failure = e;
+            return new IllegalStateException("Import input failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static class ResultSetReader implements RowReader {
+
+        private final ResultSet resultSet;
+        private final int columnCount;
+        private List<Object> header;
+
+        ResultSetReader(ResultSet resultSet, boolean includeHeader) throws SQLException {
+            this.resultSet = resultSet;
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            this.columnCount = metaData.getColumnCount();
+            if (includeHeader) {
+                header = new ArrayList<>(columnCount);
+                for (int column = 1; column <= columnCount; column++)
+                    header.add(metaData.getColumnLabel(column));
+            }
+        }
+
+        @Override
+        public List<?> next() throws SQLException {
+            if (header != null) {
+                List<Object> row = header;
+                header = null;
+                return row;
+            }
+            if (!resultSet.next())
+                return null;
+            List<Object> row = new ArrayList<>(columnCount);
+            for (int column = 1; column <= columnCount; column++)
+                row.add(resultSet.getObject(column));
+            return row;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Streaming CSV parser over a byte channel. Bytes are decoded through a fixed size buffer pair, so only the
+     * current record is materialized.
+     */
+    static class CsvReader implements RowReader, Closeable {
+
+        private final ReadableByteChannel channel;
+        private final CharsetDecoder decoder;
+        private final char delimiter;
+        private final char quote;
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private final CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+        private final StringBuilder field = new StringBuilder();
+        private boolean endOfInput;
+        private boolean flushed;
+        private boolean started;
+        private int pending = -1;
+        private int width = 8;
+        private long line = 1;
+
+        CsvReader(ReadableByteChannel channel, Charset charset, char delimiter, char quote) {
+            this.channel = channel;
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.delimiter = delimiter;
+            this.quote = quote;
+            this.chars.flip();
+        }
+
+        @Override
+        public List<String> next() throws IOException {
+            int c = read();
+            if (!started) {
+                started = true;
+                if (c == '\uFEFF')
+                    c = read();
+            }
+            if (c < 0)
+                return null;
+            List<String> fields = new ArrayList<>(width);
+            field.setLength(0);
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0)
+                        throw new IOException("Unterminated quoted field starting before line " + line);
+                    if (c == quote) {
+                        int next = read();
+                        if (next != quote) {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    }
+                    else if (c == '\n')
+                        line++;
+                    field.append((char) c);
+                }
+                else if (c == delimiter) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                }
+                else if (c == '\n' || c == '\r' || c < 0) {
+                    if (c == '\r') {
+                        int next = read();
+                        if (next != '\n')
+                            pending = next;
+                    }
+                    fields.add(field.toString());
+                    line++;
+                    break;
+                }
+                else if (c == quote && field.length() == 0)
+                    quoted = true;
+                else
+                    field.append((char) c);
+                c = read();
+            }
+            width = Math.max(width, fields.size());
+            return fields;
+        }
+
+        private int read() throws IOException {
+            if (pending != -1) {
+                int c = pending;
+                pending = -1;
+                return c;
+            }
+            if (!chars.hasRemaining() && !fill())
+                return -1;
+            return chars.get();
+        }
+
+        private boolean fill() throws IOException {
+            chars.clear();
+            while (!flushed) {
+                if (!endOfInput && channel.read(bytes) < 0)
+                    endOfInput = true;
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                bytes.compact();
+                if (result.isError())
+                    result.throwException();
+                if (endOfInput && !result.isOverflow()) {
+                    decoder.flush(chars);
+                    flushed = true;
+                }
+                if (chars.position() > 0)
+                    break;
+            }
+            chars.flip();
+            return chars.hasRemaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Outcome of an import. Rows written are the rows acknowledged by the API, which can be fewer than the rows
+     * read if the import failed.
+     */
+    public static class ImportResult {
+
+        private final AtomicLong rowsRead = new AtomicLong();
+        private volatile ChunkedSheetWriter.ChunkedWriteResult writeResult;
+        private volatile Exception failure;
+        private volatile long elapsedNanos;
+
+        public boolean isComplete() {
+            return failure == null;
+        }
+
+        public Exception getFailure() {
+            return failure;
+        }
+
+        public long getRowsRead() {
+            return rowsRead.get();
+        }
+
+        public long getRowsWritten() {
+            return writeResult != null ? writeResult.getRowsWritten() : 0;
+        }
+
+        /**
+         * Result of the upload stage, which can be passed to {@link ChunkedSheetWriter#resume} after a failure.
+         */
+        public ChunkedSheetWriter.ChunkedWriteResult getWriteResult() {
+            return writeResult;
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos > 0 ? getRowsWritten() * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "ImportResult{rowsRead=" + getRowsRead() + ", rowsWritten=" + getRowsWritten()
+                    + ", elapsedMillis=" + getElapsedMillis() + ", rowsPerSecond=" + Math.round(getRowsPerSecond())
+                    + ", failure=" + failure + "}";
+        }
+    }
+}
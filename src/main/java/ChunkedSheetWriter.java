@@ -0,0 +1,476 @@
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.UpdateValuesResponse;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Streams rows into a sheet as a sequence of {@code values().update} calls.
+ * <p>
+ * Rows are pulled from an iterator, a supplier or a {@link ColumnarRowBuffer} and cut into chunks bounded by cell count and estimated
+ * JSON size. Each chunk gets its own A1 range and at most {@code maxInFlight} chunks are uploaded
+ * concurrently; the producer blocks when that limit is reached, so only the in-flight chunks are held in
+ * memory. Chunk boundaries depend only on the row data, so a failed write can be resumed with
+ * {@link #resume(ChunkedWriteResult, Iterator)} and only the chunks that were not acknowledged are sent again.
+ */
+public class ChunkedSheetWriter {
+
+    private static final Logger logger = LogManager.getLogger(ChunkedSheetWriter.class);
+
+    private static final int DEFAULT_MAX_CELLS_PER_CHUNK = 50_000;
+    private static final long DEFAULT_MAX_BYTES_PER_CHUNK = 2L * 1024 * 1024;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final GoogleClientProvider clientProvider;
+    private int maxCellsPerChunk = DEFAULT_MAX_CELLS_PER_CHUNK;
+    private long maxBytesPerChunk = DEFAULT_MAX_BYTES_PER_CHUNK;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    public ChunkedSheetWriter(GoogleClientProvider clientProvider) {
+        this.clientProvider = clientProvider;
+    }
+
+    public int getMaxCellsPerChunk() {
+        return maxCellsPerChunk;
+    }
+
+    public ChunkedSheetWriter setMaxCellsPerChunk(int maxCellsPerChunk) {
+        this.maxCellsPerChunk = maxCellsPerChunk;
+        return this;
+    }
+
+    public long getMaxBytesPerChunk() {
+        return maxBytesPerChunk;
+    }
+
+    public ChunkedSheetWriter setMaxBytesPerChunk(long maxBytesPerChunk) {
+        this.maxBytesPerChunk = maxBytesPerChunk;
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public ChunkedSheetWriter setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public ChunkedWriteResult write(String workBookId, String sheetName, String startingCell, String inputType,
+                                    Iterator<List<Object>> rows) {
+        return write(new ChunkedWriteResult(workBookId, sheetName, startingCell, inputType), rows);
+    }
+
+    /**
+     * Writes rows produced by the supplier until it returns {@code null}.
+     */
+    public ChunkedWriteResult write(String workBookId, String sheetName, String startingCell, String inputType,
+                                    Supplier<List<Object>> rows) {
+        return write(workBookId, sheetName, startingCell, inputType, iterate(rows));
+    }
+
+    /**
+     * Resumes a failed write. {@code rows} must produce the same rows as the original write from the start;
+     * chunks that were already acknowledged are skipped without being uploaded again.
+     */
+    public ChunkedWriteResult resume(ChunkedWriteResult previous, Iterator<List<Object>> rows) {
+        logger.debug("Resuming chunked write to " + previous.getSheetName() + " after "
+                + previous.getAcknowledgedRows() + " acknowledged rows");
+        return write(previous.retry(), rows);
+    }
+
+    /**
+     * Writes the rows of a columnar buffer. Each chunk is serialized straight from the buffer into the request
+     * body, so no row lists or {@code ValueRange} objects are created.
+     */
+    public ChunkedWriteResult write(String workBookId, String sheetName, String startingCell, String inputType,
+                                    ColumnarRowBuffer buffer) {
+        return write(new ChunkedWriteResult(workBookId, sheetName, startingCell, inputType), buffer);
+    }
+
+    /**
+     * Resumes a failed write of a columnar buffer, sending only the chunks that were not acknowledged.
+     */
+    public ChunkedWriteResult resume(ChunkedWriteResult previous, ColumnarRowBuffer buffer) {
+        logger.debug("Resuming chunked write to " + previous.getSheetName() + " after "
+                + previous.getAcknowledgedRows() + " acknowledged rows");
+        return write(previous.retry(), buffer);
+    }
+
+    private ChunkedWriteResult write(ChunkedWriteResult result, Iterator<List<Object>> rows) {
+        logger.debug("Inside method write for sheet " + result.getSheetName());
+        Sheets sheetService = getSheetService(result);
+        if (sheetService == null)
+            return result;
+        int startColumn = Math.max(A1Notation.columnNumber(result.getStartingCell()), 1);
+        int startRow = Math.max(A1Notation.rowNumber(result.getStartingCell()), 1);
+        Semaphore permits = new Semaphore(maxInFlight);
+        ExecutorService executor = Executors.newFixedThreadPool(maxInFlight);
+        try {
+            int chunkIndex = 0;
+            int chunkStartRow = startRow;
+            List<List<Object>> chunk = new ArrayList<>();
+            int chunkWidth = 0;
+            long chunkCells = 0;
+            long chunkBytes = 0;
+            while (rows.hasNext() && !result.hasFailed()) {
+                List<Object> row = rows.next();
+                long rowBytes = estimateJsonBytes(row);
+                if (!chunk.isEmpty() && (chunkCells + row.size() > maxCellsPerChunk
+                        || chunkBytes + rowBytes > maxBytesPerChunk)) {
+                    submitRows(sheetService, executor, permits, result, chunkIndex, chunkStartRow, startColumn, chunkWidth, chunk, chunkBytes);
+                    chunkIndex++;
+                    chunkStartRow += chunk.size();
+                    chunk = new ArrayList<>();
+                    chunkWidth = 0;
+                    chunkCells = 0;
+                    chunkBytes = 0;
+                }
+                chunk.add(row);
+                chunkWidth = Math.max(chunkWidth, row.size());
+                chunkCells += row.size();
+                chunkBytes += rowBytes;
+            }
+            if (!chunk.isEmpty() && !result.hasFailed())
+                submitRows(sheetService, executor, permits, result, chunkIndex, chunkStartRow, startColumn, chunkWidth, chunk, chunkBytes);
+            permits.acquire(maxInFlight);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.fail(e);
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in chunked write " + e.getMessage(), e);
+            result.fail(e);
+        }
+        finally {
+            shutdown(executor);
+        }
+        logger.debug("Chunked write finished with " + result.getRowsWritten() + " rows in "
+                + result.getChunksWritten() + " chunks, acknowledged rows " + result.getAcknowledgedRows());
+        return result;
+    }
+
+    private ChunkedWriteResult write(ChunkedWriteResult result, ColumnarRowBuffer buffer) {
+        logger.debug("Inside method write for sheet " + result.getSheetName() + " from columnar buffer");
+        Sheets sheetService = getSheetService(result);
+        if (sheetService == null)
+            return result;
+        int startColumn = Math.max(A1Notation.columnNumber(result.getStartingCell()), 1);
+        int startRow = Math.max(A1Notation.rowNumber(result.getStartingCell()), 1);
+        int width = buffer.getColumnCount();
+        Semaphore permits = new Semaphore(maxInFlight);
+        ExecutorService executor = Executors.newFixedThreadPool(maxInFlight);
+        try {
+            int chunkIndex = 0;
+            int chunkStart = 0;
+            long chunkBytes = 0;
+            for (int row = 0; row < buffer.getRowCount() && !result.hasFailed(); row++) {
+                long rowBytes = buffer.estimateJsonBytes(row);
+                if (row > chunkStart && ((long) (row - chunkStart + 1) * width > maxCellsPerChunk
+                        || chunkBytes + rowBytes > maxBytesPerChunk)) {
+                    submitBuffer(sheetService, executor, permits, result, chunkIndex, startRow, startColumn, buffer, chunkStart, row, chunkBytes);
+                    chunkIndex++;
+                    chunkStart = row;
+                    chunkBytes = 0;
+                }
+                chunkBytes += rowBytes;
+            }
+            if (chunkStart < buffer.getRowCount() && !result.hasFailed())
+                submitBuffer(sheetService, executor, permits, result, chunkIndex, startRow, startColumn, buffer, chunkStart, buffer.getRowCount(), chunkBytes);
+            permits.acquire(maxInFlight);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.fail(e);
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in chunked write " + e.getMessage(), e);
+            result.fail(e);
+        }
+        finally {
+            shutdown(executor);
+        }
+        logger.debug("Chunked write finished with " + result.getRowsWritten() + " rows in "
+                + result.getChunksWritten() + " chunks, acknowledged rows " + result.getAcknowledgedRows());
+        return result;
+    }
+
+    private Sheets getSheetService(ChunkedWriteResult result) {
+        try {
+            return clientProvider.getSheetService();
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in initializing sheets service " + e.getMessage(), e);
+            result.fail(e);
+            return null;
+        }
+    }
+
+    private void submitRows(Sheets sheetService, ExecutorService executor, Semaphore permits, ChunkedWriteResult result,
+                            int chunkIndex, int chunkStartRow, int startColumn, int width, List<List<Object>> chunk,
+                            long chunkBytes) throws InterruptedException {
+        if (result.isAcknowledged(chunkIndex)) {
+            logger.debug("Skipping acknowledged chunk " + chunkIndex);
+            return;
+        }
+        String range = chunkRange(result, startColumn, chunkStartRow, width, chunk.size());
+        submit(executor, permits, result, chunkIndex, range, chunk.size(), chunkBytes, () -> sheetService
+                .spreadsheets()
+                .values()
+                .update(result.getWorkBookId(), range, new ValueRange().setValues(chunk))
+                .setValueInputOption(result.getInputType())
+                .setFields(GoogleSheetsUtil.UPDATE_FIELDS));
+    }
+
+    private void submitBuffer(Sheets sheetService, ExecutorService executor, Semaphore permits, ChunkedWriteResult result,
+                              int chunkIndex, int startRow, int startColumn, ColumnarRowBuffer buffer, int fromRow,
+                              int toRow, long chunkBytes) throws InterruptedException {
+        if (result.isAcknowledged(chunkIndex)) {
+            logger.debug("Skipping acknowledged chunk " + chunkIndex);
+            return;
+        }
+        String range = chunkRange(result, startColumn, startRow + fromRow, buffer.getColumnCount(), toRow - fromRow);
+        submit(executor, permits, result, chunkIndex, range, toRow - fromRow, chunkBytes, () -> SheetsValuesRequest
+                .update(sheetService, result.getWorkBookId(), range, result.getInputType(), buffer, fromRow, toRow));
+    }
+
+    private void submit(ExecutorService executor, Semaphore permits, ChunkedWriteResult result, int chunkIndex,
+                        String range, int rowCount, long chunkBytes,
+                        ChunkRequest request) throws InterruptedException {
+        permits.acquire();
+        executor.execute(() -> {
+            try {
+                upload(result, chunkIndex, range, rowCount, chunkBytes, request);
+            }
+            finally {
+                permits.release();
+            }
+        });
+    }
+
+    private void upload(ChunkedWriteResult result, int chunkIndex, String range, int rowCount, long chunkBytes,
+                        ChunkRequest request) {
+        if (result.hasFailed())
+            return;
+        try {
+            UpdateValuesResponse response = clientProvider.getScheduler().execute(SheetsOperation.WRITE, request.build());
+            long cells = response != null && response.getUpdatedCells() != null ? response.getUpdatedCells() : 0;
+            result.acknowledge(chunkIndex, rowCount, cells, chunkBytes);
+            logger.debug("Wrote chunk " + chunkIndex + " to range " + range);
+        }
+        catch (Exception e) {
+            logger.error("Failed to write chunk " + chunkIndex + " to range " + range + " " + e.getMessage(), e);
+            result.fail(e);
+        }
+    }
+
+    private static String chunkRange(ChunkedWriteResult result, int startColumn, int chunkStartRow, int width, int rowCount) {
+        return A1Range.ofSize(result.getSheetName(), startColumn, chunkStartRow, rowCount, Math.max(width, 1)).toA1Notation();
+    }
+
+    /**
+     * Waits for every submitted upload to finish, so the acknowledged chunks of the result are final when it
+     * is returned. If the caller is interrupted the uploads are interrupted too, and still waited for.
+     */
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES))
+                    break;
+                logger.debug("Waiting for chunk uploads to finish");
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+                executor.shutdownNow();
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Builds the update request of one chunk when its upload starts.
+     */
+    @FunctionalInterface
+    private interface ChunkRequest {
+        AbstractGoogleClientRequest<UpdateValuesResponse> build() throws IOException;
+    }
+
+    static long estimateJsonBytes(List<Object> row) {
+        long bytes = 2 + Math.max(row.size() - 1, 0);
+        for (Object value : row) {
+            if (value == null)
+                bytes += 4;
+            else if (value instanceof Number || value instanceof Boolean)
+                bytes += value.toString().length();
+            else {
+                String text = value.toString();
+                bytes += 2;
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == '"' || c == '\\')
+                        bytes += 2;
+                    else if (c < 0x20)
+                        bytes += 6;
+                    else if (c < 0x80)
+                        bytes += 1;
+                    else if (c < 0x800)
+                        bytes += 2;
+                    else
+                        bytes += 3;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static Iterator<List<Object>> iterate(Supplier<List<Object>> rows) {
+        return new Iterator<>() {
+            private List<Object> next = rows.get();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public List<Object> next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                List<Object> current = next;
+                next = rows.get();
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Outcome of a chunked write, including which chunks were acknowledged so that a failed write can be resumed.
+     */
+    public static class ChunkedWriteResult {
+
+        private final String workBookId;
+        private final String sheetName;
+        private final String startingCell;
+        private final String inputType;
+        private final Set<Integer> acknowledgedChunks;
+        private final ConcurrentHashMap<Integer, Integer> acknowledgedChunkRows;
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final AtomicLong cellsWritten = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        ChunkedWriteResult(String workBookId, String sheetName, String startingCell, String inputType) {
+            this(workBookId, sheetName, startingCell, inputType, new ConcurrentHashMap<>());
+        }
+
+        private ChunkedWriteResult(String workBookId, String sheetName, String startingCell, String inputType,
+                                   ConcurrentHashMap<Integer, Integer> acknowledgedChunkRows) {
+            this.workBookId = workBookId;
+            this.sheetName = sheetName;
+            this.startingCell = startingCell;
+            this.inputType = inputType;
+            this.acknowledgedChunkRows = acknowledgedChunkRows;
+            this.acknowledgedChunks = acknowledgedChunkRows.keySet();
+        }
+
+        public String getWorkBookId() {
+            return workBookId;
+        }
+
+        public String getSheetName() {
+            return sheetName;
+        }
+
+        public String getStartingCell() {
+            return startingCell;
+        }
+
+        public String getInputType() {
+            return inputType;
+        }
+
+        public boolean isComplete() {
+            return failure.get() == null;
+        }
+
+        public Exception getFailure() {
+            return failure.get();
+        }
+
+        public int getChunksWritten() {
+            return acknowledgedChunks.size();
+        }
+
+        public long getRowsWritten() {
+            return rowsWritten.get();
+        }
+
+        public long getCellsWritten() {
+            return cellsWritten.get();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.get();
+        }
+
+        /**
+         * Number of rows from the start of the data that are known to be written, i.e. the rows of the
+         * leading run of acknowledged chunks.
+         */
+        public long getAcknowledgedRows() {
+            long rows = 0;
+            for (int index = 0; acknowledgedChunkRows.containsKey(index); index++)
+                rows += acknowledgedChunkRows.get(index);
+            return rows;
+        }
+
+        boolean isAcknowledged(int chunkIndex) {
+            return acknowledgedChunks.contains(chunkIndex);
+        }
+
+        boolean hasFailed() {
+            return failure.get() != null;
+        }
+
+        void acknowledge(int chunkIndex, int rows, long cells, long bytes) {
+            acknowledgedChunkRows.put(chunkIndex, rows);
+            rowsWritten.addAndGet(rows);
+            cellsWritten.addAndGet(cells);
+            bytesWritten.addAndGet(bytes);
+        }
+
+        void fail(Exception e) {
+            failure.compareAndSet(null, e);
+        }
+
+        ChunkedWriteResult retry() {
+            ChunkedWriteResult retry = new ChunkedWriteResult(workBookId, sheetName, startingCell, inputType,
+                    new ConcurrentHashMap<>(acknowledgedChunkRows));
+            retry.rowsWritten.set(rowsWritten.get());
+            retry.cellsWritten.set(cellsWritten.get());
+            retry.bytesWritten.set(bytesWritten.get());
+            return retry;
+        }
+    }
+}
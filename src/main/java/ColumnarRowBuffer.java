@@ -0,0 +1,466 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed, column oriented buffer of sheet rows.
+ * <p>
+ * Numbers, booleans and dates are held in primitive arrays and strings are dictionary encoded, so a buffer
+ * of a million cells costs a few primitive arrays instead of a million boxed values and an {@code ArrayList}
+ * per row. The buffer writes itself straight into a JSON stream as a {@code values} array and can be filled
+ * straight from a {@code ValueRange} JSON stream, with no intermediate object tree in either direction.
+ * <p>
+ * Dates are written as ISO-8601 strings, which the {@code USER_ENTERED} input option parses as dates, and are
+ * read back from either date serial numbers or ISO-8601 strings.
+ */
+public class ColumnarRowBuffer {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long SERIAL_NUMBER_OF_EPOCH = 25569;
+
+    public enum ColumnType {
+        NUMBER,
+        BOOLEAN,
+        DATE,
+        STRING
+    }
+
+    private final ColumnType[] types;
+    private final Column[] columns;
+    private int rowCount;
+    private int capacity = INITIAL_CAPACITY;
+
+    public ColumnarRowBuffer(ColumnType... types) {
+        this.types = types.clone();
+        this.columns = new Column[types.length];
+        for (int i = 0; i < types.length; i++)
+            columns[i] = newColumn(types[i], capacity);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    public ColumnType getColumnType(int column) {
+        return types[column];
+    }
+
+    /**
+     * Appends a row with every cell empty and returns its index.
+     */
+    public int addRow() {
+        if (rowCount == capacity) {
+            capacity = capacity * 2;
+            for (Column column : columns)
+                column.grow(capacity);
+        }
+        return rowCount++;
+    }
+
+    /**
+     * Appends a row converting each value to its column type. Values beyond the last column are ignored.
+     */
+    public int addRow(List<Object> values) {
+        int row = addRow();
+        for (int column = 0; column < Math.min(values.size(), types.length); column++)
+            setValue(row, column, values.get(column));
+        return row;
+    }
+
+    public void setNumber(int row, int column, double value) {
+        ((NumberColumn) columns[column]).set(row, value);
+    }
+
+    public void setBoolean(int row, int column, boolean value) {
+        ((BooleanColumn) columns[column]).set(row, value);
+    }
+
+    public void setDate(int row, int column, LocalDate value) {
+        if (value == null)
+            setNull(row, column);
+        else
+            ((DateColumn) columns[column]).set(row, (int) value.toEpochDay());
+    }
+
+    public void setString(int row, int column, String value) {
+        if (value == null)
+            setNull(row, column);
+        else
+            ((StringColumn) columns[column]).set(row, value);
+    }
+
+    public void setNull(int row, int column) {
+        columns[column].clear(row);
+    }
+
+    public void setValue(int row, int column, Object value) {
+        if (value == null) {
+            setNull(row, column);
+            return;
+        }
+        switch (types[column]) {
+            case NUMBER -> {
+                if (value instanceof Number number)
+                    setNumber(row, column, number.doubleValue());
+                else
+                    setNumber(row, column, Double.parseDouble(value.toString()));
+            }
+            case BOOLEAN -> setBoolean(row, column, value instanceof Boolean bool ? bool : Boolean.parseBoolean(value.toString()));
+            case DATE -> setDate(row, column, value instanceof LocalDate date ? date : LocalDate.parse(value.toString()));
+            case STRING -> setString(row, column, value.toString());
+        }
+    }
+
+    public boolean isNull(int row, int column) {
+        return !columns[column].isSet(row);
+    }
+
+    public double getNumber(int row, int column) {
+        return ((NumberColumn) columns[column]).values[row];
+    }
+
+    public boolean getBoolean(int row, int column) {
+        return ((BooleanColumn) columns[column]).get(row);
+    }
+
+    public LocalDate getDate(int row, int column) {
+        return isNull(row, column) ? null : LocalDate.ofEpochDay(((DateColumn) columns[column]).epochDays[row]);
+    }
+
+    public String getString(int row, int column) {
+        return isNull(row, column) ? null : ((StringColumn) columns[column]).get(row);
+    }
+
+    /**
+     * Returns a cell as a boxed value, for callers that need the {@code List<List<Object>>} view.
+     */
+    public Object getValue(int row, int column) {
+        if (isNull(row, column))
+            return null;
+        return switch (types[column]) {
+            case NUMBER -> getNumber(row, column);
+            case BOOLEAN -> getBoolean(row, column);
+            case DATE -> getDate(row, column);
+            case STRING -> getString(row, column);
+        };
+    }
+
+    public List<List<Object>> toRows() {
+        List<List<Object>> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            List<Object> values = new ArrayList<>(types.length);
+            for (int column = 0; column < types.length; column++)
+                values.add(getValue(row, column));
+            rows.add(values);
+        }
+        return rows;
+    }
+
+    /**
+     * Empties the buffer while keeping its arrays and string dictionaries for reuse.
+     */
+    public void clear() {
+        for (Column column : columns)
+            column.reset(rowCount);
+        rowCount = 0;
+    }
+
+    /**
+     * Estimated size in bytes of one row in the JSON request body, used to size upload chunks.
+     */
+    long estimateJsonBytes(int row) {
+        long bytes = 2 + Math.max(types.length - 1, 0);
+        for (int column = 0; column < types.length; column++) {
+            if (isNull(row, column)) {
+                bytes += 4;
+                continue;
+            }
+            bytes += switch (types[column]) {
+                case NUMBER -> 12;
+                case BOOLEAN -> 5;
+                case DATE -> 12;
+                case STRING -> ((StringColumn) columns[column]).get(row).length() + 2;
+            };
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes rows {@code fromRow} (inclusive) to {@code toRow} (exclusive) as a JSON array of row arrays.
+     * Empty cells are written as JSON null, which leaves the target cell unchanged.
+     */
+    public void writeValues(JsonWriter writer, int fromRow, int toRow) throws IOException {
+        writer.beginArray();
+        for (int row = fromRow; row < toRow; row++) {
+            writer.beginArray();
+            for (int column = 0; column < types.length; column++) {
+                if (isNull(row, column)) {
+                    writer.nullValue();
+                    continue;
+                }
+                switch (types[column]) {
+                    case NUMBER -> {
+                        double value = getNumber(row, column);
+                        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+                            writer.value((long) value);
+                        else
+                            writer.value(value);
+                    }
+                    case BOOLEAN -> writer.value(getBoolean(row, column));
+                    case DATE -> writer.value(LocalDate.ofEpochDay(((DateColumn) columns[column]).epochDays[row]).toString());
+                    case STRING -> writer.value(((StringColumn) columns[column]).get(row));
+                }
+            }
+            writer.endArray();
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Appends the rows of a {@code ValueRange} JSON document read from {@code reader}. Cells are converted to
+     * the column types of this buffer; cells that cannot be converted are left empty and columns beyond the
+     * last buffer column are skipped.
+     */
+    public void readValueRange(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("values".equals(reader.nextName()))
+                readValues(reader);
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+    }
+
+    private void readValues(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int row = addRow();
+            reader.beginArray();
+            int column = 0;
+            while (reader.hasNext()) {
+                if (column < types.length)
+                    readCell(reader, row, column);
+                else
+                    reader.skipValue();
+                column++;
+            }
+            reader.endArray();
+        }
+        reader.endArray();
+    }
+
+    private void readCell(JsonReader reader, int row, int column) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+        switch (types[column]) {
+            case STRING -> {
+                if (token == JsonToken.BOOLEAN)
+                    setString(row, column, Boolean.toString(reader.nextBoolean()));
+                else {
+                    String value = reader.nextString();
+                    if (!value.isEmpty())
+                        setString(row, column, value);
+                }
+            }
+            case NUMBER -> {
+                if (token == JsonToken.NUMBER)
+                    setNumber(row, column, reader.nextDouble());
+                else {
+                    String value = token == JsonToken.BOOLEAN ? Boolean.toString(reader.nextBoolean()) : reader.nextString();
+                    try {
+                        setNumber(row, column, Double.parseDouble(value.replace(",", "")));
+                    }
+                    catch (NumberFormatException ignored) {
+                        // not a number, leave the cell empty
+                    }
+                }
+            }
+            case BOOLEAN -> {
+                if (token == JsonToken.BOOLEAN)
+                    setBoolean(row, column, reader.nextBoolean());
+                else {
+                    String value = reader.nextString();
+                    if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false"))
+                        setBoolean(row, column, Boolean.parseBoolean(value));
+                }
+            }
+            case DATE -> {
+                if (token == JsonToken.NUMBER)
+                    ((DateColumn) columns[column]).set(row, (int) (Math.floor(reader.nextDouble()) - SERIAL_NUMBER_OF_EPOCH));
+                else {
+                    String value = token == JsonToken.BOOLEAN ? Boolean.toString(reader.nextBoolean()) : reader.nextString();
+                    try {
+                        setDate(row, column, LocalDate.parse(value));
+                    }
+                    catch (RuntimeException ignored) {
+                        // not an ISO date, leave the cell empty
+                    }
+                }
+            }
+        }
+    }
+
+    private static Column newColumn(ColumnType type, int capacity) {
+        return switch (type) {
+            case NUMBER -> new NumberColumn(capacity);
+            case BOOLEAN -> new BooleanColumn(capacity);
+            case DATE -> new DateColumn(capacity);
+            case STRING -> new StringColumn(capacity);
+        };
+    }
+
+    /**
+     * Column storage with a presence bitmap; a cleared bit means the cell is empty.
+     */
+    private abstract static class Column {
+
+        long[] present;
+
+        Column(int capacity) {
+            present = new long[words(capacity)];
+        }
+
+        boolean isSet(int row) {
+            return (present[row >>> 6] & (1L << row)) != 0;
+        }
+
+        void mark(int row) {
+            present[row >>> 6] |= 1L << row;
+        }
+
+        void clear(int row) {
+            present[row >>> 6] &= ~(1L << row);
+        }
+
+        void grow(int capacity) {
+            present = Arrays.copyOf(present, words(capacity));
+        }
+
+        void reset(int rows) {
+            Arrays.fill(present, 0, words(rows), 0L);
+        }
+
+        static int words(int capacity) {
+            return (capacity + 63) >>> 6;
+        }
+    }
+
+    private static final class NumberColumn extends Column {
+
+        double[] values;
+
+        NumberColumn(int capacity) {
+            super(capacity);
+            values = new double[capacity];
+        }
+
+        void set(int row, double value) {
+            values[row] = value;
+            mark(row);
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private static final class BooleanColumn extends Column {
+
+        long[] values;
+
+        BooleanColumn(int capacity) {
+            super(capacity);
+            values = new long[words(capacity)];
+        }
+
+        void set(int row, boolean value) {
+            if (value)
+                values[row >>> 6] |= 1L << row;
+            else
+                values[row >>> 6] &= ~(1L << row);
+            mark(row);
+        }
+
+        boolean get(int row) {
+            return (values[row >>> 6] & (1L << row)) != 0;
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, words(capacity));
+        }
+    }
+
+    private static final class DateColumn extends Column {
+
+        int[] epochDays;
+
+        DateColumn(int capacity) {
+            super(capacity);
+            epochDays = new int[capacity];
+        }
+
+        void set(int row, int epochDay) {
+            epochDays[row] = epochDay;
+            mark(row);
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+        }
+    }
+
+    private static final class StringColumn extends Column {
+
+        int[] codes;
+        final List<String> dictionary = new ArrayList<>();
+        final Map<String, Integer> codesByValue = new HashMap<>();
+
+        StringColumn(int capacity) {
+            super(capacity);
+            codes = new int[capacity];
+        }
+
+        void set(int row, String value) {
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codesByValue.put(value, code);
+            }
+            codes[row] = code;
+            mark(row);
+        }
+
+        String get(int row) {
+            return dictionary.get(codes[row]);
+        }
+
+        @Override
+        void grow(int capacity) {
+            super.grow(capacity);
+            codes = Arrays.copyOf(codes, capacity);
+        }
+    }
+}
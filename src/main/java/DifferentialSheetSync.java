@@ -0,0 +1,621 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps sheets in line with a dataset by uploading only the cells that changed since the last sync.
+ * <p>
+ * For every sheet it has pushed, the sync keeps an index of the last state written: a 64-bit hash per row
+ * and a 32-bit hash per cell. A new dataset is streamed row by row against that index. Rows whose hash is
+ * unchanged are skipped outright; for the others the changed cells are grouped into runs, runs with the same
+ * columns on consecutive rows are merged into one range, and the ranges are sent through
+ * {@link GoogleSheetsUtil#writeRanges(String, Map, String)}, which packs them into as few
+ * {@code values().batchUpdate} calls as the payload limit allows. Rows and cells that are no longer in the
+ * dataset are cleared. The first sync of a sheet, or a sync after {@link #invalidate(String, String)}, clears
+ * the sheet from the starting cell to its last row and column and writes it in full; cells above and to the
+ * left of the starting cell are kept.
+ * <p>
+ * The index takes roughly four bytes per cell, and pending changes are flushed once they reach
+ * {@code flushBytes}, so memory stays bounded for sheets of millions of cells. The index only records rows
+ * whose ranges were acknowledged, so a partly failed sync resends the missing cells next time. When an index
+ * directory is set the index is also kept on disk, so separate runs of a job can share it.
+ * <p>
+ * Syncs of different sheets may run concurrently; syncs of the same sheet must not.
+ */
+public class DifferentialSheetSync {
+
+    private static final Logger logger = LogManager.getLogger(DifferentialSheetSync.class);
+
+    private static final long DEFAULT_FLUSH_BYTES = 1024 * 1024;
+    private static final int DEFAULT_MAX_GAP = 2;
+    private static final int INDEX_FILE_MAGIC = 0x53594E43;
+    private static final int INDEX_FILE_VERSION = 1;
+    private static final int[] EMPTY_ROW = new int[0];
+    private static final String CLEARED_CELL = "";
+
+    private final GoogleSheetsUtil sheetsUtil;
+    private final Map<String, SheetIndex> indexes = new ConcurrentHashMap<>();
+    private long flushBytes = DEFAULT_FLUSH_BYTES;
+    private int maxGap = DEFAULT_MAX_GAP;
+    private Path indexDirectory;
+
+    public DifferentialSheetSync(GoogleSheetsUtil sheetsUtil) {
+        this.sheetsUtil = sheetsUtil;
+    }
+
+    public long getFlushBytes() {
+        return flushBytes;
+    }
+
+    /**
+     * Sets the estimated payload size at which pending changes are sent.
+     */
+    public DifferentialSheetSync setFlushBytes(long flushBytes) {
+        this.flushBytes = flushBytes;
+        return this;
+    }
+
+    public int getMaxGap() {
+        return maxGap;
+    }
+
+    /**
+     * Sets how many unchanged cells may separate two changed cells of a row before they are sent as separate
+     * ranges. Small gaps cost less to resend than the overhead of an extra range.
+     */
+    public DifferentialSheetSync setMaxGap(int maxGap) {
+        this.maxGap = Math.max(0, maxGap);
+        return this;
+    }
+
+    public Path getIndexDirectory() {
+        return indexDirectory;
+    }
+
+    /**
+     * Sets a directory the sheet indexes are loaded from and saved to, or {@code null} to keep them in memory only.
+     */
+    public DifferentialSheetSync setIndexDirectory(Path indexDirectory) {
+        this.indexDirectory = indexDirectory;
+        return this;
+    }
+
+    /**
+     * Forgets the index of a sheet, so that the next sync rewrites it in full. Use after the sheet was edited
+     * by other means.
+     */
+    public void invalidate(String workBookId, String sheetName) {
+        indexes.remove(key(workBookId, sheetName));
+        if (indexDirectory != null) {
+            try {
+                Files.deleteIfExists(indexFile(workBookId, sheetName));
+            }
+            catch (IOException e) {
+                logger.error("Failed to delete index of sheet " + sheetName + " " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public SyncResult sync(String workBookId, String sheetName, String startingCell, String inputType, List<List<Object>> rows) {
+        return sync(workBookId, sheetName, startingCell, inputType, rows.iterator());
+    }
+
+    /**
+     * Makes the sheet, from {@code startingCell} on, hold exactly {@code rows}, sending only what changed
+     * since the last sync of the sheet.
+     */
+    public SyncResult sync(String workBookId, String sheetName, String startingCell, String inputType, Iterator<List<Object>> rows) {
+        logger.debug("Inside method sync for sheet " + sheetName + " of workbook " + workBookId);
+        SyncResult result = new SyncResult(workBookId, sheetName);
+        SheetIndex previous = loadIndex(workBookId, sheetName);
+        if (previous == null || !previous.startingCell.equalsIgnoreCase(startingCell)) {
+            logger.debug("No usable index for sheet " + sheetName + ", rewriting it in full");
+            if (sheetsUtil.clearRanges(workBookId, List.of(rewriteRange(workBookId, sheetName, startingCell))).isEmpty()) {
+                result.failed = true;
+                return result;
+            }
+            previous = new SheetIndex(startingCell, 0);
+            result.fullRewrite = true;
+        }
+
+        Diff diff = new Diff(workBookId, sheetName, startingCell, inputType, previous, result);
+        while (rows.hasNext())
+            diff.addRow(rows.next());
+        diff.finish();
+
+        SheetIndex updated = diff.buildIndex();
+        indexes.put(key(workBookId, sheetName), updated);
+        saveIndex(workBookId, sheetName, updated);
+        logger.debug("Synced sheet " + sheetName + ": " + result);
+        return result;
+    }
+
+    /**
+     * Returns the range a full rewrite clears: from {@code startingCell} to the last column of the sheet and
+     * down to the last row. The grid size is fetched fresh, since cached metadata misses columns added by
+     * earlier writes.
+     */
+    private SheetRange rewriteRange(String workBookId, String sheetName, String startingCell) {
+        int column = Math.max(A1Notation.columnNumber(startingCell), 1);
+        int row = Math.max(A1Notation.rowNumber(startingCell), 1);
+        if (column == 1 && row == 1)
+            return SheetRange.wholeSheet(sheetName);
+        int lastColumn = A1Notation.MAX_COLUMN;
+        try {
+            sheetsUtil.getMetadataCache().invalidate(workBookId);
+            WorkbookMetadataCache.SheetInfo sheet = sheetsUtil.getMetadataCache().get(workBookId).getSheet(sheetName);
+            if (sheet != null && sheet.columnCount() >= column)
+                lastColumn = sheet.columnCount();
+        }
+        catch (Exception e) {
+            logger.debug("No grid size for sheet " + sheetName + ", clearing to the last possible column: " + e.getMessage());
+        }
+        return new A1Range(sheetName, column, row, lastColumn, 0).toSheetRange();
+    }
+
+    private SheetIndex loadIndex(String workBookId, String sheetName) {
+        SheetIndex index = indexes.get(key(workBookId, sheetName));
+        if (index != null || indexDirectory == null)
+            return index;
+        Path file = indexFile(workBookId, sheetName);
+        if (!Files.exists(file))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            index = SheetIndex.readFrom(in);
+            indexes.put(key(workBookId, sheetName), index);
+            logger.debug("Loaded index of " + index.rowCount + " rows for sheet " + sheetName);
+            return index;
+        }
+        catch (IOException e) {
+            logger.error("Failed to load index of sheet " + sheetName + " from " + file + " " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private void saveIndex(String workBookId, String sheetName, SheetIndex index) {
+        if (indexDirectory == null)
+            return;
+        Path file = indexFile(workBookId, sheetName);
+        try {
+            Files.createDirectories(indexDirectory);
+            Path temp = Files.createTempFile(indexDirectory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                index.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            logger.error("Failed to save index of sheet " + sheetName + " to " + file + " " + e.getMessage(), e);
+        }
+    }
+
+    private Path indexFile(String workBookId, String sheetName) {
+        String name = workBookId.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + Long.toHexString(hashString(sheetName)) + ".idx";
+        return indexDirectory.resolve(name);
+    }
+
+    private static String key(String workBookId, String sheetName) {
+        return workBookId + '\u0000' + sheetName;
+    }
+
+    /**
+     * Compares the rows of one sync against the previous index, collecting changed runs and the new index.
+     */
+    private class Diff {
+
+        private final String workBookId;
+        private final String sheetName;
+        private final String inputType;
+        private final SheetIndex previous;
+        private final SyncResult result;
+        private final int startColumn;
+        private final int startRow;
+        private final SheetIndex next;
+        private final BitSet unconfirmedRows = new BitSet();
+        private Map<Long, Run> openRuns = new HashMap<>();
+        private final List<Run> pendingRuns = new ArrayList<>();
+        private long pendingBytes;
+        private int row;
+
+        Diff(String workBookId, String sheetName, String startingCell, String inputType, SheetIndex previous, SyncResult result) {
+            this.workBookId = workBookId;
+            this.sheetName = sheetName;
+            this.inputType = inputType;
+            this.previous = previous;
+            this.result = result;
+            this.startColumn = Math.max(A1Notation.columnNumber(startingCell), 1);
+            this.startRow = Math.max(A1Notation.rowNumber(startingCell), 1);
+            this.next = new SheetIndex(startingCell, Math.max(previous.rowCount, 16));
+        }
+
+        void addRow(List<Object> values) {
+            int width = width(values);
+            long rowHash = 0;
+            for (int column = 0; column < width; column++) {
+                Object value = values.get(column);
+                if (!isEmpty(value))
+                    rowHash = mixRow(rowHash, column, hashValue(value));
+            }
+            int[] oldCells = row < previous.rowCount ? previous.cellHashes[row] : EMPTY_ROW;
+            long oldRowHash = row < previous.rowCount ? previous.rowHashes[row] : 0;
+            long fullBytes = ChunkedSheetWriter.estimateJsonBytes(values);
+            result.rowsCompared++;
+            result.cellsCompared += Math.max(width, oldCells.length);
+            result.fullBytes += fullBytes;
+
+            if (rowHash == oldRowHash) {
+                next.add(rowHash, oldCells);
+                closeRunsNotIn(Map.of());
+                row++;
+                return;
+            }
+
+            int[] cells = width == 0 ? EMPTY_ROW : new int[width];
+            for (int column = 0; column < width; column++) {
+                Object value = values.get(column);
+                cells[column] = isEmpty(value) ? 0 : cellHash(hashValue(value));
+            }
+            next.add(rowHash, cells);
+            addRuns(values, cells, oldCells);
+            row++;
+            if (pendingBytes >= flushBytes)
+                flush();
+        }
+
+        private void addRuns(List<Object> values, int[] cells, int[] oldCells) {
+            int columns = Math.max(cells.length, oldCells.length);
+            Map<Long, Run> continued = new HashMap<>();
+            int runStart = -1;
+            int runEnd = -1;
+            for (int column = 0; column < columns; column++) {
+                int newHash = column < cells.length ? cells[column] : 0;
+                int oldHash = column < oldCells.length ? oldCells[column] : 0;
+                if (newHash == oldHash)
+                    continue;
+                if (runStart >= 0 && column - runEnd - 1 > maxGap) {
+                    addRun(values, runStart, runEnd, continued);
+                    runStart = -1;
+                }
+                if (runStart < 0)
+                    runStart = column;
+                runEnd = column;
+            }
+            if (runStart < 0 && columns > 0) {
+                runStart = 0;
+                runEnd = columns - 1;
+            }
+            if (runStart >= 0)
+                addRun(values, runStart, runEnd, continued);
+            closeRunsNotIn(continued);
+            openRuns = continued;
+        }
+
+        private void addRun(List<Object> values, int fromColumn, int toColumn, Map<Long, Run> continued) {
+            List<Object> runValues = new ArrayList<>(toColumn - fromColumn + 1);
+            for (int column = fromColumn; column <= toColumn; column++) {
+                Object value = column < values.size() ? values.get(column) : null;
+                runValues.add(value != null ? value : CLEARED_CELL);
+            }
+            long bytes = ChunkedSheetWriter.estimateJsonBytes(runValues);
+            long runKey = ((long) fromColumn << 32) | toColumn;
+            Run run = openRuns.remove(runKey);
+            if (run == null)
+                run = new Run(fromColumn, toColumn, row);
+            run.values.add(runValues);
+            run.bytes += bytes;
+            continued.put(runKey, run);
+            pendingBytes += bytes;
+        }
+
+        private void closeRunsNotIn(Map<Long, Run> continued) {
+            for (Map.Entry<Long, Run> entry : openRuns.entrySet()) {
+                if (!continued.containsKey(entry.getKey()))
+                    pendingRuns.add(entry.getValue());
+            }
+            openRuns = new HashMap<>();
+        }
+
+        private void flush() {
+            pendingRuns.addAll(openRuns.values());
+            openRuns = new HashMap<>();
+            if (pendingRuns.isEmpty())
+                return;
+            Map<SheetRange, List<List<Object>>> data = new LinkedHashMap<>();
+            Map<String, Run> runsByRange = new HashMap<>();
+            for (Run run : pendingRuns) {
+                A1Range range = A1Range.ofSize(sheetName, startColumn + run.fromColumn, startRow + run.fromRow,
+                        run.values.size(), run.toColumn - run.fromColumn + 1);
+                SheetRange sheetRange = range.toSheetRange();
+                data.put(sheetRange, run.values);
+                runsByRange.put(sheetRange.toA1Notation(), run);
+            }
+            Map<String, ?> written = sheetsUtil.writeRanges(workBookId, data, inputType);
+            for (Map.Entry<String, Run> entry : runsByRange.entrySet()) {
+                Run run = entry.getValue();
+                long cells = (long) run.values.size() * (run.toColumn - run.fromColumn + 1);
+                if (written.containsKey(entry.getKey())) {
+                    result.rangesWritten++;
+                    result.cellsWritten += cells;
+                    result.bytesWritten += run.bytes;
+                }
+                else {
+                    result.failed = true;
+                    unconfirmedRows.set(run.fromRow, run.fromRow + run.values.size());
+                }
+            }
+            pendingRuns.clear();
+            pendingBytes = 0;
+        }
+
+        void finish() {
+            closeRunsNotIn(Map.of());
+            flush();
+            if (row >= previous.rowCount)
+                return;
+            int removedWidth = 0;
+            for (int removed = row; removed < previous.rowCount; removed++)
+                removedWidth = Math.max(removedWidth, previous.cellHashes[removed].length);
+            if (removedWidth == 0)
+                return;
+            A1Range removedRows = A1Range.ofSize(sheetName, startColumn, startRow + row, previous.rowCount - row, removedWidth);
+            if (sheetsUtil.clearRanges(workBookId, List.of(removedRows.toSheetRange())).isEmpty())
+                result.failed = true;
+            else
+                result.rowsCleared = previous.rowCount - row;
+        }
+
+        SheetIndex buildIndex() {
+            for (int unconfirmed = unconfirmedRows.nextSetBit(0); unconfirmed >= 0; unconfirmed = unconfirmedRows.nextSetBit(unconfirmed + 1)) {
+                if (unconfirmed < previous.rowCount)
+                    next.set(unconfirmed, previous.rowHashes[unconfirmed], previous.cellHashes[unconfirmed]);
+                else
+                    next.set(unconfirmed, 0, EMPTY_ROW);
+            }
+            if (result.failed && result.rowsCleared == 0) {
+                for (int removed = row; removed < previous.rowCount; removed++)
+                    next.add(previous.rowHashes[removed], previous.cellHashes[removed]);
+            }
+            next.trim();
+            return next;
+        }
+    }
+
+    private static int width(List<Object> values) {
+        int width = values.size();
+        while (width > 0 && isEmpty(values.get(width - 1)))
+            width--;
+        return width;
+    }
+
+    private static boolean isEmpty(Object value) {
+        return value == null || value instanceof CharSequence text && text.isEmpty();
+    }
+
+    /**
+     * 64-bit hash of a cell value. Numbers, booleans and text hash differently even when they print the same,
+     * since they are written differently with {@code RAW} input.
+     */
+    private static long hashValue(Object value) {
+        long typeSeed = value instanceof Number ? 0x6E756D62L : value instanceof Boolean ? 0x626F6F6CL : 0x74657874L;
+        return fmix64(hashString(value.toString()) ^ typeSeed);
+    }
+
+    private static long hashString(String text) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long mixRow(long rowHash, int column, long cellHash) {
+        return rowHash * 0x9E3779B97F4A7C15L + fmix64(cellHash + column * 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private static int cellHash(long valueHash) {
+        int hash = (int) (valueHash ^ (valueHash >>> 32));
+        return hash != 0 ? hash : 1;
+    }
+
+    private static long fmix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Changed cells of consecutive rows sharing the same columns, sent as one range.
+     */
+    private static class Run {
+
+        private final int fromColumn;
+        private final int toColumn;
+        private final int fromRow;
+        private final List<List<Object>> values = new ArrayList<>();
+        private long bytes;
+
+        Run(int fromColumn, int toColumn, int fromRow) {
+            this.fromColumn = fromColumn;
+            this.toColumn = toColumn;
+            this.fromRow = fromRow;
+        }
+    }
+
+    /**
+     * Row and cell hashes of the last state written to a sheet. Unchanged rows share their cell hash arrays
+     * with the previous index.
+     */
+    private static class SheetIndex {
+
+        private final String startingCell;
+        private long[] rowHashes;
+        private int[][] cellHashes;
+        private int rowCount;
+
+        SheetIndex(String startingCell, int capacity) {
+            this.startingCell = startingCell;
+            this.rowHashes = new long[capacity];
+            this.cellHashes = new int[capacity][];
+        }
+
+        void add(long rowHash, int[] cells) {
+            if (rowCount == rowHashes.length) {
+                int capacity = Math.max(16, rowCount + (rowCount >> 1));
+                rowHashes = Arrays.copyOf(rowHashes, capacity);
+                cellHashes = Arrays.copyOf(cellHashes, capacity);
+            }
+            rowHashes[rowCount] = rowHash;
+            cellHashes[rowCount++] = cells;
+        }
+
+        void set(int row, long rowHash, int[] cells) {
+            rowHashes[row] = rowHash;
+            cellHashes[row] = cells;
+        }
+
+        void trim() {
+            while (rowCount > 0 && rowHashes[rowCount - 1] == 0)
+                cellHashes[--rowCount] = null;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(INDEX_FILE_MAGIC);
+            out.writeInt(INDEX_FILE_VERSION);
+            out.writeUTF(startingCell);
+            out.writeInt(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                out.writeLong(rowHashes[row]);
+                int[] cells = cellHashes[row];
+                out.writeInt(cells.length);
+                for (int cell : cells)
+                    out.writeInt(cell);
+            }
+        }
+
+        static SheetIndex readFrom(DataInputStream in) throws IOException {
+            if (in.readInt() != INDEX_FILE_MAGIC || in.readInt() != INDEX_FILE_VERSION)
+                throw new IOException("Not a sheet index file");
+            String startingCell = in.readUTF();
+            int rowCount = in.readInt();
+            SheetIndex index = new SheetIndex(startingCell, Math.max(rowCount, 16));
+            for (int row = 0; row < rowCount; row++) {
+                long rowHash = in.readLong();
+                int[] cells = new int[in.readInt()];
+                for (int column = 0; column < cells.length; column++)
+                    cells[column] = in.readInt();
+                index.add(rowHash, cells.length == 0 ? EMPTY_ROW : cells);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Outcome of one sync. Bytes are estimates of the JSON cell values, which is what a full rewrite would
+     * have sent for {@link #getFullBytes()}.
+     */
+    public static class SyncResult {
+
+        private final String workBookId;
+        private final String sheetName;
+        private boolean fullRewrite;
+        private boolean failed;
+        private long rowsCompared;
+        private long cellsCompared;
+        private long cellsWritten;
+        private long rangesWritten;
+        private long rowsCleared;
+        private long bytesWritten;
+        private long fullBytes;
+
+        SyncResult(String workBookId, String sheetName) {
+            this.workBookId = workBookId;
+            this.sheetName = sheetName;
+        }
+
+        public String getWorkBookId() {
+            return workBookId;
+        }
+
+        public String getSheetName() {
+            return sheetName;
+        }
+
+        /**
+         * Whether the sheet was cleared and written in full because no index of it was available.
+         */
+        public boolean isFullRewrite() {
+            return fullRewrite;
+        }
+
+        /**
+         * Whether any range failed to write or clear. Those cells are sent again by the next sync.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public long getRowsCompared() {
+            return rowsCompared;
+        }
+
+        public long getCellsCompared() {
+            return cellsCompared;
+        }
+
+        public long getCellsWritten() {
+            return cellsWritten;
+        }
+
+        public long getCellsAvoided() {
+            return Math.max(cellsCompared - cellsWritten, 0);
+        }
+
+        public long getRangesWritten() {
+            return rangesWritten;
+        }
+
+        public long getRowsCleared() {
+            return rowsCleared;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public long getFullBytes() {
+            return fullBytes;
+        }
+
+        public long getBytesAvoided() {
+            return Math.max(fullBytes - bytesWritten, 0);
+        }
+
+        @Override
+        public String toString() {
+            return "rows compared " + rowsCompared + ", cells written " + cellsWritten + " of " + cellsCompared
+                    + " in " + rangesWritten + " ranges, " + getBytesAvoided() + " bytes avoided, rows cleared "
+                    + rowsCleared + (fullRewrite ? ", full rewrite" : "") + (failed ? ", failed" : "");
+        }
+    }
+}
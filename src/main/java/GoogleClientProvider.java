@@ -0,0 +1,358 @@
+import com.google.api.client.googleapis.apache.v2.GoogleApacheHttpTransport;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.DriveScopes;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.SheetsScopes;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the HTTP transport, credentials and API clients used by {@link GoogleSheetsUtil}.
+ * <p>
+ * A single pooled keep-alive transport is created per provider and the {@link Sheets} and {@link Drive}
+ * clients are built lazily once and then shared, since both are thread-safe. Service account credentials
+ * are parsed once per scope set and their access tokens are refreshed ahead of expiry, so a normal call
+ * costs neither a TLS handshake nor a token round trip.
+ */
+public class GoogleClientProvider implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(GoogleClientProvider.class);
+
+    private static final String SERVICE_ACCOUNT_FILE_PATH = "service-account.json";
+    private static final long DEFAULT_REFRESH_AHEAD_SECONDS = 300;
+
+    private final String applicationName;
+    private final String serviceAccountJsonString;
+    private final JsonFactory jsonFactory = GsonFactory.getDefaultInstance();
+    private final HttpRequestInitializer requestInitializer;
+    private final Map<List<String>, RefreshAheadCredential> credentials = new ConcurrentHashMap<>();
+    private final AtomicLong clientsBuilt = new AtomicLong();
+    private final AtomicLong clientsReused = new AtomicLong();
+    private final AtomicLong credentialsLoaded = new AtomicLong();
+    private final AtomicLong tokenRefreshes = new AtomicLong();
+    private final SheetsMetrics metrics = new SheetsMetrics();
+
+    private volatile HttpTransport transport;
+    private volatile Sheets sheetService;
+    private volatile Drive driveService;
+    private volatile boolean closed;
+    private volatile long refreshAheadSeconds = DEFAULT_REFRESH_AHEAD_SECONDS;
+    private volatile boolean gzipEnabled = true;
+    private volatile RequestScheduler scheduler = new RequestScheduler(new RequestScheduler.Config(), metrics);
+    private Thread shutdownHook;
+
+    GoogleClientProvider(String applicationName, String serviceAccountJsonString) {
+        this.applicationName = applicationName;
+        this.serviceAccountJsonString = serviceAccountJsonString;
+        this.requestInitializer = null;
+    }
+
+    /**
+     * Creates a provider that sends every request through the given transport and initializer instead of
+     * the pooled Google transport and service account credentials. Used to run against a local stand-in API.
+     */
+    GoogleClientProvider(String applicationName, HttpTransport transport, HttpRequestInitializer requestInitializer) {
+        this.applicationName = applicationName;
+        this.serviceAccountJsonString = null;
+        this.transport = transport;
+        this.requestInitializer = requestInitializer;
+    }
+
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    public long getRefreshAheadSeconds() {
+        return refreshAheadSeconds;
+    }
+
+    public GoogleClientProvider setRefreshAheadSeconds(long refreshAheadSeconds) {
+        this.refreshAheadSeconds = refreshAheadSeconds;
+        return this;
+    }
+
+    public boolean isGzipEnabled() {
+        return gzipEnabled;
+    }
+
+    /**
+     * Sets whether request bodies are sent gzip compressed and responses are asked for with
+     * {@code Accept-Encoding: gzip}. On by default; turning it off only makes sense when the CPU spent on
+     * compression costs more than the bytes saved, e.g. against a server on the same host.
+     */
+    public GoogleClientProvider setGzipEnabled(boolean gzipEnabled) {
+        this.gzipEnabled = gzipEnabled;
+        return this;
+    }
+
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Replaces the scheduler, e.g. to apply a project's own quota. Calls already waiting keep the old limits.
+     */
+    public GoogleClientProvider setSchedulerConfig(RequestScheduler.Config config) {
+        this.scheduler = new RequestScheduler(config, metrics);
+        return this;
+    }
+
+    /**
+     * Latency, size, status and retry figures of the calls made with this provider's clients.
+     */
+    public SheetsMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Sheets getSheetService() throws Exception {
+        Sheets service = sheetService;
+        if (service == null) {
+            synchronized (this) {
+                service = sheetService;
+                if (service == null) {
+                    logger.debug("Building sheets service");
+                    service = new Sheets.Builder(getTransport(), jsonFactory,
+                            getRequestInitializer(Collections.singleton(SheetsScopes.SPREADSHEETS)))
+                            .setApplicationName(getApplicationName())
+                            .build();
+                    sheetService = service;
+                    clientsBuilt.incrementAndGet();
+                    return service;
+                }
+            }
+        }
+        clientsReused.incrementAndGet();
+        return service;
+    }
+
+    public Drive getDriveService() throws Exception {
+        Drive service = driveService;
+        if (service == null) {
+            synchronized (this) {
+                service = driveService;
+                if (service == null) {
+                    logger.debug("Building drive service");
+                    service = new Drive.Builder(getTransport(), jsonFactory,
+                            getRequestInitializer(Collections.singleton(DriveScopes.DRIVE_FILE)))
+                            .setApplicationName(getApplicationName())
+                            .build();
+                    driveService = service;
+                    clientsBuilt.incrementAndGet();
+                    return service;
+                }
+            }
+        }
+        clientsReused.incrementAndGet();
+        return service;
+    }
+
+    HttpTransport getTransport() throws Exception {
+        HttpTransport httpTransport = transport;
+        if (httpTransport == null) {
+            synchronized (this) {
+                if (closed)
+                    throw new IllegalStateException("Client provider for " + applicationName + " is closed");
+                httpTransport = transport;
+                if (httpTransport == null) {
+                    logger.debug("Creating pooled http transport");
+                    httpTransport = GoogleApacheHttpTransport.newTrustedTransport();
+                    transport = httpTransport;
+                }
+            }
+        }
+        return httpTransport;
+    }
+
+    JsonFactory getJsonFactory() {
+        return jsonFactory;
+    }
+
+    private HttpRequestInitializer getRequestInitializer(Collection<String> scopes) throws Exception {
+        if (requestInitializer != null)
+            return metrics.instrument(withContentEncoding(requestInitializer));
+        return metrics.instrument(withContentEncoding(getCredentials(scopes)));
+    }
+
+    /**
+     * Applies the gzip setting when a request is executed, after the client has set its content encoding,
+     * and before the metrics interceptor so that the sizes recorded are the ones sent.
+     */
+    private HttpRequestInitializer withContentEncoding(HttpRequestInitializer delegate) {
+        return request -> {
+            delegate.initialize(request);
+            HttpExecuteInterceptor interceptor = request.getInterceptor();
+            request.setInterceptor(executed -> {
+                if (interceptor != null)
+                    interceptor.intercept(executed);
+                if (gzipEnabled)
+                    executed.getHeaders().setAcceptEncoding("gzip");
+                else {
+                    // An absent header would let the Apache transport ask for gzip on its own.
+                    executed.setEncoding(null);
+                    executed.getHeaders().setAcceptEncoding("identity");
+                }
+            });
+        };
+    }
+
+    private RefreshAheadCredential getCredentials(Collection<String> scopes) throws Exception {
+        List<String> key = List.copyOf(scopes);
+        RefreshAheadCredential credential = credentials.get(key);
+        if (credential == null) {
+            synchronized (credentials) {
+                credential = credentials.get(key);
+                if (credential == null) {
+                    credential = new RefreshAheadCredential(loadCredentials(scopes));
+                    credentials.put(key, credential);
+                }
+            }
+        }
+        return credential;
+    }
+
+    @SuppressWarnings("deprecation")
+    private GoogleCredential loadCredentials(Collection<String> scopes) throws Exception {
+        logger.debug("Loading credentials for scopes " + scopes);
+        try (InputStream inputStream = Objects.requireNonNull(getInputStreamForServiceAccount(),
+                "service account json not found")) {
+            GoogleCredential credential = GoogleCredential.fromStream(inputStream, getTransport(), jsonFactory)
+                    .createScoped(scopes);
+            credentialsLoaded.incrementAndGet();
+            return credential;
+        }
+    }
+
+    private InputStream getInputStreamForServiceAccount() {
+        logger.debug("Inside method getInputStreamForServiceAccount");
+        if (serviceAccountJsonString != null && !serviceAccountJsonString.isBlank())
+            return new ByteArrayInputStream(serviceAccountJsonString.getBytes(StandardCharsets.UTF_8));
+        return GoogleClientProvider.class.getResourceAsStream(SERVICE_ACCOUNT_FILE_PATH);
+    }
+
+    public long getClientsBuilt() {
+        return clientsBuilt.get();
+    }
+
+    public long getClientsReused() {
+        return clientsReused.get();
+    }
+
+    public long getCredentialsLoaded() {
+        return credentialsLoaded.get();
+    }
+
+    public long getTokenRefreshes() {
+        return tokenRefreshes.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Exposes the per-operation metrics of this provider as MXBeans on the platform MBean server until it is closed.
+     */
+    public GoogleClientProvider registerMBeans() {
+        metrics.registerMBeans(applicationName);
+        return this;
+    }
+
+    /**
+     * Registers a JVM shutdown hook that closes this provider, releasing pooled connections on exit.
+     */
+    public synchronized GoogleClientProvider registerShutdownHook() {
+        if (shutdownHook == null && !closed) {
+            shutdownHook = new Thread(this::close, applicationName + "-sheets-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        HttpTransport httpTransport;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            httpTransport = transport;
+            transport = null;
+            sheetService = null;
+            driveService = null;
+            credentials.clear();
+            if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                }
+                catch (IllegalStateException e) {
+                    logger.debug("JVM is already shutting down, keeping shutdown hook");
+                }
+            }
+            shutdownHook = null;
+        }
+        metrics.unregisterMBeans();
+        if (httpTransport != null && requestInitializer == null) {
+            try {
+                httpTransport.shutdown();
+            }
+            catch (IOException e) {
+                logger.error("Exception occurred in shutting down http transport " + e.getMessage(), e);
+            }
+        }
+        logger.debug("Closed client provider, clients built " + clientsBuilt.get()
+                + ", clients reused " + clientsReused.get() + ", token refreshes " + tokenRefreshes.get());
+    }
+
+    /**
+     * Wraps a service account credential so that its access token is refreshed a configurable number of
+     * seconds before it expires, rather than on the request that finds it expired.
+     */
+    @SuppressWarnings("deprecation")
+    private class RefreshAheadCredential implements HttpRequestInitializer {
+
+        private final GoogleCredential credential;
+
+        RefreshAheadCredential(GoogleCredential credential) {
+            this.credential = credential;
+        }
+
+        @Override
+        public void initialize(HttpRequest request) throws IOException {
+            refreshIfNeeded();
+            credential.initialize(request);
+        }
+
+        private void refreshIfNeeded() throws IOException {
+            Long expiresIn = credential.getExpiresInSeconds();
+            if (credential.getAccessToken() != null && expiresIn != null && expiresIn > refreshAheadSeconds)
+                return;
+            synchronized (this) {
+                expiresIn = credential.getExpiresInSeconds();
+                if (credential.getAccessToken() == null || expiresIn == null || expiresIn <= refreshAheadSeconds) {
+                    logger.debug("Refreshing access token, expires in " + expiresIn + " seconds");
+                    if (credential.refreshToken())
+                        tokenRefreshes.incrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -1,38 +1,60 @@
-import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
 import com.google.api.services.drive.Drive;
-import com.google.api.services.drive.DriveScopes;
 import com.google.api.services.drive.model.File;
 import com.google.api.services.drive.model.FileList;
-import com.google.api.services.drive.model.Permission;
 import com.google.api.services.sheets.v4.Sheets;
-import com.google.api.services.sheets.v4.SheetsScopes;
 import com.google.api.services.sheets.v4.model.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.stream.Stream;
 
-public class GoogleSheetsUtil {
+public class GoogleSheetsUtil implements AutoCloseable {
 
     private static final Logger logger = LogManager.getLogger(GoogleSheetsUtil.class);
 
-    private static final String SERVICE_ACCOUNT_FILE_PATH = "service-account.json";
+    private static final int MAX_BATCH_GET_QUERY_LENGTH = 8000;
+    private static final int RANGES_PARAMETER_LENGTH = "&ranges=".length();
+    private static final long MAX_BATCH_UPDATE_PAYLOAD_BYTES = 2L * 1024 * 1024;
+    static final String VALUES_FIELDS = "values";
+    static final String UPDATE_FIELDS = "updatedRange,updatedRows,updatedColumns,updatedCells";
+    private static final String BATCH_GET_FIELDS = "valueRanges(values)";
+    private static final String BATCH_UPDATE_FIELDS = "totalUpdatedCells,responses(" + UPDATE_FIELDS + ")";
+    private static final String APPEND_FIELDS = "updates(" + UPDATE_FIELDS + ")";
+    private static final String CLEAR_FIELDS = "clearedRange";
+    private static final String BATCH_CLEAR_FIELDS = "clearedRanges";
+    private static final String SPREADSHEET_ID_FIELDS = "spreadsheetId";
+
     private final String applicationName;
     private final String serviceAccountJsonString;
+    private final GoogleClientProvider clientProvider;
+    private final WorkbookMetadataCache metadataCache;
+    private final WorkbookIndex workbookIndex;
+    private volatile SheetSnapshotCache snapshotCache;
 
     GoogleSheetsUtil(String applicationName) {
-        this.applicationName = applicationName;
-        this.serviceAccountJsonString = null;
+        this(applicationName, (String) null);
     }
 
     GoogleSheetsUtil(String applicationName, String serviceAccountJsonString) {
         this.applicationName = applicationName;
         this.serviceAccountJsonString = serviceAccountJsonString;
+        this.clientProvider = new GoogleClientProvider(applicationName, serviceAccountJsonString);
+        this.metadataCache = new WorkbookMetadataCache(clientProvider);
+        this.workbookIndex = new WorkbookIndex(clientProvider);
+    }
+
+    GoogleSheetsUtil(String applicationName, GoogleClientProvider clientProvider) {
+        this.applicationName = applicationName;
+        this.serviceAccountJsonString = null;
+        this.clientProvider = clientProvider;
+        this.metadataCache = new WorkbookMetadataCache(clientProvider);
+        this.workbookIndex = new WorkbookIndex(clientProvider);
     }
 
     public String getApplicationName() {
@@ -43,42 +65,35 @@ public class GoogleSheetsUtil {
         return serviceAccountJsonString;
     }
 
-    @SuppressWarnings("deprecation")
-    private GoogleCredential getCredentials(Collection<String> scopes) {
-        logger.debug("Getting credentials for scopes " + scopes);
-        try {
-            return GoogleCredential.fromStream(
-                            Objects.requireNonNull(getInputStreamForServiceAccount()))
-                    .createScoped(scopes);
-        }
-        catch (Exception e) {
-            logger.error("Exception occurred in getCredentials method " + e.getMessage(), e);
-            return null;
-        }
+    public GoogleClientProvider getClientProvider() {
+        return clientProvider;
     }
-    private InputStream getInputStreamForServiceAccount() {
-        logger.debug("Inside method getInputStreamForServiceAccount");
-        InputStream inputStream = null;
-        try {
-            if (getServiceAccountJsonString() != null && getServiceAccountJsonString().isEmpty())
-                inputStream = new ByteArrayInputStream(getServiceAccountJsonString().getBytes(StandardCharsets.UTF_8));
-            else
-                inputStream = GoogleSheetsUtil.class.getResourceAsStream(SERVICE_ACCOUNT_FILE_PATH);
-        }
-        catch (Exception e) {
-            logger.error("Exception occurred in getInputStreamForServiceAccount method " + e.getMessage(), e);
-        }
-        return inputStream;
+
+    public WorkbookMetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    public WorkbookIndex getWorkbookIndex() {
+        return workbookIndex;
+    }
+
+    public SheetSnapshotCache getSnapshotCache() {
+        return snapshotCache;
+    }
+
+    /**
+     * Sets a local snapshot cache that {@link #readRange(String, String, String)} reads through, or
+     * {@code null} to always read from the API. A read the cache cannot serve, e.g. because the Drive
+     * revision of the file cannot be looked up, goes to the API directly.
+     */
+    public GoogleSheetsUtil setSnapshotCache(SheetSnapshotCache snapshotCache) {
+        this.snapshotCache = snapshotCache;
+        return this;
     }
 
     private Sheets initializeSheetService() {
-        logger.debug("Inside method createSheetService");
         try {
-            return new Sheets.Builder(GoogleNetHttpTransport.newTrustedTransport(),
-                    GsonFactory.getDefaultInstance(),
-                    getCredentials(Collections.singleton(SheetsScopes.SPREADSHEETS)))
-                    .setApplicationName(getApplicationName())
-                    .build();
+            return clientProvider.getSheetService();
         }
         catch (Exception e) {
             logger.error("Exception occurred in initializing sheets service " + e.getMessage(), e);
@@ -87,13 +102,8 @@ public class GoogleSheetsUtil {
     }
 
     private Drive initializeDriveService() {
-        logger.debug("Initializing drive service");
         try {
-            return new Drive.Builder(GoogleNetHttpTransport.newTrustedTransport(),
-                    GsonFactory.getDefaultInstance(),
-                    getCredentials(Collections.singleton(DriveScopes.DRIVE_FILE)))
-                    .setApplicationName(getApplicationName())
-                    .build();
+            return clientProvider.getDriveService();
         }
         catch (Exception e) {
             logger.error("Exception occurred in initializing drive service " + e.getMessage(), e);
@@ -101,38 +111,33 @@ public class GoogleSheetsUtil {
         }
     }
 
-    public void shareWorkBook(String workBookId, String user, String role) {
+    private <T> T execute(SheetsOperation operation, AbstractGoogleClientRequest<T> request) throws IOException {
+        return clientProvider.getScheduler().execute(operation, request);
+    }
+
+    @Override
+    public void close() {
+        clientProvider.close();
+    }
+
+    public Map<String, WorkbookSharer.ShareResult> shareWorkBook(String workBookId, String user, String role) {
         List<String> users = new ArrayList<>();
         users.add(user);
-        shareWorkBook(workBookId, users, role);
+        return shareWorkBook(workBookId, users, role);
+    }
+
+    public Map<String, WorkbookSharer.ShareResult> shareWorkBook(String workBookId, List<String> users, String role) {
+        return shareWorkBook(workBookId, users, role, false);
     }
 
-    public void shareWorkBook(String workBookId, List<String> users, String role) {
+    /**
+     * Shares the workbook with every user using batched permission creates and returns the outcome per user.
+     *
+     * @param skipExisting when true, users who already hold {@code role} are skipped instead of shared again
+     */
+    public Map<String, WorkbookSharer.ShareResult> shareWorkBook(String workBookId, List<String> users, String role, boolean skipExisting) {
         logger.debug("Sharing workbook with users : " + users);
-        try {
-            Drive driveService = initializeDriveService();
-            if (driveService != null) {
-                users.forEach(user -> {
-                    Permission userPermission = new Permission()
-                            .setType("user")
-                            .setRole(role)
-                            .setEmailAddress(user);
-                    try {
-                        driveService
-                                .permissions()
-                                .create(workBookId, userPermission)
-                                .execute();
-                    } catch (Exception e) {
-                        logger.error("Exception occurred in sharing workbook " + workBookId + " to user " + user + " " + e.getMessage(), e);
-                    }
-                });
-            }
-            else
-                logger.error("drive service is null, hence sharing failed");
-        }
-        catch (Exception e) {
-            logger.error("Exception occurred in sharing workbook " + e.getMessage(), e);
-        }
+        return new WorkbookSharer(clientProvider).share(workBookId, users, role, skipExisting);
     }
 
     public String createWorkBookWithDefaultSheet(String spreadSheetName) {
@@ -141,15 +146,15 @@ public class GoogleSheetsUtil {
         try {
             Sheets sheetService = initializeSheetService();
             if (sheetService != null) {
-                Spreadsheet spreadsheet = sheetService.spreadsheets()
+                Spreadsheet spreadsheet = execute(SheetsOperation.CREATE, sheetService.spreadsheets()
                         .create(
                                 new Spreadsheet()
                                 .setProperties(new SpreadsheetProperties()
                                         .setTitle(spreadSheetName))
                         )
-                        .setFields("spreadsheetId")
-                        .execute();
+                        .setFields(SPREADSHEET_ID_FIELDS));
                 workBookId = spreadsheet.getSpreadsheetId();
+                workbookIndex.put(workBookId, spreadSheetName);
             }
             else
                 logger.debug("sheetService is null. Failed to create spreadsheet");
@@ -168,182 +173,485 @@ public class GoogleSheetsUtil {
     }
 
     public String createWorkBookWithCustomSheets(String spreadSheetName, List<String> sheetNames) {
-        logger.debug("Inside method createWorkBookWithDefaultSheet");
+        logger.debug("Inside method createWorkBookWithCustomSheets");
+        return createWorkBook(spreadSheetName, WorkbookTemplate.of(sheetNames));
+    }
+
+    /**
+     * Creates a workbook laid out as {@code template} in a single API call and returns its id, or an empty
+     * string if it could not be created.
+     */
+    public String createWorkBook(String spreadSheetName, WorkbookTemplate template) {
+        logger.debug("Inside method createWorkBook");
         String workBookId = "";
+        try {
+            workBookId = provisionWorkBook(spreadSheetName, template);
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in createWorkBook " + e.getMessage(), e);
+        }
+        logger.debug("Got workbook with id " + workBookId);
+        return workBookId;
+    }
+
+    /**
+     * Creates a workbook like {@link #createWorkBook(String, WorkbookTemplate)} but throws when it fails.
+     */
+    String provisionWorkBook(String spreadSheetName, WorkbookTemplate template) throws Exception {
+        String workBookId = new WorkbookProvisioner(clientProvider).create(spreadSheetName, template);
+        workbookIndex.put(workBookId, spreadSheetName);
+        return workBookId;
+    }
+
+    /**
+     * Creates one workbook per name, all laid out as {@code template}, running up to {@code concurrency}
+     * creates at a time within the write quota. Returns the id or the error for every name, in input order.
+     */
+    public WorkbookProvisioner.ProvisionResult createWorkBooks(List<String> spreadSheetNames, WorkbookTemplate template, int concurrency) {
+        logger.debug("Inside method createWorkBooks for " + spreadSheetNames.size() + " workbooks");
+        WorkbookProvisioner.ProvisionResult result = new WorkbookProvisioner(clientProvider)
+                .setConcurrency(concurrency)
+                .provision(spreadSheetNames, template);
+        for (WorkbookProvisioner.ProvisionedWorkbook workbook : result.getWorkbooks()) {
+            if (workbook.isSuccessful())
+                workbookIndex.put(workbook.workBookId(), workbook.title());
+        }
+        return result;
+    }
+
+    /**
+     * Reads a range with the default options. The rows must be treated as read-only, see
+     * {@link #readRange(String, String, String, ReadOptions)}.
+     */
+    public List<List<Object>> readRange(String workBookId, String sheetName, String range) {
+        return readRange(workBookId, sheetName, range, ReadOptions.defaults());
+    }
+
+    /**
+     * Reads a range rendered as {@code options} says. Only reads with default options go through the
+     * snapshot cache, since snapshots hold formatted values.
+     * <p>
+     * The returned rows must be treated as read-only. When a snapshot cache is set, a read it serves returns
+     * views of the snapshot file that throw {@link UnsupportedOperationException} on any change, so copy the
+     * rows before editing them.
+     */
+    public List<List<Object>> readRange(String workBookId, String sheetName, String range, ReadOptions options) {
+        logger.debug("Inside method readRange for range " + range + " with " + options);
+        try {
+            return fetchRange(workBookId, sheetName, range, options);
+        }
+        catch (Exception e) {
+            logger.error("Failed to read range " + range + " from workbook with id " + workBookId + " " + e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Reads a range like {@link #readRange(String, String, String, ReadOptions)} but throws when the API call
+     * fails. A failure of the snapshot cache alone still falls back to the API.
+     */
+    List<List<Object>> fetchRange(String workBookId, String sheetName, String range, ReadOptions options) throws Exception {
+        SheetSnapshotCache cache = snapshotCache;
+        if (cache != null && options.isDefault()) {
+            try {
+                List<List<Object>> values = cache.read(workBookId, sheetName, range);
+                logger.debug("Number of rows read : " + values.size());
+                return values;
+            }
+            catch (Exception e) {
+                logger.error("Snapshot cache failed for range " + range + " of workbook with id " + workBookId
+                        + ", reading it from the API " + e.getMessage(), e);
+            }
+        }
+        ValueRange valueRange = execute(SheetsOperation.READ, options.applyTo(clientProvider.getSheetService()
+                .spreadsheets()
+                .values()
+                .get(workBookId, SheetRange.of(sheetName, range).toA1Notation()))
+                .setFields(VALUES_FIELDS));
+        if (valueRange == null || valueRange.getValues() == null) {
+            logger.debug("No data found to be read for range " + range);
+            return new ArrayList<>();
+        }
+        logger.debug("Number of rows read : " + valueRange.getValues().size());
+        return valueRange.getValues();
+    }
+
+    /**
+     * Streams the rows of a sheet in windows of {@code windowRows} rows. The stream should be closed
+     * once consumed so that a pending prefetch is cancelled.
+     */
+    public Stream<List<Object>> streamSheet(String workBookId, String sheetName, int windowRows) {
+        return streamSheet(workBookId, sheetName, windowRows, ReadOptions.defaults());
+    }
+
+    /**
+     * Streams the rows of a sheet rendered as {@code options} says, which must not ask for columns.
+     */
+    public Stream<List<Object>> streamSheet(String workBookId, String sheetName, int windowRows, ReadOptions options) {
+        logger.debug("Inside method streamSheet for sheet " + sheetName);
+        return new PagedSheetReader(clientProvider, workBookId, sheetName, null, null, 1, windowRows, options).stream();
+    }
+
+    public UpdateValuesResponse writeToRange(String workBookId, String sheetName, String startingColumn, String inputType, List<List<Object>> values) {
+        logger.debug("Inside method writeToRange");
+        try {
+            return updateRange(workBookId, sheetName, startingColumn, inputType, values);
+        }
+        catch (Exception e) {
+            logger.error("Failed to write data to range starting from " + startingColumn + " in workbook with id " + workBookId + " with input type " + inputType + " " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes values like {@link #writeToRange(String, String, String, String, List)} but throws when the API
+     * call fails.
+     */
+    UpdateValuesResponse updateRange(String workBookId, String sheetName, String startingCell, String inputType, List<List<Object>> values) throws Exception {
+        String actualRange = SheetRange.of(sheetName, deriveRange(values, startingCell)).toA1Notation();
+        UpdateValuesResponse response = execute(SheetsOperation.WRITE, clientProvider.getSheetService()
+                .spreadsheets()
+                .values()
+                .update(workBookId, actualRange, new ValueRange().setValues(values))
+                .setValueInputOption(inputType)
+                .setFields(UPDATE_FIELDS));
+        if (response != null)
+            logger.debug("Number of rows updated " + response.getUpdatedCells());
+        return response;
+    }
+
+    /**
+     * Reads a range into a columnar buffer with the given column types. Values are requested unformatted and
+     * parsed straight from the response stream into the buffer.
+     */
+    public ColumnarRowBuffer readRangeColumnar(String workBookId, String sheetName, String range, ColumnarRowBuffer.ColumnType... types) {
+        logger.debug("Inside method readRangeColumnar for range " + range);
+        ColumnarRowBuffer buffer = new ColumnarRowBuffer(types);
         try {
             Sheets sheetService = initializeSheetService();
+            String actualRange = SheetRange.of(sheetName, range).toA1Notation();
             if (sheetService != null) {
-                Spreadsheet workbook = new Spreadsheet()
-                        .setProperties(new SpreadsheetProperties().setTitle(spreadSheetName));
-                List<Request> sheets = new ArrayList<>();
-                sheetNames.forEach(sheet -> {
-                    logger.debug("Adding sheet " + sheet);
-                    sheets.add(new Request()
-                            .setAddSheet(new AddSheetRequest()
-                                    .setProperties(new SheetProperties()
-                                            .setTitle(sheet))));
+                buffer = clientProvider.getScheduler().execute(SheetsOperation.READ, () -> {
+                    ColumnarRowBuffer values = new ColumnarRowBuffer(types);
+                    SheetsValuesRequest.get(sheetService, workBookId, actualRange).executeInto(values);
+                    return values;
                 });
-                BatchUpdateSpreadsheetRequest batchUpdateRequest = new BatchUpdateSpreadsheetRequest().setRequests(sheets);
-                Spreadsheet spreadsheet = sheetService
-                        .spreadsheets()
-                        .create(workbook)
-                        .execute();
-                sheetService
-                        .spreadsheets()
-                        .batchUpdate(spreadsheet
-                                .getSpreadsheetId(), batchUpdateRequest)
-                        .execute();
-                workBookId = spreadsheet.getSpreadsheetId();
-                Optional<Sheet> sheetOptional = sheetService
-                        .spreadsheets()
-                        .get(workBookId)
-                        .execute()
-                        .getSheets()
-                        .stream()
-                        .filter(sheet -> sheet
-                                .getProperties()
-                                .getTitle().equals("Sheet1"))
-                        .findFirst();
-                if (sheetOptional.isPresent()) {
-                    DeleteSheetRequest deleteSheetRequest = new DeleteSheetRequest();
-                    deleteSheetRequest.setSheetId(sheetOptional.get().getProperties().getSheetId());
-                    Request deleteRequest = new Request();
-                    deleteRequest.setDeleteSheet(deleteSheetRequest);
-                    BatchUpdateSpreadsheetRequest batchDeleteRequest = new BatchUpdateSpreadsheetRequest();
-                    batchDeleteRequest.setRequests(List.of(deleteRequest));
-                    sheetService.
-                            spreadsheets().
-                            batchUpdate(workBookId, batchDeleteRequest)
-                            .execute();
-                }
+                logger.debug("Number of rows read : " + buffer.getRowCount());
             }
             else
-                logger.error("sheet service is null.");
+                logger.debug("Failed to read from workbook as sheetService is null");
         }
         catch (Exception e) {
-            logger.error("Exception occurred in createWorkBookWithDefaultSheet " + e.getMessage(), e);
+            logger.error("Failed to read range " + range + " from workbook with id " + workBookId + " " + e.getMessage(), e);
         }
-        logger.debug("Got workbook with id " + workBookId);
-        return workBookId;
+        return buffer;
     }
 
-    public List<List<Object>> readRange(String workBookId, String sheetName, String range) {
-        logger.debug("Inside method readRange for range " + range);
-        List<List<Object>> values = new ArrayList<>();
+    /**
+     * Appends rows after the last row of data in the sheet, inserting new rows rather than overwriting cells
+     * below the table. For a steady stream of rows from many threads use a {@link SheetAppendSink}. Only a
+     * throttled call is retried; after a 5xx or a network error {@code null} is returned, and the rows may have
+     * been appended all the same.
+     */
+    public AppendValuesResponse appendToSheet(String workBookId, String sheetName, String inputType, List<List<Object>> values) {
+        logger.debug("Inside method appendToSheet");
+        AppendValuesResponse response = null;
         try {
-            ValueRange valueRange;
             Sheets sheetService = initializeSheetService();
-            String actualRange = sheetName + "!" + range;
             if (sheetService != null) {
-                valueRange = sheetService
+                response = execute(SheetsOperation.APPEND, sheetService
                         .spreadsheets()
                         .values()
-                        .get(workBookId, actualRange)
-                        .execute();
-                if (valueRange != null && valueRange.getValues() != null) {
-                    logger.debug("Number of rows read : " + valueRange.getValues().size());
-                    values = valueRange.getValues();
-                }
-                else
-                    logger.debug("No data found to be read for range " + range);
+                        .append(workBookId, SheetRange.of(sheetName, "A1").toA1Notation(), new ValueRange().setValues(values))
+                        .setValueInputOption(inputType)
+                        .setInsertDataOption("INSERT_ROWS")
+                        .setFields(APPEND_FIELDS));
+                if (response != null && response.getUpdates() != null)
+                    logger.debug("Appended rows to range " + response.getUpdates().getUpdatedRange());
             }
             else
-                logger.debug("Failed to read from workbook as sheetService is null");
+                logger.debug("Failed to append data to workbook as sheetService is null");
         }
         catch (Exception e) {
-            logger.error("Failed to read range " + range + " from workbook with id " + workBookId + e.getMessage(), e);
+            logger.error("Failed to append " + values.size() + " rows to sheet " + sheetName + " in workbook with id " + workBookId + " " + e.getMessage(), e);
         }
-        return values;
+        return response;
     }
 
-    public UpdateValuesResponse writeToRange(String workBookId, String sheetName, String startingColumn, String inputType, List<List<Object>> values) {
-        logger.debug("Inside method writeToRange");
+    /**
+     * Writes a columnar buffer starting at {@code startingCell}, serializing it straight into the request body.
+     */
+    public UpdateValuesResponse writeToRange(String workBookId, String sheetName, String startingCell, String inputType, ColumnarRowBuffer values) {
+        logger.debug("Inside method writeToRange for columnar buffer");
         UpdateValuesResponse response = null;
         try {
             Sheets sheetService = initializeSheetService();
-            String actualRange = sheetName + "!" + deriveRange(values, startingColumn);
+            String actualRange = SheetRange.of(sheetName, deriveRange(values.getRowCount(), values.getColumnCount(), startingCell)).toA1Notation();
             if (sheetService != null) {
-                ValueRange valueRange = new ValueRange()
-                        .setValues(values);
-                response = sheetService
-                        .spreadsheets()
-                        .values()
-                        .update(workBookId, actualRange, valueRange)
-                        .setValueInputOption(inputType)
-                        .execute();
+                response = execute(SheetsOperation.WRITE, SheetsValuesRequest
+                        .update(sheetService, workBookId, actualRange, inputType, values, 0, values.getRowCount()));
                 if (response != null)
                     logger.debug("Number of rows updated " + response.getUpdatedCells());
             }
             else
                 logger.debug("Failed to write data to workbook as sheetService is null");
-
         }
         catch (Exception e) {
-            logger.error("Failed to write data to range starting from " + startingColumn + " in workbook with id " + workBookId + " with input type " + inputType + " " + e.getMessage(), e);
+            logger.error("Failed to write data to range starting from " + startingCell + " in workbook with id " + workBookId + " with input type " + inputType + " " + e.getMessage(), e);
         }
         return response;
     }
 
-    private String deriveRange(List<List<Object>> values, String startingCell) {
-        logger.debug("Deriving range with starting cell " + startingCell);
-        String range = "";
+    /**
+     * Reads several ranges with {@code values().batchGet}, keyed by {@link SheetRange#toA1Notation()}.
+     * Ranges are only split across several requests when the query string would grow too long.
+     */
+    public Map<String, List<List<Object>>> readRanges(String workBookId, List<SheetRange> ranges) {
+        return readRanges(workBookId, ranges, ReadOptions.defaults());
+    }
+
+    /**
+     * Reads several ranges rendered as {@code options} says, keyed by {@link SheetRange#toA1Notation()}.
+     */
+    public Map<String, List<List<Object>>> readRanges(String workBookId, List<SheetRange> ranges, ReadOptions options) {
+        logger.debug("Inside method readRanges for " + ranges.size() + " ranges with " + options);
+        Map<String, List<List<Object>>> values = new LinkedHashMap<>();
         try {
-            if (Boolean.FALSE.equals(values.isEmpty())) {
-                int numRows = values.size();
-                int numCols = values.get(0).size();
-                String endCol = getColumnName(numCols + (startingCell.charAt(0) - 'A' + 1) - 1);
-                int endRow = Integer.parseInt(startingCell.substring(1)) + numRows - 1;
-                range =  startingCell + ":" + endCol + endRow;
+            fetchRanges(workBookId, ranges, options, values);
+        }
+        catch (Exception e) {
+            logger.error("Failed to read ranges " + ranges + " from workbook with id " + workBookId + " " + e.getMessage(), e);
+        }
+        return values;
+    }
+
+    /**
+     * Reads ranges like {@link #readRanges(String, List, ReadOptions)} into {@code values} but throws when an
+     * API call fails, leaving the ranges of earlier calls in the map.
+     */
+    void fetchRanges(String workBookId, List<SheetRange> ranges, ReadOptions options, Map<String, List<List<Object>>> values) throws Exception {
+        Sheets sheetService = clientProvider.getSheetService();
+        for (List<String> batch : splitByUrlLength(ranges)) {
+            BatchGetValuesResponse response = execute(SheetsOperation.READ, options.applyTo(sheetService
+                    .spreadsheets()
+                    .values()
+                    .batchGet(workBookId)
+                    .setRanges(batch))
+                    .setFields(BATCH_GET_FIELDS));
+            List<ValueRange> valueRanges = response.getValueRanges() != null ? response.getValueRanges() : Collections.emptyList();
+            for (int i = 0; i < batch.size(); i++) {
+                List<List<Object>> rangeValues = i < valueRanges.size() ? valueRanges.get(i).getValues() : null;
+                values.put(batch.get(i), rangeValues != null ? rangeValues : new ArrayList<>());
             }
         }
+        logger.debug("Read " + values.size() + " ranges");
+    }
+
+    /**
+     * Writes several ranges with {@code values().batchUpdate}, returning the per-range responses keyed by
+     * {@link SheetRange#toA1Notation()}. The data is only split across several requests when the estimated
+     * payload exceeds the request size limit.
+     */
+    public Map<String, UpdateValuesResponse> writeRanges(String workBookId, Map<SheetRange, List<List<Object>>> data, String inputType) {
+        logger.debug("Inside method writeRanges for " + data.size() + " ranges");
+        Map<String, UpdateValuesResponse> responses = new LinkedHashMap<>();
+        try {
+            updateRanges(workBookId, data, inputType, responses);
+        }
         catch (Exception e) {
-            logger.error("Exception occurred in deriving range " + e.getMessage(), e);
+            logger.error("Failed to write ranges " + data.keySet() + " in workbook with id " + workBookId + " with input type " + inputType + " " + e.getMessage(), e);
+        }
+        return responses;
+    }
+
+    /**
+     * Writes ranges like {@link #writeRanges(String, Map, String)} into {@code responses} but throws when an
+     * API call fails, leaving the responses of earlier calls in the map.
+     */
+    void updateRanges(String workBookId, Map<SheetRange, List<List<Object>>> data, String inputType,
+                      Map<String, UpdateValuesResponse> responses) throws Exception {
+        Sheets sheetService = clientProvider.getSheetService();
+        for (List<ValueRange> batch : splitByPayloadSize(data)) {
+            BatchUpdateValuesResponse response = execute(SheetsOperation.WRITE, sheetService
+                    .spreadsheets()
+                    .values()
+                    .batchUpdate(workBookId, new BatchUpdateValuesRequest()
+                            .setValueInputOption(inputType)
+                            .setData(batch))
+                    .setFields(BATCH_UPDATE_FIELDS));
+            List<UpdateValuesResponse> updates = response.getResponses() != null ? response.getResponses() : Collections.emptyList();
+            for (int i = 0; i < batch.size(); i++)
+                responses.put(batch.get(i).getRange(), i < updates.size() ? updates.get(i) : null);
+            logger.debug("Number of cells updated " + response.getTotalUpdatedCells());
         }
-        logger.debug("Got range " + range);
-        return range;
     }
 
-    private String getColumnName(int column) {
-        logger.debug("Inside method getColumnName");
-        StringBuilder columnName = new StringBuilder();
+    /**
+     * Clears the values of several ranges with a single {@code values().batchClear}, keeping formatting.
+     * Returns the ranges reported as cleared, which is empty when the call failed.
+     */
+    public List<String> clearRanges(String workBookId, List<SheetRange> ranges) {
+        logger.debug("Inside method clearRanges for " + ranges.size() + " ranges");
+        List<String> clearedRanges = new ArrayList<>();
+        if (ranges.isEmpty())
+            return clearedRanges;
         try {
-            while (column > 0) {
-                int remainder = (column - 1) % 26;
-                columnName.insert(0, (char) ('A' + remainder));
-                column = (column - remainder) / 26;
+            Sheets sheetService = initializeSheetService();
+            if (sheetService != null) {
+                List<String> a1Ranges = new ArrayList<>(ranges.size());
+                for (SheetRange sheetRange : ranges)
+                    a1Ranges.add(sheetRange.toA1Notation());
+                BatchClearValuesResponse response = execute(SheetsOperation.CLEAR, sheetService
+                        .spreadsheets()
+                        .values()
+                        .batchClear(workBookId, new BatchClearValuesRequest().setRanges(a1Ranges))
+                        .setFields(BATCH_CLEAR_FIELDS));
+                if (response != null && response.getClearedRanges() != null)
+                    clearedRanges.addAll(response.getClearedRanges());
+                logger.debug("Cleared ranges " + clearedRanges);
             }
+            else
+                logger.debug("Failed to clear ranges as sheetService is null");
         }
         catch (Exception e) {
-            logger.error("Exception occurred in getColumnName method " + e.getMessage(), e);
+            logger.error("Failed to clear ranges " + ranges + " in workbook with id " + workBookId + " " + e.getMessage(), e);
+        }
+        return clearedRanges;
+    }
+
+    private List<List<String>> splitByUrlLength(List<SheetRange> ranges) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        int length = 0;
+        for (SheetRange sheetRange : ranges) {
+            String range = sheetRange.toA1Notation();
+            int encodedLength = URLEncoder.encode(range, StandardCharsets.UTF_8).length() + RANGES_PARAMETER_LENGTH;
+            if (!batch.isEmpty() && length + encodedLength > MAX_BATCH_GET_QUERY_LENGTH) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                length = 0;
+            }
+            batch.add(range);
+            length += encodedLength;
         }
-        logger.debug("Got column name " + columnName);
-        return columnName.toString();
+        if (!batch.isEmpty())
+            batches.add(batch);
+        return batches;
+    }
+
+    private List<List<ValueRange>> splitByPayloadSize(Map<SheetRange, List<List<Object>>> data) {
+        List<List<ValueRange>> batches = new ArrayList<>();
+        List<ValueRange> batch = new ArrayList<>();
+        long bytes = 0;
+        for (Map.Entry<SheetRange, List<List<Object>>> entry : data.entrySet()) {
+            long rangeBytes = 0;
+            for (List<Object> row : entry.getValue())
+                rangeBytes += ChunkedSheetWriter.estimateJsonBytes(row);
+            if (!batch.isEmpty() && bytes + rangeBytes > MAX_BATCH_UPDATE_PAYLOAD_BYTES) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                bytes = 0;
+            }
+            batch.add(new ValueRange()
+                    .setRange(entry.getKey().toA1Notation())
+                    .setValues(entry.getValue()));
+            bytes += rangeBytes;
+        }
+        if (!batch.isEmpty())
+            batches.add(batch);
+        return batches;
+    }
+
+    public ChunkedSheetWriter.ChunkedWriteResult writeToRangeInChunks(String workBookId, String sheetName, String startingCell, String inputType, Iterator<List<Object>> rows) {
+        logger.debug("Inside method writeToRangeInChunks");
+        return new ChunkedSheetWriter(clientProvider).write(workBookId, sheetName, startingCell, inputType, rows);
+    }
+
+    public ChunkedSheetWriter.ChunkedWriteResult writeToRangeInChunks(String workBookId, String sheetName, String startingCell, String inputType, ColumnarRowBuffer values) {
+        logger.debug("Inside method writeToRangeInChunks for columnar buffer");
+        return new ChunkedSheetWriter(clientProvider).write(workBookId, sheetName, startingCell, inputType, values);
     }
 
+    /**
+     * Returns the range covering {@code values} from {@code startingCell}. Ragged rows are covered up to the
+     * longest row.
+     */
+    private String deriveRange(List<List<Object>> values, String startingCell) {
+        if (values.isEmpty())
+            return "";
+        int numCols = 0;
+        for (List<Object> row : values)
+            numCols = Math.max(numCols, row.size());
+        return deriveRange(values.size(), numCols, startingCell);
+    }
+
+    private String deriveRange(int numRows, int numCols, String startingCell) {
+        if (numRows <= 0)
+            return "";
+        return A1Range.ofSize(null, startingCell, numRows, Math.max(numCols, 1)).getRange();
+    }
+
+    /**
+     * Returns the id of a spreadsheet with the given name, or an empty string. When several spreadsheets share
+     * the name the first one listed is returned; use {@link #findWorkBooksWithName(String)} to get all of them.
+     */
     public String findWorkBookWithName(String sheetName) {
-        logger.debug("Trying to find spreadsheet with name " + sheetName);
-        String workBookId = "";
+        List<String> workBookIds = findWorkBooksWithName(sheetName);
+        return workBookIds.isEmpty() ? "" : workBookIds.get(0);
+    }
+
+    /**
+     * Returns the ids of all spreadsheets with the given name from the {@link WorkbookIndex}, falling back to a
+     * Drive query if the index cannot be loaded.
+     */
+    public List<String> findWorkBooksWithName(String sheetName) {
+        logger.debug("Trying to find spreadsheets with name " + sheetName);
+        List<String> workBookIds = new ArrayList<>();
         try {
-            Drive driveService = initializeDriveService();
-            if (driveService != null) {
-                String query = "mimeType='application/vnd.google-apps.spreadsheet' and name='" + sheetName + "'";
-                FileList result = driveService.files().list()
-                        .setQ(query)
-                        .setSpaces("drive")
-                        .setFields("files(id, name)")
-                        .execute();
-                List<File> files = result.getFiles();
-                if (files != null && !files.isEmpty()) {
-                    workBookId = files.get(0).getId();
-                }
-            }
-            else
-                logger.debug("drive service is null.");
+            findWorkBooks(sheetName, workBookIds);
         }
         catch (Exception e) {
             logger.error("Exception occurred in finding spreadsheet by name " + e.getMessage(), e);
         }
-        return workBookId;
+        return workBookIds;
+    }
+
+    /**
+     * Finds spreadsheets like {@link #findWorkBooksWithName(String)} into {@code workBookIds} but throws when
+     * the Drive query that stands in for the index fails.
+     */
+    void findWorkBooks(String sheetName, List<String> workBookIds) throws Exception {
+        try {
+            workBookIds.addAll(workbookIndex.find(sheetName));
+            return;
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in looking up spreadsheet name in workbook index " + e.getMessage(), e);
+        }
+        String query = "mimeType='" + WorkbookIndex.SPREADSHEET_MIME_TYPE + "' and trashed=false and name='"
+                + escapeQueryValue(sheetName) + "'";
+        Drive driveService = clientProvider.getDriveService();
+        String pageToken = null;
+        do {
+            FileList result = execute(SheetsOperation.FIND, driveService.files().list()
+                    .setQ(query)
+                    .setSpaces("drive")
+                    .setPageToken(pageToken)
+                    .setFields("nextPageToken, files(id, name)"));
+            if (result.getFiles() != null) {
+                for (File file : result.getFiles())
+                    workBookIds.add(file.getId());
+            }
+            pageToken = result.getNextPageToken();
+        }
+        while (pageToken != null);
+    }
+
+    /**
+     * Escapes a string for use inside a single quoted Drive query literal.
+     */
+    static String escapeQueryValue(String value) {
+        return value.replace("\\", "\\\\").replace("'", "\\'");
     }
 
     public void addSheetToWorkBook(String workBokId, String sheetName) {
@@ -370,10 +678,11 @@ public class GoogleSheetsUtil {
                 });
                 BatchUpdateSpreadsheetRequest batchUpdateAddRequest = new BatchUpdateSpreadsheetRequest()
                         .setRequests(addRequests);
-                sheetService
+                execute(SheetsOperation.STRUCTURE, sheetService
                         .spreadsheets()
                         .batchUpdate(workBokId, batchUpdateAddRequest)
-                        .execute();
+                        .setFields(SPREADSHEET_ID_FIELDS));
+                metadataCache.invalidate(workBokId);
                 logger.debug("Added sheets " + sheetNames);
             }
             else
@@ -388,19 +697,7 @@ public class GoogleSheetsUtil {
         logger.debug("Inside method getSheetNamesFromWorkbook");
         List<String> sheetNames = new ArrayList<>();
         try {
-            Sheets sheetService = initializeSheetService();
-            if (sheetService != null) {
-                Spreadsheet spreadsheet = sheetService.
-                        spreadsheets()
-                        .get(workbookId)
-                        .execute();
-                List<Sheet> sheets = spreadsheet.getSheets();
-                sheets.forEach(sheet -> sheetNames.add(sheet
-                        .getProperties()
-                        .getTitle()));
-            }
-            else
-                logger.debug("sheetService is null");
+            sheetNames = metadataCache.get(workbookId).getSheetNames();
         }
         catch (Exception e) {
             logger.error("Exception occurred in getSheetNamesFromWorkbook method " + e.getMessage(), e);
@@ -418,29 +715,40 @@ public class GoogleSheetsUtil {
     public void clearSheetData(String workBookId, List<String> sheetNames) {
         logger.debug("Inside method clearSheetData");
         try {
-            Sheets sheetService = initializeSheetService();
-            if (sheetService != null) {
-                sheetNames.forEach(sheetName -> {
-                    ClearValuesRequest clearRequest = new ClearValuesRequest();
-                    try {
-                        sheetService
-                                .spreadsheets()
-                                .values()
-                                .clear(workBookId, sheetName, clearRequest)
-                                .execute();
-                    } catch (Exception e) {
-                        logger.error("Exception occurred in clearing sheet " + sheetName + " " + e.getMessage(), e);
-                    }
-                });
-            }
-            else
-                logger.debug("Got null sheet service");
+            clearSheets(workBookId, sheetNames);
         }
         catch (Exception e) {
             logger.error("Exception occurred in clearSheetData method " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Clears sheets like {@link #clearSheetData(String, List)} but throws once every sheet has been tried if any
+     * of them could not be cleared, with the failures of the other sheets suppressed in the first one.
+     */
+    void clearSheets(String workBookId, List<String> sheetNames) throws Exception {
+        Sheets sheetService = clientProvider.getSheetService();
+        Exception failure = null;
+        for (String sheetName : sheetNames) {
+            try {
+                execute(SheetsOperation.CLEAR, sheetService
+                        .spreadsheets()
+                        .values()
+                        .clear(workBookId, A1Notation.quoteSheetName(sheetName), new ClearValuesRequest())
+                        .setFields(CLEAR_FIELDS));
+            }
+            catch (IOException e) {
+                logger.error("Exception occurred in clearing sheet " + sheetName + " " + e.getMessage(), e);
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
     public boolean isSheetExists(String workbookId, String sheetName) {
         logger.debug("Checking if " + sheetName + " exists in " + workbookId);
         boolean isSheetExists = Boolean.FALSE;
@@ -456,24 +764,88 @@ public class GoogleSheetsUtil {
         return isSheetExists;
     }
 
-    public void createOrClearSheets(String workbookId, String sheetName) {
+    public boolean createOrClearSheets(String workbookId, String sheetName) {
         List<String> sheetNames = new ArrayList<>();
         sheetNames.add(sheetName);
-        createOrClearSheets(workbookId, sheetNames);
+        return createOrClearSheets(workbookId, sheetNames);
     }
 
-    public void createOrClearSheets(String workbookId, List<String> sheetNames) {
+    /**
+     * Clears the sheets that exist and adds the ones that do not. Returns whether every sheet is now present
+     * and empty, which is false when the call failed. A call rejected because another client added or deleted
+     * one of the sheets since the metadata was cached is retried once with fresh metadata.
+     */
+    public boolean createOrClearSheets(String workbookId, List<String> sheetNames) {
         logger.debug("Inside method createOrClearSheet");
+        boolean isApplied = Boolean.FALSE;
         try {
-            sheetNames.forEach(sheetName -> {
-                if (Boolean.TRUE.equals(isSheetExists(workbookId, sheetName)))
-                    clearSheetData(workbookId, sheetName);
-                else
-                    addSheetToWorkBook(workbookId, sheetName);
-            });
+            Sheets sheetService = initializeSheetService();
+            if (sheetService != null) {
+                try {
+                    applyCreateOrClear(sheetService, workbookId, sheetNames);
+                }
+                catch (GoogleJsonResponseException e) {
+                    if (!isStaleSheetError(e))
+                        throw e;
+                    logger.debug("Retrying createOrClearSheets with fresh metadata after " + e.getMessage());
+                    metadataCache.invalidate(workbookId);
+                    applyCreateOrClear(sheetService, workbookId, sheetNames);
+                }
+                isApplied = Boolean.TRUE;
+            }
+            else
+                logger.debug("Sheet service is null");
         }
         catch (Exception e) {
             logger.error("Exception occurred in createOrClearSheet method " + e.getMessage(), e);
         }
+        return isApplied;
+    }
+
+    /**
+     * Whether a batchUpdate was rejected because the cached metadata no longer matched the workbook: a sheet
+     * was added that another client had created meanwhile, or one was cleared that another client had deleted.
+     */
+    private static boolean isStaleSheetError(GoogleJsonResponseException e) {
+        if (e.getStatusCode() != 400 || e.getDetails() == null || e.getDetails().getMessage() == null)
+            return false;
+        String message = e.getDetails().getMessage();
+        return message.contains("already exists") || message.contains("No grid with id");
+    }
+
+    /**
+     * Clears existing sheets and adds missing ones in a single spreadsheets batchUpdate. Clearing is done with
+     * an updateCells request on the user entered values, which keeps formatting like values().clear does.
+     */
+    private void applyCreateOrClear(Sheets sheetService, String workbookId, List<String> sheetNames) throws Exception {
+        WorkbookMetadataCache.WorkbookMetadata metadata = metadataCache.get(workbookId);
+        List<Request> requests = new ArrayList<>();
+        boolean addsSheets = false;
+        for (String sheetName : new LinkedHashSet<>(sheetNames)) {
+            WorkbookMetadataCache.SheetInfo sheetInfo = metadata.getSheet(sheetName);
+            if (sheetInfo != null) {
+                logger.debug("Clearing sheet " + sheetName);
+                requests.add(new Request()
+                        .setUpdateCells(new UpdateCellsRequest()
+                                .setRange(new GridRange().setSheetId(sheetInfo.sheetId()))
+                                .setFields("userEnteredValue")));
+            }
+            else {
+                logger.debug("Adding sheet " + sheetName);
+                requests.add(new Request()
+                        .setAddSheet(new AddSheetRequest()
+                                .setProperties(new SheetProperties()
+                                        .setTitle(sheetName))));
+                addsSheets = true;
+            }
+        }
+        if (requests.isEmpty())
+            return;
+        execute(SheetsOperation.STRUCTURE, sheetService
+                .spreadsheets()
+                .batchUpdate(workbookId, new BatchUpdateSpreadsheetRequest().setRequests(requests))
+                .setFields(SPREADSHEET_ID_FIELDS));
+        if (addsSheets)
+            metadataCache.invalidate(workbookId);
     }
 }
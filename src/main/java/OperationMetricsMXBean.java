@@ -0,0 +1,44 @@
+import java.util.Map;
+
+/**
+ * JMX view of the calls made for one {@link SheetsOperation}, registered by
+ * {@link GoogleClientProvider#registerMBeans()}. Latency percentiles are read from a histogram with power of
+ * two buckets, so they are upper bounds accurate to within a factor of two.
+ */
+public interface OperationMetricsMXBean {
+
+    String getOperation();
+
+    long getCalls();
+
+    long getFailures();
+
+    long getRetries();
+
+    long getQuotaErrors();
+
+    long getRequestBytes();
+
+    long getRequestWireBytes();
+
+    long getResponseBytes();
+
+    long getResponseWireBytes();
+
+    double getMeanLatencyMillis();
+
+    double getMaxLatencyMillis();
+
+    double getP50LatencyMillis();
+
+    double getP95LatencyMillis();
+
+    double getP99LatencyMillis();
+
+    /**
+     * Number of responses by HTTP status, with 0 counting attempts that received no response.
+     */
+    Map<Integer, Long> getStatusCodes();
+
+    void reset();
+}
@@ -0,0 +1,224 @@
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the rows of a sheet one window of rows at a time.
+ * <p>
+ * Each window is a separate {@code values().get} for a computed row range. While the caller consumes the
+ * current window the next one is already being fetched, so at most two windows are held in memory
+ * regardless of the sheet size. Iteration stops at the first window that comes back empty, or, when an end
+ * row is given, after the window holding that row, so that blank stretches longer than a window do not end
+ * the read early. Rows keep their position: blank rows between data are returned as empty lists, and blank
+ * rows after the last data are not returned.
+ */
+public class PagedSheetReader implements Iterator<List<Object>>, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(PagedSheetReader.class);
+
+    private static final int DEFAULT_WINDOW_ROWS = 1000;
+
+    private final GoogleClientProvider clientProvider;
+    private final String workBookId;
+    private final String sheetName;
+    private final int startColumn;
+    private final int endColumn;
+    private final int endRow;
+    private final int windowRows;
+    private final ReadOptions options;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private int nextWindowStartRow;
+    private CompletableFuture<List<List<Object>>> prefetch;
+    private int prefetchRows;
+    private List<List<Object>> window = Collections.emptyList();
+    private int windowRequestedRows;
+    private int position;
+    private int pendingBlankRows;
+    private int skippedBlankRows;
+    private boolean finished;
+    private long rowsRead;
+
+    public PagedSheetReader(GoogleClientProvider clientProvider, String workBookId, String sheetName) {
+        this(clientProvider, workBookId, sheetName, null, null, 1, DEFAULT_WINDOW_ROWS);
+    }
+
+    /**
+     * @param startColumn first column of each window, or {@code null} for whole rows
+     * @param endColumn   last column of each window, or {@code null} for whole rows
+     * @param startRow    1-based row the first window starts at
+     * @param windowRows  number of rows fetched per request
+     */
+    public PagedSheetReader(GoogleClientProvider clientProvider, String workBookId, String sheetName,
+                            String startColumn, String endColumn, int startRow, int windowRows) {
+        this(clientProvider, workBookId, sheetName, startColumn, endColumn, startRow, windowRows, ReadOptions.defaults());
+    }
+
+    /**
+     * @param options how values are rendered; windows are row ranges, so column major reads are rejected
+     */
+    public PagedSheetReader(GoogleClientProvider clientProvider, String workBookId, String sheetName,
+                            String startColumn, String endColumn, int startRow, int windowRows, ReadOptions options) {
+        this(clientProvider, workBookId, sheetName, startColumn, endColumn, startRow, 0, windowRows, options);
+    }
+
+    /**
+     * @param endRow 1-based last row to read, e.g. the grid row count of the sheet, or 0 to stop at the first
+     *               window that comes back empty
+     */
+    public PagedSheetReader(GoogleClientProvider clientProvider, String workBookId, String sheetName,
+                            String startColumn, String endColumn, int startRow, int endRow, int windowRows,
+                            ReadOptions options) {
+        if (windowRows <= 0)
+            throw new IllegalArgumentException("windowRows must be positive but was " + windowRows);
+        if (options.isColumnMajor())
+            throw new IllegalArgumentException("PagedSheetReader reads rows and cannot use majorDimension " + options.getMajorDimension());
+        this.clientProvider = clientProvider;
+        this.workBookId = workBookId;
+        this.sheetName = sheetName;
+        this.startColumn = startColumn != null ? A1Notation.columnNumber(startColumn) : 0;
+        this.endColumn = endColumn != null ? A1Notation.columnNumber(endColumn) : 0;
+        this.endRow = Math.max(endRow, 0);
+        this.windowRows = windowRows;
+        this.options = options;
+        this.nextWindowStartRow = startRow;
+        this.prefetch = hasMoreWindows() ? fetchNextWindow() : null;
+    }
+
+    public String getWorkBookId() {
+        return workBookId;
+    }
+
+    public String getSheetName() {
+        return sheetName;
+    }
+
+    public int getWindowRows() {
+        return windowRows;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!finished && pendingBlankRows == 0 && position >= window.size())
+            advance();
+        return !finished;
+    }
+
+    @Override
+    public List<Object> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        rowsRead++;
+        if (pendingBlankRows > 0) {
+            pendingBlankRows--;
+            return Collections.emptyList();
+        }
+        return window.get(position++);
+    }
+
+    public Stream<List<Object>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        window = Collections.emptyList();
+        if (prefetch != null)
+            prefetch.cancel(true);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Moves to the next window. Rows a window came back short of, and whole empty windows before the end row,
+     * are held as blank rows and only returned once more data follows.
+     */
+    private void advance() {
+        skippedBlankRows += windowRequestedRows - window.size();
+        window = Collections.emptyList();
+        windowRequestedRows = 0;
+        position = 0;
+        if (prefetch == null) {
+            logger.debug("Reached end row, finished reading " + rowsRead + " rows from " + sheetName);
+            close();
+            return;
+        }
+        List<List<Object>> fetched;
+        int fetchedRows = prefetchRows;
+        try {
+            fetched = prefetch.join();
+        }
+        catch (CompletionException e) {
+            close();
+            throw new IllegalStateException("Failed to read window of sheet " + sheetName + " from workbook "
+                    + workBookId + " " + e.getCause().getMessage(), e.getCause());
+        }
+        boolean more = hasMoreWindows();
+        if (fetched.isEmpty() && (endRow == 0 || !more)) {
+            logger.debug("Reached empty window, finished reading " + rowsRead + " rows from " + sheetName);
+            close();
+            return;
+        }
+        prefetch = more ? fetchNextWindow() : null;
+        if (fetched.isEmpty()) {
+            skippedBlankRows += fetchedRows;
+            return;
+        }
+        pendingBlankRows = skippedBlankRows;
+        skippedBlankRows = 0;
+        window = fetched;
+        windowRequestedRows = fetchedRows;
+    }
+
+    private boolean hasMoreWindows() {
+        return endRow == 0 || nextWindowStartRow <= endRow;
+    }
+
+    private CompletableFuture<List<List<Object>>> fetchNextWindow() {
+        int fromRow = nextWindowStartRow;
+        int toRow = fromRow + windowRows - 1;
+        if (endRow > 0)
+            toRow = Math.min(toRow, endRow);
+        nextWindowStartRow = toRow + 1;
+        prefetchRows = toRow - fromRow + 1;
+        String range = new A1Range(sheetName, startColumn, fromRow, endColumn, toRow).toA1Notation();
+        return CompletableFuture.supplyAsync(() -> fetch(range), executor);
+    }
+
+    private List<List<Object>> fetch(String range) {
+        logger.debug("Fetching window " + range);
+        try {
+            Sheets sheetService = clientProvider.getSheetService();
+            ValueRange valueRange = clientProvider.getScheduler().execute(SheetsOperation.READ, options.applyTo(sheetService
+                    .spreadsheets()
+                    .values()
+                    .get(workBookId, range))
+                    .setFields(GoogleSheetsUtil.VALUES_FIELDS));
+            if (valueRange == null || valueRange.getValues() == null)
+                return Collections.emptyList();
+            return valueRange.getValues();
+        }
+        catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+}
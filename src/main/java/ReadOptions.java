@@ -0,0 +1,101 @@
+import com.google.api.services.sheets.v4.Sheets;
+
+/**
+ * How the values of a read are rendered: {@code valueRenderOption}, {@code dateTimeRenderOption} and
+ * {@code majorDimension} of the {@code values.get} and {@code values.batchGet} calls.
+ * <p>
+ * Options left unset are not sent, so the API defaults apply: formatted values, in rows. Unformatted values
+ * are usually the smaller response, since numbers come back without currency symbols, grouping or padding,
+ * and are what callers that compute with the values want anyway.
+ */
+public class ReadOptions {
+
+    public static final String FORMATTED_VALUE = "FORMATTED_VALUE";
+    public static final String UNFORMATTED_VALUE = "UNFORMATTED_VALUE";
+    public static final String FORMULA = "FORMULA";
+    public static final String SERIAL_NUMBER = "SERIAL_NUMBER";
+    public static final String FORMATTED_STRING = "FORMATTED_STRING";
+    public static final String ROWS = "ROWS";
+    public static final String COLUMNS = "COLUMNS";
+
+    private String valueRenderOption;
+    private String dateTimeRenderOption;
+    private String majorDimension;
+
+    /**
+     * Options that leave every setting to the API default.
+     */
+    public static ReadOptions defaults() {
+        return new ReadOptions();
+    }
+
+    /**
+     * Raw cell values with dates and times as serial numbers.
+     */
+    public static ReadOptions unformatted() {
+        return new ReadOptions()
+                .setValueRenderOption(UNFORMATTED_VALUE)
+                .setDateTimeRenderOption(SERIAL_NUMBER);
+    }
+
+    public String getValueRenderOption() {
+        return valueRenderOption;
+    }
+
+    public ReadOptions setValueRenderOption(String valueRenderOption) {
+        this.valueRenderOption = valueRenderOption;
+        return this;
+    }
+
+    public String getDateTimeRenderOption() {
+        return dateTimeRenderOption;
+    }
+
+    /**
+     * Sets how dates and times are returned. Ignored by the API when values are rendered formatted.
+     */
+    public ReadOptions setDateTimeRenderOption(String dateTimeRenderOption) {
+        this.dateTimeRenderOption = dateTimeRenderOption;
+        return this;
+    }
+
+    public String getMajorDimension() {
+        return majorDimension;
+    }
+
+    public ReadOptions setMajorDimension(String majorDimension) {
+        this.majorDimension = majorDimension;
+        return this;
+    }
+
+    /**
+     * Whether no option is set, so the response is the same as for a plain read.
+     */
+    public boolean isDefault() {
+        return valueRenderOption == null && dateTimeRenderOption == null && majorDimension == null;
+    }
+
+    public boolean isColumnMajor() {
+        return COLUMNS.equals(majorDimension);
+    }
+
+    Sheets.Spreadsheets.Values.Get applyTo(Sheets.Spreadsheets.Values.Get request) {
+        return request
+                .setValueRenderOption(valueRenderOption)
+                .setDateTimeRenderOption(dateTimeRenderOption)
+                .setMajorDimension(majorDimension);
+    }
+
+    Sheets.Spreadsheets.Values.BatchGet applyTo(Sheets.Spreadsheets.Values.BatchGet request) {
+        return request
+                .setValueRenderOption(valueRenderOption)
+                .setDateTimeRenderOption(dateTimeRenderOption)
+                .setMajorDimension(majorDimension);
+    }
+
+    @Override
+    public String toString() {
+        return "ReadOptions{valueRenderOption=" + valueRenderOption + ", dateTimeRenderOption=" + dateTimeRenderOption
+                + ", majorDimension=" + majorDimension + "}";
+    }
+}
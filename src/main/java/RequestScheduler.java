@@ -0,0 +1,351 @@
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpResponseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs every Sheets and Drive call made by this library.
+ * <p>
+ * Calls are charged to a read or write token bucket sized to the per-minute quota, so bursts are smoothed
+ * out locally instead of being rejected by the API. Throttling (429, or 403 with a rate limit reason) is
+ * retried with exponential backoff and jitter, honouring {@code Retry-After} when present. A 5xx response or
+ * a network error is only retried for an {@linkplain SheetsOperation#isIdempotent() idempotent} operation,
+ * since the failed call may still have been applied.
+ * Each throttled response also halves the refill rate of the bucket, which then recovers gradually as calls
+ * succeed again.
+ */
+public class RequestScheduler {
+
+    private static final Logger logger = LogManager.getLogger(RequestScheduler.class);
+
+    private final Config config;
+    private final SheetsMetrics metrics;
+    private final TokenBucket readBucket;
+    private final TokenBucket writeBucket;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public RequestScheduler(Config config) {
+        this(config, new SheetsMetrics());
+    }
+
+    /**
+     * Creates a scheduler that records every attempt, along with its retries, to {@code metrics}.
+     */
+    public RequestScheduler(Config config, SheetsMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+        this.readBucket = new TokenBucket("read", config.getReadRequestsPerMinute(), config);
+        this.writeBucket = new TokenBucket("write", config.getWriteRequestsPerMinute(), config);
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public SheetsMetrics getMetrics() {
+        return metrics;
+    }
+
+    public <T> T execute(SheetsOperation operation, AbstractGoogleClientRequest<T> request) throws IOException {
+        return execute(operation, request::execute);
+    }
+
+    public <T> T execute(SheetsOperation operation, ApiCall<T> call) throws IOException {
+        return execute(operation, 1, call);
+    }
+
+    /**
+     * Executes a call that is charged {@code cost} requests of quota, e.g. an HTTP batch of several API calls.
+     */
+    public <T> T execute(SheetsOperation operation, int cost, ApiCall<T> call) throws IOException {
+        TokenBucket bucket = operation.isWrite() ? writeBucket : readBucket;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                bucket.acquire(cost);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + bucket.name + " quota");
+            }
+            calls.incrementAndGet();
+            SheetsMetrics.Call metered = metrics.begin(operation);
+            try {
+                T result = call.execute();
+                metered.end(false, false);
+                bucket.onSuccess();
+                return result;
+            }
+            catch (IOException e) {
+                int statusCode = statusCode(e);
+                boolean isThrottled = isThrottled(e, statusCode);
+                metered.end(true, isThrottled);
+                if (isThrottled) {
+                    throttled.incrementAndGet();
+                    bucket.onThrottled();
+                }
+                if (attempt >= config.getMaxAttempts() || !isRetryable(operation, e, statusCode, isThrottled)) {
+                    failures.incrementAndGet();
+                    throw e;
+                }
+                long delay = backoffMillis(attempt, e);
+                logger.debug("Retrying " + operation + " call after status " + statusCode + " in " + delay
+                        + " ms, attempt " + attempt + " of " + config.getMaxAttempts());
+                retries.incrementAndGet();
+                metrics.recordRetry(operation, statusCode, isThrottled);
+                try {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    InterruptedIOException interrupted = new InterruptedIOException("Interrupted while backing off");
+                    interrupted.initCause(e);
+                    throw interrupted;
+                }
+            }
+            finally {
+                metered.close();
+            }
+        }
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Current refill rate of the read bucket as a fraction of the configured quota.
+     */
+    public double getReadRateFactor() {
+        return readBucket.getRateFactor();
+    }
+
+    /**
+     * Current refill rate of the write bucket as a fraction of the configured quota.
+     */
+    public double getWriteRateFactor() {
+        return writeBucket.getRateFactor();
+    }
+
+    private boolean isRetryable(SheetsOperation operation, IOException e, int statusCode, boolean isThrottled) {
+        if (isThrottled)
+            return true;
+        if (statusCode >= 500)
+            return operation.isIdempotent();
+        return statusCode < 0 && operation.isIdempotent() && !(e instanceof InterruptedIOException)
+                && !Thread.currentThread().isInterrupted();
+    }
+
+    private long backoffMillis(int attempt, IOException e) {
+        if (e instanceof HttpResponseException responseException) {
+            String retryAfter = responseException.getHeaders() != null ? responseException.getHeaders().getRetryAfter() : null;
+            if (retryAfter != null) {
+                try {
+                    return Math.min(TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())), config.getMaxBackoffMillis());
+                }
+                catch (NumberFormatException ignored) {
+                    logger.debug("Ignoring non numeric Retry-After " + retryAfter);
+                }
+            }
+        }
+        long exponential = config.getInitialBackoffMillis() << Math.min(attempt - 1, 20);
+        long delay = Math.min(exponential, config.getMaxBackoffMillis());
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    static int statusCode(IOException e) {
+        if (e instanceof HttpResponseException responseException)
+            return responseException.getStatusCode();
+        return -1;
+    }
+
+    static boolean isThrottled(IOException e, int statusCode) {
+        if (statusCode == 429)
+            return true;
+        if (statusCode == 403 && e instanceof GoogleJsonResponseException jsonException && jsonException.getDetails() != null
+                && jsonException.getDetails().getErrors() != null) {
+            for (GoogleJsonError.ErrorInfo errorInfo : jsonException.getDetails().getErrors()) {
+                String reason = errorInfo.getReason();
+                if ("rateLimitExceeded".equals(reason) || "userRateLimitExceeded".equals(reason))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A single API call that may be executed several times.
+     */
+    @FunctionalInterface
+    public interface ApiCall<T> {
+        T execute() throws IOException;
+    }
+
+    /**
+     * Quota and retry settings. The defaults match the per-user Sheets quota of 60 reads and 60 writes a minute.
+     */
+    public static class Config {
+
+        private int readRequestsPerMinute = 60;
+        private int writeRequestsPerMinute = 60;
+        private int maxAttempts = 5;
+        private long initialBackoffMillis = 1000;
+        private long maxBackoffMillis = 32_000;
+        private double minRateFactor = 0.1;
+        private double recoveryStep = 0.05;
+
+        public int getReadRequestsPerMinute() {
+            return readRequestsPerMinute;
+        }
+
+        public Config setReadRequestsPerMinute(int readRequestsPerMinute) {
+            this.readRequestsPerMinute = readRequestsPerMinute;
+            return this;
+        }
+
+        public int getWriteRequestsPerMinute() {
+            return writeRequestsPerMinute;
+        }
+
+        public Config setWriteRequestsPerMinute(int writeRequestsPerMinute) {
+            this.writeRequestsPerMinute = writeRequestsPerMinute;
+            return this;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public Config setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public long getInitialBackoffMillis() {
+            return initialBackoffMillis;
+        }
+
+        public Config setInitialBackoffMillis(long initialBackoffMillis) {
+            this.initialBackoffMillis = initialBackoffMillis;
+            return this;
+        }
+
+        public long getMaxBackoffMillis() {
+            return maxBackoffMillis;
+        }
+
+        public Config setMaxBackoffMillis(long maxBackoffMillis) {
+            this.maxBackoffMillis = maxBackoffMillis;
+            return this;
+        }
+
+        public double getMinRateFactor() {
+            return minRateFactor;
+        }
+
+        /**
+         * Lowest fraction of the configured rate that throttling can reduce a bucket to.
+         */
+        public Config setMinRateFactor(double minRateFactor) {
+            this.minRateFactor = minRateFactor;
+            return this;
+        }
+
+        public double getRecoveryStep() {
+            return recoveryStep;
+        }
+
+        /**
+         * Fraction of the configured rate that each successful call restores after throttling.
+         */
+        public Config setRecoveryStep(double recoveryStep) {
+            this.recoveryStep = recoveryStep;
+            return this;
+        }
+    }
+
+    /**
+     * Token bucket holding up to one minute of quota, refilled continuously at the configured rate scaled by
+     * an adaptive factor.
+     */
+    private static class TokenBucket {
+
+        private final String name;
+        private final double capacity;
+        private final double tokensPerNano;
+        private final Config config;
+        private double tokens;
+        private double rateFactor = 1.0;
+        private long lastRefillNanos = System.nanoTime();
+
+        TokenBucket(String name, int requestsPerMinute, Config config) {
+            this.name = name;
+            this.capacity = Math.max(requestsPerMinute, 1);
+            this.tokensPerNano = capacity / TimeUnit.MINUTES.toNanos(1);
+            this.config = config;
+            this.tokens = capacity;
+        }
+
+        void acquire(int cost) throws InterruptedException {
+            double required = Math.min(Math.max(cost, 1), capacity);
+            while (true) {
+                long waitNanos;
+                synchronized (this) {
+                    refill();
+                    if (tokens >= required) {
+                        tokens -= required;
+                        return;
+                    }
+                    waitNanos = (long) Math.ceil((required - tokens) / (tokensPerNano * rateFactor));
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+        }
+
+        synchronized void onThrottled() {
+            refill();
+            rateFactor = Math.max(config.getMinRateFactor(), rateFactor / 2);
+            tokens = Math.min(tokens, 0);
+            logger.debug("Throttled on " + name + " quota, rate factor lowered to " + rateFactor);
+        }
+
+        synchronized void onSuccess() {
+            if (rateFactor < 1.0) {
+                refill();
+                rateFactor = Math.min(1.0, rateFactor + config.getRecoveryStep());
+            }
+        }
+
+        synchronized double getRateFactor() {
+            return rateFactor;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano * rateFactor);
+            lastRefillNanos = now;
+        }
+    }
+}
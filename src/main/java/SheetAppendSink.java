@@ -0,0 +1,764 @@
+import com.google.api.client.util.Data;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends rows to the end of a sheet from any number of producer threads without blocking them.
+ * <p>
+ * {@link #append(List)} puts the row on a lock-free queue and returns at once. A single drainer thread takes
+ * the queued rows in order and sends them with {@code values().append} and {@code INSERT_ROWS}, so the API
+ * finds the next free row and the caller never tracks it. A call is made once {@code maxBatchRows} rows are
+ * waiting or {@code flushInterval} has passed, so a busy sink sends few large calls.
+ * <p>
+ * Delivery is at least once. The scheduler retries an append only when it was throttled, which the API has
+ * not applied. A 5xx response, a network error, or throttling that outlasts the scheduler's attempts is
+ * handled here and nowhere else: the batch is kept and sent again before any newer rows, with a growing
+ * backoff. While the API keeps failing, queued rows are moved to spill files in the spill directory, up to
+ * {@code maxSpillBytes}. Spill files left by an earlier run are sent first when the sink starts. Each sink
+ * needs its own spill directory. Once the spill is full, rows stay in memory up to {@code maxQueuedRows},
+ * and after that new rows are rejected and counted as dropped. A 5xx or a network error can come back for a
+ * call the API did apply, and the batch is then sent again, so after such a failure the rows of that batch
+ * can appear twice in the sheet. Any other error response, such as a 400 for a sheet that does not exist,
+ * would come back on every resend, so the batch is logged and discarded and the rows after it are still sent.
+ */
+public class SheetAppendSink implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(SheetAppendSink.class);
+
+    private static final int DEFAULT_MAX_BATCH_ROWS = 2000;
+    private static final int DEFAULT_MAX_QUEUED_ROWS = 100_000;
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_CLOSE_TIMEOUT = Duration.ofSeconds(10);
+    private static final long DEFAULT_MAX_SPILL_BYTES = 64L * 1024 * 1024;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private static final int SPILL_MAGIC = 0x53504C4C;
+    private static final int SPILL_VERSION = 1;
+    private static final String SPILL_SUFFIX = ".spill";
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_NUMBER = 2;
+    private static final byte TAG_TRUE = 3;
+    private static final byte TAG_FALSE = 4;
+
+    private final GoogleClientProvider clientProvider;
+    private final String workBookId;
+    private final String sheetName;
+    private final String range;
+    private final Queue<List<Object>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedRows = new AtomicInteger();
+    private final AtomicLong acceptedRows = new AtomicLong();
+    private final AtomicLong appendedRows = new AtomicLong();
+    private final AtomicLong droppedRows = new AtomicLong();
+    private final AtomicLong discardedRows = new AtomicLong();
+    private final AtomicLong spilledRows = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+    private final AtomicLong appendCalls = new AtomicLong();
+    private final Object progress = new Object();
+
+    private volatile String inputType = "RAW";
+    private volatile int maxBatchRows = DEFAULT_MAX_BATCH_ROWS;
+    private volatile int maxQueuedRows = DEFAULT_MAX_QUEUED_ROWS;
+    private volatile Duration flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private volatile Duration closeTimeout = DEFAULT_CLOSE_TIMEOUT;
+    private volatile Path spillDirectory;
+    private volatile long maxSpillBytes = DEFAULT_MAX_SPILL_BYTES;
+    private volatile Thread drainer;
+    private volatile boolean flushRequested;
+    private volatile boolean closing;
+    private volatile long closeDeadlineNanos;
+
+    // Owned by the drainer thread
+    private final Deque<SpillFile> spillFiles = new ArrayDeque<>();
+    private final Deque<List<List<Object>>> backlog = new ArrayDeque<>();
+    private long nextSpillSequence;
+    private long reportedDroppedRows;
+
+    public SheetAppendSink(GoogleClientProvider clientProvider, String workBookId, String sheetName) {
+        this.clientProvider = clientProvider;
+        this.workBookId = workBookId;
+        this.sheetName = sheetName;
+        this.range = SheetRange.of(sheetName, "A1").toA1Notation();
+    }
+
+    public String getWorkBookId() {
+        return workBookId;
+    }
+
+    public String getSheetName() {
+        return sheetName;
+    }
+
+    public String getInputType() {
+        return inputType;
+    }
+
+    /**
+     * Sets the value input option of the append calls, {@code RAW} by default.
+     */
+    public SheetAppendSink setInputType(String inputType) {
+        this.inputType = inputType;
+        return this;
+    }
+
+    public int getMaxBatchRows() {
+        return maxBatchRows;
+    }
+
+    public SheetAppendSink setMaxBatchRows(int maxBatchRows) {
+        this.maxBatchRows = Math.max(1, maxBatchRows);
+        return this;
+    }
+
+    public int getMaxQueuedRows() {
+        return maxQueuedRows;
+    }
+
+    /**
+     * Sets the number of rows held in memory before new rows are dropped.
+     */
+    public SheetAppendSink setMaxQueuedRows(int maxQueuedRows) {
+        this.maxQueuedRows = Math.max(1, maxQueuedRows);
+        return this;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Sets the longest time a row waits in the queue for a batch to fill up.
+     */
+    public SheetAppendSink setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    public Duration getCloseTimeout() {
+        return closeTimeout;
+    }
+
+    /**
+     * Sets how long {@link #close()} keeps sending queued rows before spilling or discarding the rest.
+     */
+    public SheetAppendSink setCloseTimeout(Duration closeTimeout) {
+        this.closeTimeout = closeTimeout;
+        return this;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Sets the directory rows are spilled to while the API is failing, or {@code null} to keep them in memory
+     * only. Must be set before {@link #start()}.
+     */
+    public SheetAppendSink setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    public long getMaxSpillBytes() {
+        return maxSpillBytes;
+    }
+
+    public SheetAppendSink setMaxSpillBytes(long maxSpillBytes) {
+        this.maxSpillBytes = maxSpillBytes;
+        return this;
+    }
+
+    /**
+     * Starts the drainer thread, picking up any spill files left in the spill directory.
+     */
+    public synchronized SheetAppendSink start() {
+        if (drainer != null)
+            return this;
+        if (closing)
+            throw new IllegalStateException("Append sink for sheet " + sheetName + " is closed");
+        loadSpillFiles();
+        Thread thread = new Thread(this::drain, "sheet-append-" + sheetName);
+        thread.setDaemon(true);
+        drainer = thread;
+        thread.start();
+        logger.debug("Started append sink for sheet " + sheetName + " of workbook " + workBookId);
+        return this;
+    }
+
+    /**
+     * Queues a row to be appended and returns immediately. Returns {@code false} if the row was dropped
+     * because the sink is closed or its queue is full.
+     *
+     * @throws IllegalArgumentException if the row holds a NaN or infinite number, which the API cannot take
+     */
+    public boolean append(List<Object> row) {
+        for (Object cell : row) {
+            if ((cell instanceof Double || cell instanceof Float) && !Double.isFinite(((Number) cell).doubleValue()))
+                throw new IllegalArgumentException("Cannot append " + cell + " to sheet " + sheetName + ", only finite numbers can be sent");
+        }
+        if (closing) {
+            droppedRows.incrementAndGet();
+            return false;
+        }
+        int queued = queuedRows.incrementAndGet();
+        if (queued > maxQueuedRows) {
+            queuedRows.decrementAndGet();
+            droppedRows.incrementAndGet();
+            return false;
+        }
+        queue.offer(row);
+        // close() may have started after the check above, and the drainer may have taken its last rows already
+        if (closing && queue.remove(row)) {
+            queuedRows.decrementAndGet();
+            droppedRows.incrementAndGet();
+            return false;
+        }
+        acceptedRows.incrementAndGet();
+        if (queued == maxBatchRows) {
+            Thread thread = drainer;
+            if (thread != null)
+                LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Sends every row accepted so far, including rows found in spill files at start, without waiting for the flush interval and waits until they are appended
+     * or discarded. Returns {@code false} if that did not happen within {@code timeout}, e.g. because the API
+     * is failing and the rows are spilled.
+     */
+    public boolean flush(Duration timeout) throws InterruptedException {
+        long target = acceptedRows.get();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        flushRequested = true;
+        Thread thread = drainer;
+        if (thread != null)
+            LockSupport.unpark(thread);
+        synchronized (progress) {
+            while (appendedRows.get() + discardedRows.get() < target) {
+                long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+                if (remainingMillis <= 0)
+                    return false;
+                progress.wait(remainingMillis);
+            }
+        }
+        return true;
+    }
+
+    public boolean isDrainerThread() {
+        return Thread.currentThread() == drainer;
+    }
+
+    /**
+     * Rows held in memory, both queued and waiting to be sent again.
+     */
+    public int getQueuedRows() {
+        return queuedRows.get();
+    }
+
+    public long getAppendedRows() {
+        return appendedRows.get();
+    }
+
+    /**
+     * Rows rejected by {@link #append(List)} because the queue was full or the sink was closed.
+     */
+    public long getDroppedRows() {
+        return droppedRows.get();
+    }
+
+    /**
+     * Rows that were accepted but could be neither appended nor spilled before the sink closed, whose spill
+     * file could not be read, or whose append failed with an error that a resend cannot fix.
+     */
+    public long getDiscardedRows() {
+        return discardedRows.get();
+    }
+
+    public long getSpilledRows() {
+        return spilledRows.get();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    public long getAppendCalls() {
+        return appendCalls.get();
+    }
+
+    /**
+     * Stops accepting rows and keeps sending the queued ones for up to the close timeout. Rows still unsent
+     * after that are spilled if possible, so a later sink on the same spill directory delivers them.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (closing)
+                return;
+            closeDeadlineNanos = System.nanoTime() + closeTimeout.toNanos();
+            closing = true;
+            thread = drainer;
+        }
+        if (thread == null) {
+            discardedRows.addAndGet(queuedRows.getAndSet(0));
+            queue.clear();
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(closeTimeout.toMillis() + 1000);
+            if (thread.isAlive()) {
+                thread.interrupt();
+                thread.join();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive()) {
+            long remaining = release(drainRows(Integer.MAX_VALUE));
+            if (remaining > 0) {
+                logger.error("Discarded " + remaining + " rows for sheet " + sheetName + " queued while the sink closed");
+                discard(remaining);
+            }
+        }
+        logger.debug("Closed append sink for sheet " + sheetName + " " + this);
+    }
+
+    @Override
+    public String toString() {
+        return "SheetAppendSink{sheetName=" + sheetName + ", queuedRows=" + getQueuedRows() + ", appendedRows="
+                + getAppendedRows() + ", appendCalls=" + getAppendCalls() + ", spilledRows=" + getSpilledRows()
+                + ", droppedRows=" + getDroppedRows() + ", discardedRows=" + getDiscardedRows() + "}";
+    }
+
+    private void drain() {
+        long backoffMillis = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            if (closing && System.nanoTime() - closeDeadlineNanos >= 0)
+                break;
+            if (backoffMillis > 0)
+                pause(backoffMillis);
+            else if (spillFiles.isEmpty() && backlog.isEmpty())
+                awaitRows();
+            flushRequested = false;
+            reportDroppedRows();
+            boolean sent;
+            try {
+                sent = sendBacklog() && sendQueue();
+            }
+            catch (RuntimeException e) {
+                // Keep the drainer alive, otherwise every row accepted from now on would sit in the queue
+                logger.error("Exception occurred in draining rows for sheet " + sheetName + " " + e.getMessage(), e);
+                sent = false;
+            }
+            if (sent) {
+                backoffMillis = 0;
+                if (closing && queue.isEmpty())
+                    break;
+            }
+            else {
+                spillQueue();
+                backoffMillis = backoffMillis == 0 ? INITIAL_BACKOFF_MILLIS : Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+        while (!backlog.isEmpty()) {
+            List<List<Object>> batch = backlog.peekFirst();
+            if (!spill(batch))
+                break;
+            release(backlog.pollFirst());
+        }
+        if (backlog.isEmpty())
+            spillQueue();
+        long remaining = 0;
+        for (List<List<Object>> batch : backlog)
+            remaining += release(batch);
+        backlog.clear();
+        remaining += release(drainRows(Integer.MAX_VALUE));
+        if (remaining > 0) {
+            logger.error("Discarded " + remaining + " rows for sheet " + sheetName + " that could not be sent or spilled");
+            discard(remaining);
+        }
+    }
+
+    /**
+     * Waits until a full batch is queued, the flush interval has passed, or a flush or close is requested.
+     */
+    private void awaitRows() {
+        long deadline = System.nanoTime() + flushInterval.toNanos();
+        while (queuedRows.get() < maxBatchRows && !flushRequested && !closing && !Thread.currentThread().isInterrupted()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return;
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void pause(long millis) {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        if (closing)
+            deadline = Math.min(deadline, closeDeadlineNanos);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted())
+            LockSupport.parkNanos(this, remaining);
+    }
+
+    /**
+     * Sends the rows that failed earlier, oldest first: spill files, then batches kept in memory because the
+     * spill was full. Returns {@code false} at the first failure.
+     */
+    private boolean sendBacklog() {
+        while (!spillFiles.isEmpty()) {
+            SpillFile spillFile = spillFiles.peekFirst();
+            List<List<Object>> rows;
+            try {
+                rows = readSpill(spillFile.path);
+            }
+            catch (IOException e) {
+                logger.error("Discarding unreadable spill file " + spillFile.path + " " + e.getMessage(), e);
+                rows = null;
+            }
+            SendResult result = rows != null ? send(rows) : SendResult.REJECTED;
+            if (result == SendResult.FAILED)
+                return false;
+            removeSpill(spillFiles.pollFirst());
+            if (result == SendResult.SENT)
+                delivered(rows.size());
+            else
+                discard(spillFile.rows);
+        }
+        while (!backlog.isEmpty()) {
+            SendResult result = send(backlog.peekFirst());
+            if (result == SendResult.FAILED)
+                return false;
+            if (result == SendResult.SENT)
+                delivered(release(backlog.pollFirst()));
+            else
+                discard(release(backlog.pollFirst()));
+        }
+        return true;
+    }
+
+    private boolean sendQueue() {
+        while (!queue.isEmpty()) {
+            List<List<Object>> batch = drainRows(maxBatchRows);
+            SendResult result = send(batch);
+            if (result == SendResult.FAILED) {
+                if (spill(batch))
+                    release(batch);
+                else
+                    backlog.addLast(batch);
+                return false;
+            }
+            if (result == SendResult.SENT)
+                delivered(release(batch));
+            else
+                discard(release(batch));
+        }
+        return true;
+    }
+
+    /**
+     * Appends the rows in one call. Throttling, 5xx responses and network errors are {@link SendResult#FAILED},
+     * so the rows are sent again later. Other error responses, and rows that cannot be encoded as a request,
+     * are {@link SendResult#REJECTED}.
+     */
+    private SendResult send(List<List<Object>> rows) {
+        try {
+            clientProvider.getScheduler().execute(SheetsOperation.APPEND, clientProvider.getSheetService()
+                    .spreadsheets()
+                    .values()
+                    .append(workBookId, range, new ValueRange().setValues(rows))
+                    .setValueInputOption(inputType)
+                    .setInsertDataOption("INSERT_ROWS")
+                    .setFields("updates(updatedRows)"));
+            logger.debug("Appended " + rows.size() + " rows to sheet " + sheetName);
+            return SendResult.SENT;
+        }
+        catch (IOException e) {
+            int statusCode = RequestScheduler.statusCode(e);
+            if (statusCode >= 400 && statusCode < 500 && !RequestScheduler.isThrottled(e, statusCode)) {
+                logger.error("Discarding " + rows.size() + " rows for sheet " + sheetName + " rejected by the API " + e.getMessage(), e);
+                return SendResult.REJECTED;
+            }
+            logger.error("Exception occurred in appending " + rows.size() + " rows to sheet " + sheetName + " " + e.getMessage(), e);
+            return SendResult.FAILED;
+        }
+        catch (RuntimeException e) {
+            logger.error("Discarding " + rows.size() + " rows for sheet " + sheetName + " that could not be sent " + e.getMessage(), e);
+            return SendResult.REJECTED;
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in appending " + rows.size() + " rows to sheet " + sheetName + " " + e.getMessage(), e);
+            return SendResult.FAILED;
+        }
+    }
+
+    /**
+     * Takes up to {@code maxRows} rows off the queue. They keep counting as queued until {@link #release} so
+     * that rows held for a retry still count against {@code maxQueuedRows}.
+     */
+    private List<List<Object>> drainRows(int maxRows) {
+        List<List<Object>> rows = new ArrayList<>(Math.min(maxRows, Math.max(queue.size(), 16)));
+        List<Object> row;
+        while (rows.size() < maxRows && (row = queue.poll()) != null)
+            rows.add(row);
+        return rows;
+    }
+
+    private int release(List<List<Object>> rows) {
+        queuedRows.addAndGet(-rows.size());
+        return rows.size();
+    }
+
+    /**
+     * Moves queued rows to spill files while there is room, so producers can keep going while the API fails.
+     * Once a batch does not fit it is kept in memory, and nothing more is spilled until it is sent, so rows
+     * are still sent in order.
+     */
+    private void spillQueue() {
+        if (!backlog.isEmpty())
+            return;
+        while (!queue.isEmpty()) {
+            List<List<Object>> batch = drainRows(maxBatchRows);
+            if (!spill(batch)) {
+                backlog.addLast(batch);
+                return;
+            }
+            release(batch);
+        }
+    }
+
+    private boolean spill(List<List<Object>> rows) {
+        Path directory = spillDirectory;
+        if (directory == null || rows.isEmpty())
+            return false;
+        try {
+            byte[] bytes = encodeSpill(rows);
+            if (spilledBytes.get() + bytes.length > maxSpillBytes)
+                return false;
+            Files.createDirectories(directory);
+            Path file = directory.resolve(String.format("%020d", nextSpillSequence++) + SPILL_SUFFIX);
+            Path temp = Files.createTempFile(directory, "spill", ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining())
+                        channel.write(buffer);
+                    channel.force(true);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(temp);
+            }
+            forceDirectory(directory);
+            spillFiles.addLast(new SpillFile(file, rows.size(), bytes.length));
+            spilledRows.addAndGet(rows.size());
+            spilledBytes.addAndGet(bytes.length);
+            logger.debug("Spilled " + rows.size() + " rows for sheet " + sheetName + " to " + file);
+            return true;
+        }
+        catch (IOException e) {
+            logger.error("Exception occurred in spilling rows for sheet " + sheetName + " " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Makes the rename of a new spill file durable. Not every platform can open a directory as a channel,
+     * and where it cannot the rename is left to the file system.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        catch (IOException e) {
+            logger.debug("Could not force spill directory " + directory + " " + e.getMessage());
+        }
+    }
+
+    private void removeSpill(SpillFile spillFile) {
+        spilledRows.addAndGet(-spillFile.rows);
+        spilledBytes.addAndGet(-spillFile.bytes);
+        try {
+            Files.deleteIfExists(spillFile.path);
+        }
+        catch (IOException e) {
+            logger.error("Exception occurred in deleting spill file " + spillFile.path + " " + e.getMessage(), e);
+        }
+    }
+
+    private void loadSpillFiles() {
+        Path directory = spillDirectory;
+        if (directory == null || !Files.isDirectory(directory))
+            return;
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SPILL_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        catch (IOException e) {
+            logger.error("Exception occurred in listing spill directory " + directory + " " + e.getMessage(), e);
+            return;
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                int rows = in.readInt() == SPILL_MAGIC && in.readInt() == SPILL_VERSION ? in.readInt() : -1;
+                if (rows < 0) {
+                    logger.error("Ignoring spill file " + file + " with an unknown format");
+                    continue;
+                }
+                long size = Files.size(file);
+                spillFiles.addLast(new SpillFile(file, rows, size));
+                spilledRows.addAndGet(rows);
+                spilledBytes.addAndGet(size);
+                acceptedRows.addAndGet(rows);
+                long sequence = Long.parseLong(name.substring(0, name.length() - SPILL_SUFFIX.length()));
+                nextSpillSequence = Math.max(nextSpillSequence, sequence + 1);
+            }
+            catch (IOException | NumberFormatException e) {
+                logger.error("Ignoring unreadable spill file " + file + " " + e.getMessage(), e);
+            }
+        }
+        if (!spillFiles.isEmpty())
+            logger.debug("Found " + spilledRows.get() + " spilled rows for sheet " + sheetName + " in " + directory);
+    }
+
+    private static byte[] encodeSpill(List<List<Object>> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SPILL_MAGIC);
+        out.writeInt(SPILL_VERSION);
+        out.writeInt(rows.size());
+        for (List<Object> row : rows) {
+            out.writeInt(row.size());
+            for (Object cell : row)
+                writeCell(out, cell);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<List<Object>> readSpill(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != SPILL_MAGIC || in.readInt() != SPILL_VERSION)
+                throw new IOException("Unknown spill file format");
+            int rowCount = in.readInt();
+            List<List<Object>> rows = new ArrayList<>(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                int cellCount = in.readInt();
+                List<Object> cells = new ArrayList<>(cellCount);
+                for (int cell = 0; cell < cellCount; cell++) {
+                    byte tag = in.readByte();
+                    switch (tag) {
+                        case TAG_NULL -> cells.add(null);
+                        case TAG_TRUE -> cells.add(Boolean.TRUE);
+                        case TAG_FALSE -> cells.add(Boolean.FALSE);
+                        case TAG_STRING, TAG_NUMBER -> {
+                            byte[] text = new byte[in.readInt()];
+                            in.readFully(text);
+                            String value = new String(text, StandardCharsets.UTF_8);
+                            cells.add(tag == TAG_NUMBER ? parseNumber(value) : value);
+                        }
+                        default -> throw new IOException("Unknown cell tag " + tag);
+                    }
+                }
+                rows.add(cells);
+            }
+            return rows;
+        }
+    }
+
+    private static BigDecimal parseNumber(String value) throws IOException {
+        try {
+            return new BigDecimal(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Malformed number " + value + " in spill file", e);
+        }
+    }
+
+    private static void writeCell(DataOutputStream out, Object cell) throws IOException {
+        if (cell == null || Data.isNull(cell)) {
+            out.writeByte(TAG_NULL);
+        }
+        else if (cell instanceof Boolean bool) {
+            out.writeByte(bool ? TAG_TRUE : TAG_FALSE);
+        }
+        else {
+            byte[] bytes = cell.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(cell instanceof Number ? TAG_NUMBER : TAG_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Counts rows as appended once they are off the queue or spill, so {@link #flush} never returns while
+     * they still show as pending.
+     */
+    private void delivered(int rows) {
+        appendCalls.incrementAndGet();
+        appendedRows.addAndGet(rows);
+        signalProgress();
+    }
+
+    private void discard(long rows) {
+        discardedRows.addAndGet(rows);
+        signalProgress();
+    }
+
+    private void signalProgress() {
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+    }
+
+    private void reportDroppedRows() {
+        long dropped = droppedRows.get();
+        if (dropped > reportedDroppedRows) {
+            logger.error("Dropped " + (dropped - reportedDroppedRows) + " rows for sheet " + sheetName + " as the append queue was full");
+            reportedDroppedRows = dropped;
+        }
+    }
+
+    private enum SendResult {
+        SENT,
+        FAILED,
+        REJECTED
+    }
+
+    private record SpillFile(Path path, long rows, long bytes) {
+    }
+}
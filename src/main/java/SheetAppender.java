@@ -0,0 +1,198 @@
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.message.MapMessage;
+import org.apache.logging.log4j.message.Message;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Log4j2 appender that appends every log event as a row of a sheet through a {@link SheetAppendSink}.
+ * <p>
+ * Appending only converts the event to a row and queues it, so the logging thread never waits on the API.
+ * The {@code columns} attribute lists the cells of each row, separated by commas: {@code timestamp},
+ * {@code level}, {@code logger}, {@code thread}, {@code message}, {@code thrown}, {@code ctx:<key>} for a
+ * context data (MDC) value and {@code map:<key>} for a field of a {@code MapMessage}. Events logged by the
+ * sink's own thread, and events logged while this appender is already handling one on the same thread, are
+ * skipped so the appender never feeds itself.
+ * <pre>{@code
+ * <GoogleSheet name="Audit" workbookId="..." sheetName="Events" spillDirectory="/var/spool/audit"
+ *              columns="timestamp,level,logger,message,ctx:requestId"/>
+ * }</pre>
+ */
+@Plugin(name = "GoogleSheet", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE, printObject = true)
+public class SheetAppender extends AbstractAppender {
+
+    private static final String DEFAULT_COLUMNS = "timestamp,level,logger,thread,message,thrown";
+    private static final int MAX_CELL_LENGTH = 50_000;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneOffset.UTC);
+    private static final ThreadLocal<Boolean> APPENDING = new ThreadLocal<>();
+
+    private final GoogleClientProvider clientProvider;
+    private final SheetAppendSink sink;
+    private final List<Function<LogEvent, Object>> columns;
+
+    SheetAppender(String name, Filter filter, boolean ignoreExceptions, GoogleClientProvider clientProvider,
+                  SheetAppendSink sink, List<Function<LogEvent, Object>> columns) {
+        super(name, filter, null, ignoreExceptions, Property.EMPTY_ARRAY);
+        this.clientProvider = clientProvider;
+        this.sink = sink;
+        this.columns = columns;
+    }
+
+    @PluginFactory
+    public static SheetAppender createAppender(
+            @PluginAttribute("name") String name,
+            @PluginAttribute("applicationName") String applicationName,
+            @PluginAttribute("serviceAccountFile") String serviceAccountFile,
+            @PluginAttribute("workbookId") String workbookId,
+            @PluginAttribute("sheetName") String sheetName,
+            @PluginAttribute("columns") String columns,
+            @PluginAttribute(value = "inputType", defaultString = "RAW") String inputType,
+            @PluginAttribute(value = "maxBatchRows", defaultInt = 2000) int maxBatchRows,
+            @PluginAttribute(value = "maxQueuedRows", defaultInt = 100_000) int maxQueuedRows,
+            @PluginAttribute(value = "flushIntervalMillis", defaultLong = 1000) long flushIntervalMillis,
+            @PluginAttribute("spillDirectory") String spillDirectory,
+            @PluginAttribute(value = "maxSpillBytes", defaultLong = 64L * 1024 * 1024) long maxSpillBytes,
+            @PluginAttribute(value = "ignoreExceptions", defaultBoolean = true) boolean ignoreExceptions,
+            @PluginElement("Filter") Filter filter) {
+        if (name == null || workbookId == null || sheetName == null) {
+            LOGGER.error("GoogleSheet appender requires name, workbookId and sheetName");
+            return null;
+        }
+        String serviceAccountJson = null;
+        if (serviceAccountFile != null) {
+            try {
+                serviceAccountJson = Files.readString(Path.of(serviceAccountFile), StandardCharsets.UTF_8);
+            }
+            catch (IOException e) {
+                LOGGER.error("Could not read service account file " + serviceAccountFile + " for appender " + name, e);
+                return null;
+            }
+        }
+        List<Function<LogEvent, Object>> columnExtractors;
+        try {
+            columnExtractors = parseColumns(columns != null ? columns : DEFAULT_COLUMNS);
+        }
+        catch (IllegalArgumentException e) {
+            LOGGER.error("Invalid columns for appender " + name + ": " + e.getMessage());
+            return null;
+        }
+        GoogleClientProvider clientProvider = new GoogleClientProvider(
+                applicationName != null ? applicationName : name, serviceAccountJson);
+        SheetAppendSink sink = new SheetAppendSink(clientProvider, workbookId, sheetName)
+                .setInputType(inputType)
+                .setMaxBatchRows(maxBatchRows)
+                .setMaxQueuedRows(maxQueuedRows)
+                .setFlushInterval(Duration.ofMillis(flushIntervalMillis))
+                .setSpillDirectory(spillDirectory != null ? Path.of(spillDirectory) : null)
+                .setMaxSpillBytes(maxSpillBytes);
+        return new SheetAppender(name, filter, ignoreExceptions, clientProvider, sink, columnExtractors);
+    }
+
+    public SheetAppendSink getSink() {
+        return sink;
+    }
+
+    @Override
+    public void start() {
+        sink.start();
+        super.start();
+    }
+
+    @Override
+    public boolean stop(long timeout, TimeUnit timeUnit) {
+        setStopping();
+        boolean stopped = super.stop(timeout, timeUnit, false);
+        sink.close();
+        clientProvider.close();
+        setStopped();
+        return stopped;
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        if (APPENDING.get() != null || sink.isDrainerThread())
+            return;
+        APPENDING.set(Boolean.TRUE);
+        try {
+            List<Object> row = new ArrayList<>(columns.size());
+            for (Function<LogEvent, Object> column : columns)
+                row.add(column.apply(event));
+            sink.append(row);
+        }
+        finally {
+            APPENDING.remove();
+        }
+    }
+
+    static List<Function<LogEvent, Object>> parseColumns(String columns) {
+        List<Function<LogEvent, Object>> extractors = new ArrayList<>();
+        for (String column : columns.split(",")) {
+            String spec = column.trim();
+            if (spec.startsWith("ctx:")) {
+                String key = spec.substring(4);
+                extractors.add(event -> text(event.getContextData().getValue(key)));
+                continue;
+            }
+            if (spec.startsWith("map:")) {
+                String key = spec.substring(4);
+                extractors.add(event -> {
+                    Message message = event.getMessage();
+                    return message instanceof MapMessage<?, ?> map ? text(map.get(key)) : "";
+                });
+                continue;
+            }
+            switch (spec) {
+                case "timestamp" -> extractors.add(event -> TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(event.getTimeMillis())));
+                case "level" -> extractors.add(event -> event.getLevel().name());
+                case "logger" -> extractors.add(event -> text(event.getLoggerName()));
+                case "thread" -> extractors.add(event -> text(event.getThreadName()));
+                case "message" -> extractors.add(event -> event.getMessage() != null ? text(event.getMessage().getFormattedMessage()) : "");
+                case "thrown" -> extractors.add(event -> stackTrace(event.getThrown()));
+                default -> throw new IllegalArgumentException("unknown column " + spec);
+            }
+        }
+        return extractors;
+    }
+
+    /**
+     * Converts a value to cell text, cut to the longest text a cell can hold.
+     */
+    private static String text(Object value) {
+        if (value == null)
+            return "";
+        String text = value.toString();
+        return text.length() > MAX_CELL_LENGTH ? text.substring(0, MAX_CELL_LENGTH) : text;
+    }
+
+    private static String stackTrace(Throwable thrown) {
+        if (thrown == null)
+            return "";
+        StringWriter writer = new StringWriter();
+        thrown.printStackTrace(new PrintWriter(writer));
+        return text(writer);
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * A range within a named sheet, e.g. sheet {@code Sales} and range {@code A1:D20}.
+ * A {@code null} or empty range stands for the whole sheet.
+ */
+public record SheetRange(String sheetName, String range) {
+
+    public static SheetRange of(String sheetName, String range) {
+        return new SheetRange(sheetName, range);
+    }
+
+    public static SheetRange wholeSheet(String sheetName) {
+        return new SheetRange(sheetName, null);
+    }
+
+    /**
+     * Returns the range in the {@code sheet!range} form used by the Sheets API and as the key of batch results.
+     * The sheet name is quoted when it contains spaces or other characters A1 notation does not allow bare.
+     */
+    public String toA1Notation() {
+        String quotedName = A1Notation.quoteSheetName(sheetName);
+        if (range == null || range.isEmpty())
+            return quotedName;
+        return quotedName + "!" + range;
+    }
+
+    /**
+     * Parses the range into bounds that can be offset, split or combined.
+     */
+    public A1Range toA1Range() {
+        return A1Range.parse(sheetName, range);
+    }
+
+    @Override
+    public String toString() {
+        return toA1Notation();
+    }
+}
@@ -0,0 +1,495 @@
+import com.google.api.client.util.Data;
+import com.google.api.services.drive.model.File;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps snapshots of sheet ranges on local disk so that repeated reads of rarely changing sheets are served
+ * without downloading the values again.
+ * <p>
+ * Snapshots are keyed by workbook, sheet and range and stored in a compact binary file holding a row offset
+ * table, so a hit is served by memory-mapping the file and decoding rows only as they are accessed. Before a
+ * hit is served, the workbook's Drive {@code version} and {@code modifiedTime} are fetched, a small metadata
+ * call, and the snapshot is only used when both still match. The directory is bounded to
+ * {@code maxBytes} by evicting the least recently used snapshots.
+ * <p>
+ * Rows returned from a hit are read-only views of the mapped file.
+ */
+public class SheetSnapshotCache {
+
+    private static final Logger logger = LogManager.getLogger(SheetSnapshotCache.class);
+
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final String REVISION_FIELDS = "modifiedTime,version";
+    private static final String FILE_SUFFIX = ".snap";
+    private static final int FILE_MAGIC = 0x534E4150;
+    private static final int FORMAT_VERSION = 1;
+    private static final long MAX_SNAPSHOT_BYTES = Integer.MAX_VALUE;
+    private static final int ROW_COUNT_POSITION = 24;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_NUMBER = 2;
+    private static final byte TAG_TRUE = 3;
+    private static final byte TAG_FALSE = 4;
+
+    private final GoogleClientProvider clientProvider;
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CheckedRevision> checkedRevisions = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long totalBytes;
+    private volatile Duration revalidateInterval = Duration.ZERO;
+    private volatile long maxSnapshotBytes = MAX_SNAPSHOT_BYTES;
+
+    public SheetSnapshotCache(GoogleClientProvider clientProvider, Path directory) {
+        this(clientProvider, directory, DEFAULT_MAX_BYTES);
+    }
+
+    public SheetSnapshotCache(GoogleClientProvider clientProvider, Path directory, long maxBytes) {
+        this.clientProvider = clientProvider;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        loadEntries();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Duration getRevalidateInterval() {
+        return revalidateInterval;
+    }
+
+    /**
+     * Sets how long a workbook revision check is reused for further reads of the same workbook. The default
+     * of zero revalidates before every hit.
+     */
+    public SheetSnapshotCache setRevalidateInterval(Duration revalidateInterval) {
+        this.revalidateInterval = revalidateInterval;
+        return this;
+    }
+
+    /**
+     * Lowers the size limit of a single snapshot, which is otherwise set by the int offsets of the format, so
+     * that tests can reach it without writing gigabytes.
+     */
+    SheetSnapshotCache setMaxSnapshotBytes(long maxSnapshotBytes) {
+        this.maxSnapshotBytes = Math.min(maxSnapshotBytes, MAX_SNAPSHOT_BYTES);
+        return this;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the values of a range, from the local snapshot when the workbook has not changed since it was
+     * taken and from the API otherwise, in which case the snapshot is replaced. The rows must be treated as
+     * read-only: those of a hit are views of the mapped file and reject changes.
+     */
+    public List<List<Object>> read(String workBookId, String sheetName, String range) throws Exception {
+        String key = key(workBookId, sheetName, range);
+        Revision revision = getRevision(workBookId);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.revision.equals(revision)) {
+            try {
+                List<List<Object>> rows = entry.rows();
+                Files.setLastModifiedTime(entry.file, FileTime.fromMillis(System.currentTimeMillis()));
+                hits.incrementAndGet();
+                logger.debug("Serving " + rows.size() + " rows of " + sheetName + " from snapshot");
+                return rows;
+            }
+            catch (IOException e) {
+                logger.error("Failed to open snapshot " + entry.file + " " + e.getMessage(), e);
+                remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        List<List<Object>> values = fetchValues(workBookId, sheetName, range);
+        store(key, workBookId, sheetName, range, revision, values);
+        return values;
+    }
+
+    /**
+     * Drops every snapshot of a workbook.
+     */
+    public void invalidate(String workBookId) {
+        logger.debug("Invalidating snapshots of workbook " + workBookId);
+        checkedRevisions.remove(workBookId);
+        List<String> keys = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (entry.getValue().workBookId.equals(workBookId))
+                    keys.add(entry.getKey());
+            }
+        }
+        keys.forEach(this::remove);
+    }
+
+    public void invalidateAll() {
+        checkedRevisions.clear();
+        List<String> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(entries.keySet());
+        }
+        keys.forEach(this::remove);
+    }
+
+    private Revision getRevision(String workBookId) throws Exception {
+        CheckedRevision checked = checkedRevisions.get(workBookId);
+        Duration interval = revalidateInterval;
+        if (checked != null && !interval.isZero() && System.nanoTime() - checked.checkedAtNanos < interval.toNanos())
+            return checked.revision;
+        File file = clientProvider.getScheduler().execute(SheetsOperation.METADATA, clientProvider.getDriveService()
+                .files()
+                .get(workBookId)
+                .setFields(REVISION_FIELDS));
+        Revision revision = new Revision(file.getVersion() != null ? file.getVersion() : -1,
+                file.getModifiedTime() != null ? file.getModifiedTime().getValue() : -1);
+        checkedRevisions.put(workBookId, new CheckedRevision(revision, System.nanoTime()));
+        return revision;
+    }
+
+    private List<List<Object>> fetchValues(String workBookId, String sheetName, String range) throws Exception {
+        logger.debug("Fetching range " + range + " of " + sheetName + " for snapshot");
+        ValueRange valueRange = clientProvider.getScheduler().execute(SheetsOperation.READ, clientProvider.getSheetService()
+                .spreadsheets()
+                .values()
+                .get(workBookId, SheetRange.of(sheetName, range).toA1Notation())
+                .setFields(GoogleSheetsUtil.VALUES_FIELDS));
+        if (valueRange == null || valueRange.getValues() == null)
+            return new ArrayList<>();
+        return valueRange.getValues();
+    }
+
+    private void store(String key, String workBookId, String sheetName, String range, Revision revision,
+                       List<List<Object>> values) {
+        Path file = directory.resolve(fileName(key));
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "snapshot", ".tmp");
+            long size;
+            try {
+                long limit = maxSnapshotBytes;
+                size = writeSnapshot(temp, workBookId, sheetName, range, revision, values, limit);
+                if (size < 0) {
+                    logger.debug("Not caching snapshot of " + sheetName + ", it would exceed " + limit + " bytes");
+                    return;
+                }
+                if (size > maxBytes) {
+                    logger.debug("Not caching snapshot of " + sheetName + " of " + size + " bytes, above the cache size");
+                    return;
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(temp);
+            }
+            Entry entry = new Entry(file, workBookId, revision, size);
+            synchronized (this) {
+                Entry replaced = entries.put(key, entry);
+                if (replaced != null)
+                    totalBytes -= replaced.size;
+                totalBytes += size;
+            }
+            logger.debug("Stored snapshot of " + values.size() + " rows of " + sheetName + " in " + size + " bytes");
+            evict();
+        }
+        catch (IOException e) {
+            logger.error("Failed to store snapshot of " + sheetName + " in " + file + " " + e.getMessage(), e);
+        }
+    }
+
+    private void evict() {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Entry entry = eldest.next();
+                eldest.remove();
+                totalBytes -= entry.size;
+                evicted.add(entry);
+            }
+        }
+        for (Entry entry : evicted) {
+            evictions.incrementAndGet();
+            delete(entry.file);
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(key);
+            if (entry != null)
+                totalBytes -= entry.size;
+        }
+        if (entry != null)
+            delete(entry.file);
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            logger.error("Failed to delete snapshot " + file + " " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registers the snapshots already in the directory, least recently used first.
+     */
+    private void loadEntries() {
+        if (!Files.isDirectory(directory))
+            return;
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+            Map<Path, FileTime> lastUsed = new LinkedHashMap<>();
+            for (Path file : files)
+                lastUsed.put(file, Files.getLastModifiedTime(file));
+            files.sort(Comparator.comparing(lastUsed::get));
+        }
+        catch (IOException e) {
+            logger.error("Failed to list snapshots in " + directory + " " + e.getMessage(), e);
+            return;
+        }
+        for (Path file : files) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 512))) {
+                if (in.readInt() != FILE_MAGIC || in.readInt() != FORMAT_VERSION)
+                    throw new IOException("Not a snapshot file");
+                Revision revision = new Revision(in.readLong(), in.readLong());
+                in.readInt();
+                String workBookId = in.readUTF();
+                String sheetName = in.readUTF();
+                String range = in.readUTF();
+                long size = Files.size(file);
+                synchronized (this) {
+                    entries.put(key(workBookId, sheetName, range), new Entry(file, workBookId, revision, size));
+                    totalBytes += size;
+                }
+            }
+            catch (IOException e) {
+                logger.error("Discarding unreadable snapshot " + file + " " + e.getMessage(), e);
+                delete(file);
+            }
+        }
+        logger.debug("Loaded " + entries.size() + " snapshots of " + totalBytes + " bytes from " + directory);
+        evict();
+    }
+
+    /**
+     * Writes a snapshot: a header, then the rows, then the row offset table and the position of that table.
+     * Returns the file size, or -1 when the snapshot would exceed {@code limit}, at most what the int offsets
+     * and single mapping of the format can address, in which case the file is left incomplete.
+     */
+    private static long writeSnapshot(Path file, String workBookId, String sheetName, String range, Revision revision,
+                                      List<List<Object>> values, long limit) throws IOException {
+        int[] rowOffsets = new int[values.size() + 1];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(revision.version());
+            out.writeLong(revision.modifiedTime());
+            out.writeInt(values.size());
+            out.writeUTF(workBookId);
+            out.writeUTF(sheetName);
+            out.writeUTF(range != null ? range : "");
+            long tableBytes = 4L * rowOffsets.length + 4;
+            long written = out.size();
+            for (int row = 0; row < values.size(); row++) {
+                rowOffsets[row] = (int) written;
+                List<Object> cells = values.get(row);
+                out.writeInt(cells.size());
+                written += 4;
+                for (Object cell : cells)
+                    written += writeCell(out, cell);
+                if (written + tableBytes > limit)
+                    return -1;
+            }
+            rowOffsets[values.size()] = (int) written;
+            for (int offset : rowOffsets)
+                out.writeInt(offset);
+            out.writeInt((int) written);
+        }
+        return Files.size(file);
+    }
+
+    /**
+     * Writes one cell and returns the number of bytes written.
+     */
+    private static int writeCell(DataOutputStream out, Object cell) throws IOException {
+        if (cell == null || Data.isNull(cell)) {
+            out.writeByte(TAG_NULL);
+            return 1;
+        }
+        if (cell instanceof Boolean bool) {
+            out.writeByte(bool ? TAG_TRUE : TAG_FALSE);
+            return 1;
+        }
+        byte[] bytes = cell.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeByte(cell instanceof Number ? TAG_NUMBER : TAG_STRING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return 5 + bytes.length;
+    }
+
+    private static String key(String workBookId, String sheetName, String range) {
+        return workBookId + '\u0000' + sheetName + '\u0000' + (range != null ? range : "");
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16) + FILE_SUFFIX;
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Drive revision of a workbook a snapshot was taken at.
+     */
+    private record Revision(long version, long modifiedTime) {
+    }
+
+    private record CheckedRevision(Revision revision, long checkedAtNanos) {
+    }
+
+    private static class Entry {
+
+        private final Path file;
+        private final String workBookId;
+        private final Revision revision;
+        private final long size;
+        private volatile MappedByteBuffer buffer;
+
+        Entry(Path file, String workBookId, Revision revision, long size) {
+            this.file = file;
+            this.workBookId = workBookId;
+            this.revision = revision;
+            this.size = size;
+        }
+
+        List<List<Object>> rows() throws IOException {
+            MappedByteBuffer mapped = buffer;
+            if (mapped == null) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                buffer = mapped;
+            }
+            return new SnapshotRows(mapped);
+        }
+    }
+
+    /**
+     * Rows of a mapped snapshot, each decoded when it is accessed.
+     */
+    private static class SnapshotRows extends AbstractList<List<Object>> implements RandomAccess {
+
+        private final ByteBuffer buffer;
+        private final int rowCount;
+        private final int tableOffset;
+
+        SnapshotRows(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.rowCount = buffer.getInt(ROW_COUNT_POSITION);
+            this.tableOffset = buffer.getInt(buffer.limit() - Integer.BYTES);
+        }
+
+        @Override
+        public int size() {
+            return rowCount;
+        }
+
+        @Override
+        public List<Object> get(int index) {
+            if (index < 0 || index >= rowCount)
+                throw new IndexOutOfBoundsException("Row " + index + " of " + rowCount);
+            int position = buffer.getInt(tableOffset + index * Integer.BYTES);
+            int cellCount = buffer.getInt(position);
+            position += Integer.BYTES;
+            List<Object> cells = new ArrayList<>(cellCount);
+            for (int cell = 0; cell < cellCount; cell++) {
+                byte tag = buffer.get(position++);
+                switch (tag) {
+                    case TAG_NULL -> cells.add(null);
+                    case TAG_TRUE -> cells.add(Boolean.TRUE);
+                    case TAG_FALSE -> cells.add(Boolean.FALSE);
+                    default -> {
+                        int length = buffer.getInt(position);
+                        byte[] bytes = new byte[length];
+                        buffer.get(position + Integer.BYTES, bytes);
+                        position += Integer.BYTES + length;
+                        String text = new String(bytes, StandardCharsets.UTF_8);
+                        cells.add(tag == TAG_NUMBER ? new BigDecimal(text) : text);
+                    }
+                }
+            }
+            return Collections.unmodifiableList(cells);
+        }
+    }
+}
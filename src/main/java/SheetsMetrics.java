@@ -0,0 +1,653 @@
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpEncoding;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.api.client.util.ObjectParser;
+import com.google.api.client.util.StreamingContent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation latency, size, status and retry figures for every call made through a
+ * {@link GoogleClientProvider}.
+ * <p>
+ * The {@link RequestScheduler} opens a {@link Call} around each attempt, which tags the calling thread with the
+ * operation. The request initializer installed by {@link #instrument(HttpRequestInitializer)} then counts the
+ * bytes and status codes of the HTTP exchanges made on that thread and charges them to the call. The hot path
+ * is a handful of striped counter updates, and the HTTP hooks do nothing on threads without an open call.
+ * Figures are available from {@link #getOperationMetrics(SheetsOperation)}, as JMX MXBeans, and as
+ * {@link SheetsMetricsListener} callbacks.
+ */
+public class SheetsMetrics {
+
+    private static final Logger logger = LogManager.getLogger(SheetsMetrics.class);
+
+    private static final String JMX_DOMAIN = "GoogleSheetsUtil";
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<>();
+    private static final Call DISABLED = new Call(null, null, null);
+
+    private final Map<SheetsOperation, OperationMetrics> operations = new EnumMap<>(SheetsOperation.class);
+    private final List<SheetsMetricsListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+    private volatile boolean enabled = true;
+
+    public SheetsMetrics() {
+        for (SheetsOperation operation : SheetsOperation.values())
+            operations.put(operation, new OperationMetrics(operation));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Calls already in progress are still recorded.
+     */
+    public SheetsMetrics setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public SheetsMetrics addListener(SheetsMetricsListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public SheetsMetrics removeListener(SheetsMetricsListener listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    public OperationMetricsMXBean getOperationMetrics(SheetsOperation operation) {
+        return operations.get(operation);
+    }
+
+    public void reset() {
+        for (OperationMetrics metrics : operations.values())
+            metrics.reset();
+    }
+
+    /**
+     * Starts recording one attempt of a call on the current thread. The returned call must be ended on the
+     * same thread.
+     */
+    Call begin(SheetsOperation operation) {
+        if (!enabled)
+            return DISABLED;
+        Call call = new Call(this, operation, CURRENT.get());
+        CURRENT.set(call);
+        return call;
+    }
+
+    void recordRetry(SheetsOperation operation, int statusCode, boolean quotaError) {
+        if (!enabled)
+            return;
+        operations.get(operation).retries.increment();
+        for (SheetsMetricsListener listener : listeners) {
+            try {
+                listener.onRetry(operation, statusCode, quotaError);
+            }
+            catch (RuntimeException e) {
+                logger.error("Metrics listener failed on retry of " + operation + " " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Wraps a request initializer so that requests it initializes report to the call open on their thread.
+     */
+    HttpRequestInitializer instrument(HttpRequestInitializer delegate) {
+        return request -> {
+            if (delegate != null)
+                delegate.initialize(request);
+            request.setInterceptor(new MeteredInterceptor(request.getInterceptor()));
+            request.setUnsuccessfulResponseHandler(new MeteredUnsuccessfulResponseHandler(request.getUnsuccessfulResponseHandler()));
+            request.setResponseInterceptor(new MeteredResponseInterceptor(request.getResponseInterceptor()));
+        };
+    }
+
+    /**
+     * Counts a response body that is read directly rather than through the request's parser.
+     */
+    static InputStream meterResponse(InputStream content) {
+        Call call = CURRENT.get();
+        return call != null ? new CountingInputStream(content, call) : content;
+    }
+
+    /**
+     * Registers one MXBean per operation with the platform MBean server, named
+     * {@code GoogleSheetsUtil:type=Operations,application=<name>,name=<operation>}.
+     */
+    synchronized void registerMBeans(String applicationName) {
+        logger.debug("Inside method registerMBeans for " + applicationName);
+        if (!registeredNames.isEmpty())
+            return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (OperationMetrics metrics : operations.values()) {
+            try {
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Operations,application="
+                        + ObjectName.quote(String.valueOf(applicationName)) + ",name=" + metrics.operation.name());
+                server.registerMBean(metrics, name);
+                registeredNames.add(name);
+            }
+            catch (JMException e) {
+                logger.error("Failed to register metrics MBean for " + metrics.operation + " of " + applicationName + " " + e.getMessage(), e);
+            }
+        }
+    }
+
+    synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredNames) {
+            try {
+                server.unregisterMBean(name);
+            }
+            catch (JMException e) {
+                logger.error("Failed to unregister metrics MBean " + name + " " + e.getMessage(), e);
+            }
+        }
+        registeredNames.clear();
+    }
+
+    /**
+     * One attempt of an API call. Byte counts are only touched by the thread that owns the call.
+     */
+    static final class Call {
+
+        private final SheetsMetrics owner;
+        private final SheetsOperation operation;
+        private final Call previous;
+        private final long startNanos;
+        private int statusCode;
+        private boolean responded;
+        private boolean ended;
+        private long requestBytes;
+        private long requestWireBytes;
+        private long responseBytes;
+        private long responseWireBytes;
+
+        private Call(SheetsMetrics owner, SheetsOperation operation, Call previous) {
+            this.owner = owner;
+            this.operation = operation;
+            this.previous = previous;
+            this.startNanos = owner != null ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Records the attempt and restores the call that was open before it, if any.
+         */
+        void end(boolean failed, boolean quotaError) {
+            if (owner == null || ended)
+                return;
+            ended = true;
+            CURRENT.set(previous);
+            long latencyNanos = System.nanoTime() - startNanos;
+            OperationMetrics metrics = owner.operations.get(operation);
+            if (!responded)
+                metrics.countStatus(0);
+            metrics.record(latencyNanos, failed, quotaError, requestBytes, requestWireBytes, responseBytes, responseWireBytes);
+            for (SheetsMetricsListener listener : owner.listeners) {
+                try {
+                    listener.onCall(operation, statusCode, latencyNanos, requestBytes, responseBytes);
+                }
+                catch (RuntimeException e) {
+                    logger.error("Metrics listener failed on " + operation + " call " + e.getMessage(), e);
+                }
+            }
+        }
+
+        /**
+         * Ends the attempt as failed unless it was already ended, for calls that threw an unchecked exception.
+         */
+        void close() {
+            end(true, false);
+        }
+
+        private void onResponse(HttpResponse response) {
+            statusCode = response.getStatusCode();
+            responded = true;
+            owner.operations.get(operation).countStatus(statusCode);
+            Long contentLength = response.getHeaders().getContentLength();
+            if (contentLength != null)
+                responseWireBytes += contentLength;
+        }
+
+        private void onRetriedResponse(HttpResponse response) {
+            owner.operations.get(operation).countStatus(response.getStatusCode());
+            Long contentLength = response.getHeaders().getContentLength();
+            if (contentLength != null)
+                responseWireBytes += contentLength;
+            owner.recordRetry(operation, response.getStatusCode(), false);
+        }
+    }
+
+    /**
+     * Counters for one operation. Latencies go into a histogram with one bucket per power of two nanoseconds.
+     */
+    private static final class OperationMetrics implements OperationMetricsMXBean {
+
+        private static final int MAX_STATUS_CODE = 599;
+
+        private final SheetsOperation operation;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder quotaErrors = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder requestWireBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final LongAdder responseWireBytes = new LongAdder();
+        private final LongAdder totalLatencyNanos = new LongAdder();
+        private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray latencyBuckets = new AtomicLongArray(Long.SIZE);
+        private final AtomicLongArray statusCodes = new AtomicLongArray(MAX_STATUS_CODE + 1);
+
+        OperationMetrics(SheetsOperation operation) {
+            this.operation = operation;
+        }
+
+        void record(long latencyNanos, boolean failed, boolean quotaError, long requestBytes, long requestWireBytes,
+                    long responseBytes, long responseWireBytes) {
+            calls.increment();
+            if (failed)
+                failures.increment();
+            if (quotaError)
+                quotaErrors.increment();
+            if (requestBytes > 0)
+                this.requestBytes.add(requestBytes);
+            if (requestWireBytes > 0)
+                this.requestWireBytes.add(requestWireBytes);
+            if (responseBytes > 0)
+                this.responseBytes.add(responseBytes);
+            if (responseWireBytes > 0)
+                this.responseWireBytes.add(responseWireBytes);
+            totalLatencyNanos.add(latencyNanos);
+            maxLatencyNanos.accumulate(latencyNanos);
+            latencyBuckets.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(latencyNanos, 1)));
+        }
+
+        void countStatus(int statusCode) {
+            statusCodes.incrementAndGet(statusCode >= 0 && statusCode <= MAX_STATUS_CODE ? statusCode : 0);
+        }
+
+        @Override
+        public String getOperation() {
+            return operation.name();
+        }
+
+        @Override
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        @Override
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        @Override
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        @Override
+        public long getQuotaErrors() {
+            return quotaErrors.sum();
+        }
+
+        @Override
+        public long getRequestBytes() {
+            return requestBytes.sum();
+        }
+
+        @Override
+        public long getRequestWireBytes() {
+            return requestWireBytes.sum();
+        }
+
+        @Override
+        public long getResponseBytes() {
+            return responseBytes.sum();
+        }
+
+        @Override
+        public long getResponseWireBytes() {
+            return responseWireBytes.sum();
+        }
+
+        @Override
+        public double getMeanLatencyMillis() {
+            long count = calls.sum();
+            return count == 0 ? 0 : totalLatencyNanos.sum() / 1e6 / count;
+        }
+
+        @Override
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos.get() / 1e6;
+        }
+
+        @Override
+        public double getP50LatencyMillis() {
+            return percentileMillis(0.50);
+        }
+
+        @Override
+        public double getP95LatencyMillis() {
+            return percentileMillis(0.95);
+        }
+
+        @Override
+        public double getP99LatencyMillis() {
+            return percentileMillis(0.99);
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile, capped at the largest latency seen.
+         */
+        private double percentileMillis(double percentile) {
+            long[] counts = new long[latencyBuckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = latencyBuckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0)
+                return 0;
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long upperBound = i >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << i) - 1;
+                    return Math.min(upperBound, maxLatencyNanos.get()) / 1e6;
+                }
+            }
+            return getMaxLatencyMillis();
+        }
+
+        @Override
+        public Map<Integer, Long> getStatusCodes() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (int i = 0; i < statusCodes.length(); i++) {
+                long count = statusCodes.get(i);
+                if (count > 0)
+                    counts.put(i, count);
+            }
+            return Collections.unmodifiableMap(counts);
+        }
+
+        @Override
+        public void reset() {
+            calls.reset();
+            failures.reset();
+            retries.reset();
+            quotaErrors.reset();
+            requestBytes.reset();
+            requestWireBytes.reset();
+            responseBytes.reset();
+            responseWireBytes.reset();
+            totalLatencyNanos.reset();
+            maxLatencyNanos.reset();
+            for (int i = 0; i < latencyBuckets.length(); i++)
+                latencyBuckets.set(i, 0);
+            for (int i = 0; i < statusCodes.length(); i++)
+                statusCodes.set(i, 0);
+        }
+    }
+
+    /**
+     * Wraps the request body, content encoding and response parser of requests made under an open call so that
+     * the bytes they move are counted. Runs before every HTTP attempt, so wrapping is skipped when already done.
+     */
+    private static final class MeteredInterceptor implements HttpExecuteInterceptor {
+
+        private final HttpExecuteInterceptor delegate;
+
+        MeteredInterceptor(HttpExecuteInterceptor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void intercept(HttpRequest request) throws IOException {
+            if (delegate != null)
+                delegate.intercept(request);
+            if (CURRENT.get() == null)
+                return;
+            HttpContent content = request.getContent();
+            if (content != null && !(content instanceof MeteredContent))
+                request.setContent(new MeteredContent(content, request.getEncoding() == null));
+            HttpEncoding encoding = request.getEncoding();
+            if (encoding != null && !(encoding instanceof MeteredEncoding))
+                request.setEncoding(new MeteredEncoding(encoding));
+            ObjectParser parser = request.getParser();
+            if (parser != null && !(parser instanceof MeteredParser))
+                request.setParser(new MeteredParser(parser));
+        }
+    }
+
+    /**
+     * Counts responses that the wrapped handler decided to retry, such as a 401 followed by a token refresh.
+     */
+    private static final class MeteredUnsuccessfulResponseHandler implements HttpUnsuccessfulResponseHandler {
+
+        private final HttpUnsuccessfulResponseHandler delegate;
+
+        MeteredUnsuccessfulResponseHandler(HttpUnsuccessfulResponseHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean handleResponse(HttpRequest request, HttpResponse response, boolean supportsRetry) throws IOException {
+            boolean handled = delegate != null && delegate.handleResponse(request, response, supportsRetry);
+            Call call = CURRENT.get();
+            if (handled && call != null)
+                call.onRetriedResponse(response);
+            return handled;
+        }
+    }
+
+    /**
+     * Records the status and reported length of the final response of each request.
+     */
+    private static final class MeteredResponseInterceptor implements HttpResponseInterceptor {
+
+        private final HttpResponseInterceptor delegate;
+
+        MeteredResponseInterceptor(HttpResponseInterceptor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void interceptResponse(HttpResponse response) throws IOException {
+            Call call = CURRENT.get();
+            if (call != null)
+                call.onResponse(response);
+            if (delegate != null)
+                delegate.interceptResponse(response);
+        }
+    }
+
+    /**
+     * Request body that counts the bytes it writes. Without a content encoding those are also the wire bytes.
+     */
+    private static final class MeteredContent implements HttpContent {
+
+        private final HttpContent delegate;
+        private final boolean countWire;
+
+        MeteredContent(HttpContent delegate, boolean countWire) {
+            this.delegate = delegate;
+            this.countWire = countWire;
+        }
+
+        @Override
+        public long getLength() throws IOException {
+            return delegate.getLength();
+        }
+
+        @Override
+        public String getType() {
+            return delegate.getType();
+        }
+
+        @Override
+        public boolean retrySupported() {
+            return delegate.retrySupported();
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            Call call = CURRENT.get();
+            delegate.writeTo(call != null ? new CountingOutputStream(out, call, true, countWire) : out);
+        }
+    }
+
+    /**
+     * Content encoding that counts the encoded bytes, i.e. what is sent on the wire.
+     */
+    private static final class MeteredEncoding implements HttpEncoding {
+
+        private final HttpEncoding delegate;
+
+        MeteredEncoding(HttpEncoding delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void encode(StreamingContent content, OutputStream out) throws IOException {
+            Call call = CURRENT.get();
+            delegate.encode(content, call != null ? new CountingOutputStream(out, call, false, true) : out);
+        }
+    }
+
+    /**
+     * Parser that counts the decoded response bytes it reads.
+     */
+    private static final class MeteredParser implements ObjectParser {
+
+        private final ObjectParser delegate;
+
+        MeteredParser(ObjectParser delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public <T> T parseAndClose(InputStream in, Charset charset, Class<T> dataClass) throws IOException {
+            return delegate.parseAndClose(meterResponse(in), charset, dataClass);
+        }
+
+        @Override
+        public Object parseAndClose(InputStream in, Charset charset, Type dataType) throws IOException {
+            return delegate.parseAndClose(meterResponse(in), charset, dataType);
+        }
+
+        @Override
+        public <T> T parseAndClose(Reader reader, Class<T> dataClass) throws IOException {
+            return delegate.parseAndClose(reader, dataClass);
+        }
+
+        @Override
+        public Object parseAndClose(Reader reader, Type dataType) throws IOException {
+            return delegate.parseAndClose(reader, dataType);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private final Call call;
+        private final boolean payload;
+        private final boolean wire;
+
+        CountingOutputStream(OutputStream out, Call call, boolean payload, boolean wire) {
+            super(out);
+            this.call = call;
+            this.payload = payload;
+            this.wire = wire;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count(len);
+        }
+
+        private void count(int bytes) {
+            if (payload)
+                call.requestBytes += bytes;
+            if (wire)
+                call.requestWireBytes += bytes;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final Call call;
+
+        CountingInputStream(InputStream in, Call call) {
+            super(in);
+            this.call = call;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0)
+                call.responseBytes++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0)
+                call.responseBytes += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            call.responseBytes += skipped;
+            return skipped;
+        }
+    }
+}
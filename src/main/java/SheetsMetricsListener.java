@@ -0,0 +1,26 @@
+/**
+ * Receives a callback for every Sheets and Drive API call made through a {@link GoogleClientProvider}, e.g.
+ * to forward them to a metrics or tracing system. Callbacks run on the calling thread right after the attempt,
+ * so implementations should be quick and must not call back into the library.
+ */
+public interface SheetsMetricsListener {
+
+    /**
+     * Called once per attempt of an API call, whether it succeeded or not.
+     *
+     * @param operation     kind of call
+     * @param statusCode    HTTP status of the final response, or 0 if no response was received
+     * @param latencyNanos  time taken by the attempt, including reading the response
+     * @param requestBytes  request body size before content encoding
+     * @param responseBytes response body size after content decoding
+     */
+    void onCall(SheetsOperation operation, int statusCode, long latencyNanos, long requestBytes, long responseBytes);
+
+    /**
+     * Called before a failed attempt is retried.
+     *
+     * @param quotaError whether the attempt was rejected for exceeding quota
+     */
+    default void onRetry(SheetsOperation operation, int statusCode, boolean quotaError) {
+    }
+}
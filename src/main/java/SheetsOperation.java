@@ -0,0 +1,41 @@
+/**
+ * Kind of Sheets or Drive API call, used to pick the quota bucket a request is charged to.
+ * <p>
+ * {@link #WRITE} covers {@code values().update} and {@code values().batchUpdate}, which leave the same cells
+ * behind however often they are sent. {@link #STRUCTURE} covers {@code spreadsheets().batchUpdate}, whose
+ * requests such as {@code addSheet} fail or add a second sheet when sent again.
+ */
+public enum SheetsOperation {
+
+    READ(false, true),
+    METADATA(false, true),
+    FIND(false, true),
+    WRITE(true, true),
+    CLEAR(true, true),
+    STRUCTURE(true, false),
+    APPEND(true, false),
+    CREATE(true, false),
+    SHARE(true, false);
+
+    private final boolean write;
+    private final boolean idempotent;
+
+    SheetsOperation(boolean write, boolean idempotent) {
+        this.write = write;
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * Whether the call counts against the write quota rather than the read quota.
+     */
+    public boolean isWrite() {
+        return write;
+    }
+
+    /**
+     * Whether the call can safely be repeated after a network error or a 5xx response, whose outcome is unknown.
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+}
@@ -0,0 +1,143 @@
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClient;
+import com.google.api.client.http.AbstractHttpContent;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.util.Key;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.UpdateValuesResponse;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code spreadsheets.values} get and update requests whose bodies are streamed to and from a
+ * {@link ColumnarRowBuffer} instead of going through a {@link ValueRange} object tree.
+ * <p>
+ * The requests go through the regular {@link Sheets} client, so credentials, user agent and error handling
+ * are the same as for the generated requests, and they can be run by the {@link RequestScheduler}.
+ */
+class SheetsValuesRequest<T> extends AbstractGoogleClientRequest<T> {
+
+    private static final String REST_PATH = "v4/spreadsheets/{spreadsheetId}/values/{range}";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    @Key
+    private String spreadsheetId;
+
+    @Key
+    private String range;
+
+    @Key
+    private String valueInputOption;
+
+    @Key
+    private String valueRenderOption;
+
+    @Key
+    private String dateTimeRenderOption;
+
+    @Key
+    private String majorDimension;
+
+    @Key
+    private String fields;
+
+    private SheetsValuesRequest(Sheets sheets, String method, HttpContent content, Class<T> responseClass,
+                                String spreadsheetId, String range) {
+        super(sheets, method, REST_PATH, content, responseClass);
+        this.spreadsheetId = spreadsheetId;
+        this.range = range;
+    }
+
+    /**
+     * Builds a {@code values.update} whose body holds rows {@code fromRow} to {@code toRow} (exclusive) of the buffer.
+     */
+    static SheetsValuesRequest<UpdateValuesResponse> update(Sheets sheets, String spreadsheetId, String range, String inputType,
+                                                            ColumnarRowBuffer buffer, int fromRow, int toRow) {
+        SheetsValuesRequest<UpdateValuesResponse> request = new SheetsValuesRequest<>(sheets, "PUT",
+                new ValuesContent(range, buffer, fromRow, toRow), UpdateValuesResponse.class, spreadsheetId, range);
+        request.valueInputOption = inputType;
+        request.fields = GoogleSheetsUtil.UPDATE_FIELDS;
+        return request;
+    }
+
+    /**
+     * Builds a {@code values.get} returning unformatted values with dates as serial numbers, suited to be
+     * parsed into typed buffer columns with {@link #executeInto(ColumnarRowBuffer)}. Only the values are asked for.
+     */
+    static SheetsValuesRequest<ValueRange> get(Sheets sheets, String spreadsheetId, String range) {
+        SheetsValuesRequest<ValueRange> request = new SheetsValuesRequest<>(sheets, "GET", null, ValueRange.class,
+                spreadsheetId, range);
+        request.valueRenderOption = "UNFORMATTED_VALUE";
+        request.dateTimeRenderOption = "SERIAL_NUMBER";
+        request.majorDimension = "ROWS";
+        request.fields = GoogleSheetsUtil.VALUES_FIELDS;
+        return request;
+    }
+
+    /**
+     * Executes the request and streams the response rows into {@code buffer}.
+     */
+    void executeInto(ColumnarRowBuffer buffer) throws IOException {
+        HttpResponse response = executeUnparsed();
+        try (InputStream content = SheetsMetrics.meterResponse(response.getContent());
+             JsonReader reader = new JsonReader(new InputStreamReader(content, StandardCharsets.UTF_8))) {
+            buffer.readValueRange(reader);
+        }
+        finally {
+            response.disconnect();
+        }
+    }
+
+    @Override
+    protected IOException newExceptionOnError(HttpResponse response) {
+        return GoogleJsonResponseException.from(((AbstractGoogleJsonClient) getAbstractGoogleClient()).getJsonFactory(), response);
+    }
+
+    /**
+     * JSON {@code ValueRange} body written straight from a buffer. The length is left unknown so the body is
+     * streamed with chunked transfer encoding rather than rendered twice to compute it.
+     */
+    static class ValuesContent extends AbstractHttpContent {
+
+        private final String range;
+        private final ColumnarRowBuffer buffer;
+        private final int fromRow;
+        private final int toRow;
+
+        ValuesContent(String range, ColumnarRowBuffer buffer, int fromRow, int toRow) {
+            super("application/json; charset=UTF-8");
+            this.range = range;
+            this.buffer = buffer;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        public long getLength() {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE));
+            writer.beginObject();
+            writer.name("range").value(range);
+            writer.name("majorDimension").value("ROWS");
+            writer.name("values");
+            buffer.writeValues(writer, fromRow, toRow);
+            writer.endObject();
+            writer.flush();
+        }
+    }
+}
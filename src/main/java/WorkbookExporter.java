@@ -0,0 +1,764 @@
+import com.google.api.client.util.Data;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the sheets of a workbook to local files, one file per sheet.
+ * <p>
+ * Sheets are fetched in parallel, each through its own {@link PagedSheetReader}, and every window of rows is
+ * written to the file as soon as it arrives, so a workbook takes about as long as its slowest sheet and memory
+ * is bounded by the window size times the parallelism rather than by the workbook size. Files are written
+ * through a {@link FileChannel} with a large direct buffer into a temporary file in the target directory, which
+ * is moved over the final name only once the sheet is complete. A failed sheet leaves no partial file behind
+ * and any earlier export of it in place. Each sheet is read down to its grid row count, taken from freshly
+ * fetched metadata, so blank stretches of any length do not cut an export short.
+ * <p>
+ * Two formats are supported. {@link Format#CSV} follows RFC 4180. {@link Format#COLUMNAR} is a compact binary
+ * file that stores each window of rows column by column with a per column dictionary of distinct values, and
+ * can be read back with {@link #readColumnar(Path)}.
+ */
+public class WorkbookExporter {
+
+    private static final Logger logger = LogManager.getLogger(WorkbookExporter.class);
+
+    private static final int DEFAULT_PARALLELISM = 8;
+    private static final int DEFAULT_WINDOW_ROWS = 1000;
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final int COLUMNAR_MAGIC = 0x53484558;
+    private static final int COLUMNAR_VERSION = 1;
+    private static final byte TAG_STRING = 0;
+    private static final byte TAG_NUMBER = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_FALSE = 3;
+
+    public enum Format {
+        CSV(".csv"),
+        COLUMNAR(".cols");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final GoogleSheetsUtil sheetsUtil;
+    private Format format = Format.CSV;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int windowRows = DEFAULT_WINDOW_ROWS;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private char delimiter = ',';
+    private ReadOptions readOptions = ReadOptions.defaults();
+
+    public WorkbookExporter(GoogleSheetsUtil sheetsUtil) {
+        this.sheetsUtil = sheetsUtil;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public WorkbookExporter setFormat(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of sheets fetched at the same time.
+     */
+    public WorkbookExporter setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getWindowRows() {
+        return windowRows;
+    }
+
+    /**
+     * Sets the number of rows fetched per request, which is also the number of rows per columnar block.
+     */
+    public WorkbookExporter setWindowRows(int windowRows) {
+        this.windowRows = windowRows;
+        return this;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the size of the direct buffer each sheet is written through.
+     */
+    public WorkbookExporter setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public WorkbookExporter setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    public ReadOptions getReadOptions() {
+        return readOptions;
+    }
+
+    /**
+     * Sets how cell values are read, e.g. {@link ReadOptions#unformatted()} to export raw numbers instead of
+     * their displayed text. Sheets are always read in rows.
+     */
+    public WorkbookExporter setReadOptions(ReadOptions readOptions) {
+        this.readOptions = readOptions;
+        return this;
+    }
+
+    /**
+     * Exports every sheet of the workbook into {@code directory}.
+     */
+    public ExportResult export(String workBookId, Path directory) {
+        logger.debug("Inside method export for workbook " + workBookId);
+        WorkbookMetadataCache.WorkbookMetadata metadata;
+        try {
+            metadata = fetchMetadata(workBookId);
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in reading sheet names of workbook " + workBookId + " " + e.getMessage(), e);
+            ExportResult result = new ExportResult(workBookId);
+            result.failure = e;
+            return result;
+        }
+        return export(workBookId, metadata, metadata.getSheetNames(), directory);
+    }
+
+    /**
+     * Exports the given sheets of the workbook into {@code directory}. Each sheet is written to a file named after
+     * the sheet, with characters that are not safe in file names replaced by {@code _}.
+     */
+    public ExportResult export(String workBookId, List<String> sheetNames, Path directory) {
+        WorkbookMetadataCache.WorkbookMetadata metadata;
+        try {
+            metadata = fetchMetadata(workBookId);
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in reading sheet sizes of workbook " + workBookId + " " + e.getMessage(), e);
+            ExportResult result = new ExportResult(workBookId);
+            result.failure = e;
+            return result;
+        }
+        return export(workBookId, metadata, sheetNames, directory);
+    }
+
+    /**
+     * Fetches the workbook metadata afresh, so the grid sizes include rows added since it was last cached.
+     */
+    private WorkbookMetadataCache.WorkbookMetadata fetchMetadata(String workBookId) throws Exception {
+        sheetsUtil.getMetadataCache().invalidate(workBookId);
+        return sheetsUtil.getMetadataCache().get(workBookId);
+    }
+
+    private ExportResult export(String workBookId, WorkbookMetadataCache.WorkbookMetadata metadata, List<String> sheetNames,
+                                Path directory) {
+        logger.debug("Inside method export for sheets " + sheetNames + " of workbook " + workBookId);
+        ExportResult result = new ExportResult(workBookId);
+        long startNanos = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e) {
+            logger.error("Exception occurred in creating export directory " + directory + " " + e.getMessage(), e);
+            result.failure = e;
+            return result;
+        }
+        Set<String> usedNames = new HashSet<>();
+        List<SheetExport> exports = new ArrayList<>();
+        for (String sheetName : sheetNames) {
+            SheetExport export = new SheetExport(sheetName, directory.resolve(uniqueFileName(sheetName, usedNames)));
+            WorkbookMetadataCache.SheetInfo sheet = metadata.getSheet(sheetName);
+            if (sheet != null)
+                export.rowCount = sheet.rowCount();
+            else
+                export.failure = new IllegalArgumentException("Sheet " + sheetName + " not found in workbook " + workBookId);
+            exports.add(export);
+        }
+        if (!exports.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, exports.size())));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (SheetExport export : exports) {
+                    if (export.failure == null)
+                        futures.add(executor.submit(() -> exportSheet(workBookId, export)));
+                }
+                for (Future<?> future : futures)
+                    future.get();
+            }
+            catch (Exception e) {
+                logger.error("Exception occurred in export " + e.getMessage(), e);
+                result.failure = e;
+                if (e instanceof InterruptedException)
+                    Thread.currentThread().interrupt();
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+        result.sheets = Collections.unmodifiableList(exports);
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        logger.debug("Exported workbook " + workBookId + " " + result);
+        return result;
+    }
+
+    private void exportSheet(String workBookId, SheetExport export) {
+        long startNanos = System.nanoTime();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(export.file.getParent(), "export", ".tmp");
+            try (PagedSheetReader reader = new PagedSheetReader(sheetsUtil.getClientProvider(), workBookId,
+                    export.sheetName, null, null, 1, export.rowCount, windowRows, readOptions);
+                 ChannelOutput out = new ChannelOutput(FileChannel.open(temp, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING), bufferSize)) {
+                if (format == Format.COLUMNAR)
+                    writeColumnar(reader, export, out);
+                else
+                    writeCsv(reader, export, out);
+                out.force();
+                export.bytes = out.getBytesWritten();
+            }
+            Files.move(temp, export.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Exported " + export.rows + " rows of sheet " + export.sheetName + " to " + export.file);
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in exporting sheet " + export.sheetName + " " + e.getMessage(), e);
+            export.failure = e;
+        }
+        finally {
+            export.elapsedNanos = System.nanoTime() - startNanos;
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                }
+                catch (IOException e) {
+                    logger.error("Exception occurred in deleting " + temp + " " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void writeCsv(PagedSheetReader reader, SheetExport export, ChannelOutput out) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        while (reader.hasNext()) {
+            List<Object> row = reader.next();
+            line.setLength(0);
+            for (int column = 0; column < row.size(); column++) {
+                if (column > 0)
+                    line.append(delimiter);
+                appendCsvField(line, cellText(row.get(column)));
+            }
+            line.append("\r\n");
+            out.writeChars(line);
+            export.rows++;
+        }
+    }
+
+    private void appendCsvField(StringBuilder line, String text) {
+        boolean quoted = false;
+        for (int i = 0; i < text.length() && !quoted; i++) {
+            char c = text.charAt(i);
+            quoted = c == delimiter || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quoted) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"')
+                line.append('"');
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    /**
+     * Writes the header and then one block per window of rows. A block holds its row count and column count,
+     * then for each column the distinct values in first seen order followed by one index per row into them,
+     * where 0 marks a cell past the end of its row. A block with no rows ends the file.
+     */
+    private void writeColumnar(PagedSheetReader reader, SheetExport export, ChannelOutput out) throws IOException {
+        out.writeInt(COLUMNAR_MAGIC);
+        out.writeInt(COLUMNAR_VERSION);
+        out.writeString(export.sheetName);
+        List<List<Object>> block = new ArrayList<>(windowRows);
+        Map<Object, Integer> dictionary = new HashMap<>();
+        int[] indexes = new int[windowRows];
+        while (reader.hasNext()) {
+            block.add(reader.next());
+            if (block.size() == windowRows || !reader.hasNext()) {
+                writeBlock(block, dictionary, indexes, out);
+                export.rows += block.size();
+                block.clear();
+            }
+        }
+        out.writeVarInt(0);
+    }
+
+    private static void writeBlock(List<List<Object>> block, Map<Object, Integer> dictionary, int[] indexes,
+                                   ChannelOutput out) throws IOException {
+        int columns = 0;
+        for (List<Object> row : block)
+            columns = Math.max(columns, row.size());
+        out.writeVarInt(block.size());
+        out.writeVarInt(columns);
+        List<Object> values = new ArrayList<>();
+        for (int column = 0; column < columns; column++) {
+            dictionary.clear();
+            values.clear();
+            for (int row = 0; row < block.size(); row++) {
+                List<Object> cells = block.get(row);
+                if (column >= cells.size()) {
+                    indexes[row] = 0;
+                    continue;
+                }
+                Object cell = cellValue(cells.get(column));
+                Integer index = dictionary.get(cell);
+                if (index == null) {
+                    values.add(cell);
+                    index = values.size();
+                    dictionary.put(cell, index);
+                }
+                indexes[row] = index;
+            }
+            out.writeVarInt(values.size());
+            for (Object value : values) {
+                if (value instanceof Boolean bool) {
+                    out.writeByte(bool ? TAG_TRUE : TAG_FALSE);
+                }
+                else {
+                    out.writeByte(value instanceof BigDecimal ? TAG_NUMBER : TAG_STRING);
+                    out.writeString(value instanceof BigDecimal number ? number.toString() : (String) value);
+                }
+            }
+            for (int row = 0; row < block.size(); row++)
+                out.writeVarInt(indexes[row]);
+        }
+    }
+
+    /**
+     * Normalizes a cell to a String, BigDecimal or Boolean so equal values share one dictionary entry.
+     */
+    private static Object cellValue(Object cell) {
+        if (cell == null || Data.isNull(cell))
+            return "";
+        if (cell instanceof Boolean || cell instanceof String)
+            return cell;
+        if (cell instanceof BigDecimal number)
+            return number;
+        if (cell instanceof Number number)
+            return new BigDecimal(number.toString());
+        return cell.toString();
+    }
+
+    private static String cellText(Object cell) {
+        if (cell == null || Data.isNull(cell))
+            return "";
+        if (cell instanceof BigDecimal number)
+            return number.toPlainString();
+        return cell.toString();
+    }
+
+    private String uniqueFileName(String sheetName, Set<String> usedNames) {
+        StringBuilder base = new StringBuilder(sheetName.length());
+        for (int i = 0; i < sheetName.length(); i++) {
+            char c = sheetName.charAt(i);
+            base.append(Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == ' ' || (c == '.' && i > 0) ? c : '_');
+        }
+        if (base.length() == 0)
+            base.append('_');
+        String name = base.toString();
+        for (int suffix = 2; !usedNames.add(name.toLowerCase(Locale.ROOT)); suffix++)
+            name = base + "-" + suffix;
+        return name + format.getExtension();
+    }
+
+    /**
+     * Opens a file written in {@link Format#COLUMNAR} and iterates over its rows. Cells come back as a
+     * String, BigDecimal or Boolean, and each row ends at its last cell as returned by the API.
+     */
+    public static ColumnarFileReader readColumnar(Path file) throws IOException {
+        return new ColumnarFileReader(file);
+    }
+
+    /**
+     * Buffered writes to a file channel through a direct buffer, so the channel never copies through a
+     * temporary buffer of its own.
+     */
+    private static class ChannelOutput implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private long bytesWritten;
+
+        ChannelOutput(FileChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        long getBytesWritten() {
+            return bytesWritten + buffer.position();
+        }
+
+        void writeByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        void writeInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining())
+                    flush();
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void writeChars(CharSequence chars) throws IOException {
+            CharBuffer input = CharBuffer.wrap(chars);
+            while (true) {
+                CoderResult result = encoder.encode(input, buffer, true);
+                if (result.isOverflow())
+                    flush();
+                else if (result.isError())
+                    result.throwException();
+                else
+                    break;
+            }
+            encoder.reset();
+        }
+
+        void force() throws IOException {
+            flush();
+            channel.force(false);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                bytesWritten += channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads a {@link Format#COLUMNAR} file one block at a time, so at most one window of rows is in memory.
+     */
+    public static class ColumnarFileReader implements Iterator<List<Object>>, AutoCloseable {
+
+        private final DataInputStream in;
+        private final String sheetName;
+        private List<List<Object>> block = Collections.emptyList();
+        private int position;
+        private boolean finished;
+
+        private ColumnarFileReader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            try {
+                if (in.readInt() != COLUMNAR_MAGIC || in.readInt() != COLUMNAR_VERSION)
+                    throw new IOException("Not a columnar export file " + file);
+                this.sheetName = readString();
+            }
+            catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        public String getSheetName() {
+            return sheetName;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < block.size())
+                return true;
+            if (finished)
+                return false;
+            try {
+                readBlock();
+            }
+            catch (IOException e) {
+                throw new IllegalStateException("Failed to read columnar export of sheet " + sheetName + " " + e.getMessage(), e);
+            }
+            return position < block.size();
+        }
+
+        @Override
+        public List<Object> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return block.get(position++);
+        }
+
+        @Override
+        public void close() throws IOException {
+            finished = true;
+            in.close();
+        }
+
+        private void readBlock() throws IOException {
+            int rows = readVarInt();
+            if (rows == 0) {
+                finished = true;
+                block = Collections.emptyList();
+                return;
+            }
+            int columns = readVarInt();
+            Object[][] cells = new Object[rows][columns];
+            int[] rowLengths = new int[rows];
+            for (int column = 0; column < columns; column++) {
+                Object[] values = new Object[readVarInt()];
+                for (int i = 0; i < values.length; i++) {
+                    byte tag = in.readByte();
+                    values[i] = switch (tag) {
+                        case TAG_TRUE -> Boolean.TRUE;
+                        case TAG_FALSE -> Boolean.FALSE;
+                        case TAG_NUMBER -> new BigDecimal(readString());
+                        case TAG_STRING -> readString();
+                        default -> throw new IOException("Unknown cell tag " + tag);
+                    };
+                }
+                for (int row = 0; row < rows; row++) {
+                    int index = readVarInt();
+                    if (index > 0) {
+                        cells[row][column] = values[index - 1];
+                        rowLengths[row] = column + 1;
+                    }
+                }
+            }
+            List<List<Object>> rowList = new ArrayList<>(rows);
+            for (int row = 0; row < rows; row++) {
+                List<Object> values = new ArrayList<>(rowLengths[row]);
+                for (int column = 0; column < rowLengths[row]; column++)
+                    values.add(cells[row][column]);
+                rowList.add(values);
+            }
+            block = rowList;
+            position = 0;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = in.read();
+                if (b < 0)
+                    throw new EOFException();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Malformed variable length integer");
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[readVarInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Outcome of exporting one sheet.
+     */
+    public static class SheetExport {
+
+        private final String sheetName;
+        private final Path file;
+        private int rowCount;
+        private volatile long rows;
+        private volatile long bytes;
+        private volatile long elapsedNanos;
+        private volatile Exception failure;
+
+        SheetExport(String sheetName, Path file) {
+            this.sheetName = sheetName;
+            this.file = file;
+        }
+
+        public String getSheetName() {
+            return sheetName;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public boolean isComplete() {
+            return failure == null;
+        }
+
+        public Exception getFailure() {
+            return failure;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "SheetExport{sheetName=" + sheetName + ", file=" + file + ", rows=" + rows + ", bytes=" + bytes
+                    + ", elapsedMillis=" + getElapsedMillis() + ", failure=" + failure + "}";
+        }
+    }
+
+    /**
+     * Outcome of an export. The export is complete only if the sheet list could be read and every sheet was
+     * written.
+     */
+    public static class ExportResult {
+
+        private final String workBookId;
+        private List<SheetExport> sheets = Collections.emptyList();
+        private Exception failure;
+        private long elapsedNanos;
+
+        ExportResult(String workBookId) {
+            this.workBookId = workBookId;
+        }
+
+        public String getWorkBookId() {
+            return workBookId;
+        }
+
+        public List<SheetExport> getSheets() {
+            return sheets;
+        }
+
+        public boolean isComplete() {
+            if (failure != null)
+                return false;
+            for (SheetExport sheet : sheets) {
+                if (!sheet.isComplete())
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Failure that stopped the export as a whole; failures of single sheets are on {@link #getSheets()}.
+         */
+        public Exception getFailure() {
+            return failure;
+        }
+
+        public long getRows() {
+            long rows = 0;
+            for (SheetExport sheet : sheets)
+                rows += sheet.getRows();
+            return rows;
+        }
+
+        public long getBytes() {
+            long bytes = 0;
+            for (SheetExport sheet : sheets)
+                bytes += sheet.getBytes();
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            int failed = 0;
+            for (SheetExport sheet : sheets) {
+                if (!sheet.isComplete())
+                    failed++;
+            }
+            return "ExportResult{workBookId=" + workBookId + ", sheets=" + sheets.size() + ", failedSheets=" + failed
+                    + ", rows=" + getRows() + ", bytes=" + getBytes() + ", elapsedMillis=" + getElapsedMillis()
+                    + ", failure=" + failure + "}";
+        }
+    }
+}
@@ -0,0 +1,269 @@
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
+import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.FileList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory index from spreadsheet name to the ids of all spreadsheets with that name.
+ * <p>
+ * The index is filled on first use by a paginated {@code files.list} of every spreadsheet the account can see,
+ * after taking a Drive changes start page token. From then on it is kept current by reading the
+ * {@code changes.list} feed from that token at most once per refresh interval, so a lookup is a hash map hit
+ * plus, now and then, one small changes request. Spreadsheets created through this library are added right
+ * away. If the page token is rejected the index is rebuilt from a full listing.
+ */
+public class WorkbookIndex {
+
+    private static final Logger logger = LogManager.getLogger(WorkbookIndex.class);
+
+    static final String SPREADSHEET_MIME_TYPE = "application/vnd.google-apps.spreadsheet";
+    private static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofSeconds(10);
+    private static final int PAGE_SIZE = 1000;
+    private static final String LIST_FIELDS = "nextPageToken, files(id, name)";
+    private static final String CHANGES_FIELDS = "nextPageToken, newStartPageToken, changes(fileId, removed, file(name, mimeType, trashed))";
+
+    private final GoogleClientProvider clientProvider;
+    private volatile Map<String, List<String>> idsByName = new ConcurrentHashMap<>();
+    private volatile Map<String, String> namesById = new ConcurrentHashMap<>();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private volatile Duration refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private volatile String pageToken;
+    private volatile long nextSyncNanos;
+    private volatile boolean loaded;
+
+    public WorkbookIndex(GoogleClientProvider clientProvider) {
+        this.clientProvider = clientProvider;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Sets how long lookups may be answered from the index before the changes feed is read again.
+     */
+    public WorkbookIndex setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+        return this;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return namesById.size();
+    }
+
+    /**
+     * Returns the ids of all spreadsheets named {@code name}, in listing order, or an empty list.
+     */
+    public List<String> find(String name) throws Exception {
+        refreshIfStale();
+        return idsByName.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * Brings the index up to date now, loading it first if needed.
+     */
+    public void refresh() throws Exception {
+        syncLock.lock();
+        try {
+            if (!loaded)
+                load();
+            else
+                applyChanges();
+        }
+        finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Drops all entries so that the next lookup rebuilds the index from a full listing.
+     */
+    public void invalidateAll() {
+        syncLock.lock();
+        try {
+            loaded = false;
+            pageToken = null;
+            idsByName = new ConcurrentHashMap<>();
+            namesById = new ConcurrentHashMap<>();
+        }
+        finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Records a spreadsheet created by this library so it can be found before the changes feed reports it.
+     */
+    void put(String id, String name) {
+        syncLock.lock();
+        try {
+            index(id, name);
+        }
+        finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Loads the index if it was never loaded, otherwise reads the changes feed once the refresh interval has
+     * passed. While one thread reads the feed, others keep answering from the current entries.
+     */
+    private void refreshIfStale() throws Exception {
+        if (!loaded) {
+            refresh();
+            return;
+        }
+        if (System.nanoTime() - nextSyncNanos < 0 || !syncLock.tryLock())
+            return;
+        try {
+            applyChanges();
+        }
+        finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void load() throws Exception {
+        logger.debug("Loading workbook index");
+        Drive driveService = clientProvider.getDriveService();
+        String startPageToken = clientProvider.getScheduler().execute(SheetsOperation.FIND, driveService
+                .changes()
+                .getStartPageToken())
+                .getStartPageToken();
+        Map<String, List<String>> loadedIds = new ConcurrentHashMap<>();
+        Map<String, String> loadedNames = new ConcurrentHashMap<>();
+        String query = "mimeType='" + SPREADSHEET_MIME_TYPE + "' and trashed=false";
+        String nextPageToken = null;
+        do {
+            FileList files = clientProvider.getScheduler().execute(SheetsOperation.FIND, driveService
+                    .files()
+                    .list()
+                    .setQ(query)
+                    .setSpaces("drive")
+                    .setPageSize(PAGE_SIZE)
+                    .setPageToken(nextPageToken)
+                    .setFields(LIST_FIELDS));
+            if (files.getFiles() != null) {
+                for (File file : files.getFiles())
+                    index(loadedIds, loadedNames, file.getId(), file.getName());
+            }
+            nextPageToken = files.getNextPageToken();
+        }
+        while (nextPageToken != null);
+        idsByName = loadedIds;
+        namesById = loadedNames;
+        pageToken = startPageToken;
+        loaded = true;
+        scheduleNextSync();
+        logger.debug("Loaded workbook index with " + namesById.size() + " spreadsheets");
+    }
+
+    private void applyChanges() throws Exception {
+        Drive driveService = clientProvider.getDriveService();
+        String token = pageToken;
+        int applied = 0;
+        try {
+            while (token != null) {
+                ChangeList changes = clientProvider.getScheduler().execute(SheetsOperation.FIND, driveService
+                        .changes()
+                        .list(token)
+                        .setSpaces("drive")
+                        .setPageSize(PAGE_SIZE)
+                        .setFields(CHANGES_FIELDS));
+                if (changes.getChanges() != null) {
+                    for (Change change : changes.getChanges()) {
+                        apply(change);
+                        applied++;
+                    }
+                }
+                if (changes.getNewStartPageToken() != null) {
+                    pageToken = changes.getNewStartPageToken();
+                    break;
+                }
+                token = changes.getNextPageToken();
+                if (token != null)
+                    pageToken = token;
+            }
+        }
+        catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() != 400 && e.getStatusCode() != 404)
+                throw e;
+            logger.debug("Changes page token rejected with status " + e.getStatusCode() + ", reloading workbook index");
+            load();
+            return;
+        }
+        scheduleNextSync();
+        if (applied > 0)
+            logger.debug("Applied " + applied + " drive changes to workbook index");
+    }
+
+    private void apply(Change change) {
+        String id = change.getFileId();
+        if (id == null)
+            return;
+        File file = change.getFile();
+        boolean removed = Boolean.TRUE.equals(change.getRemoved()) || file == null
+                || Boolean.TRUE.equals(file.getTrashed()) || !SPREADSHEET_MIME_TYPE.equals(file.getMimeType());
+        if (removed)
+            unindex(id);
+        else
+            index(id, file.getName());
+    }
+
+    private void index(String id, String name) {
+        index(idsByName, namesById, id, name);
+    }
+
+    /**
+     * Adds or renames an entry. Lists are replaced rather than modified so lookups can read them without locking.
+     * A full load fills new maps this way and swaps them in, so lookups never see a half built index.
+     */
+    private static void index(Map<String, List<String>> idsByName, Map<String, String> namesById, String id, String name) {
+        if (id == null || name == null)
+            return;
+        String previousName = namesById.put(id, name);
+        if (name.equals(previousName))
+            return;
+        if (previousName != null)
+            removeId(idsByName, previousName, id);
+        idsByName.compute(name, (key, ids) -> {
+            List<String> updated = ids != null ? new ArrayList<>(ids) : new ArrayList<>(1);
+            updated.add(id);
+            return Collections.unmodifiableList(updated);
+        });
+    }
+
+    private void unindex(String id) {
+        String name = namesById.remove(id);
+        if (name != null)
+            removeId(idsByName, name, id);
+    }
+
+    private static void removeId(Map<String, List<String>> idsByName, String name, String id) {
+        idsByName.computeIfPresent(name, (key, ids) -> {
+            List<String> updated = new ArrayList<>(ids);
+            updated.remove(id);
+            return updated.isEmpty() ? null : Collections.unmodifiableList(updated);
+        });
+    }
+
+    private void scheduleNextSync() {
+        nextSyncNanos = System.nanoTime() + refreshInterval.toNanos();
+    }
+}
@@ -0,0 +1,149 @@
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.GridProperties;
+import com.google.api.services.sheets.v4.model.Sheet;
+import com.google.api.services.sheets.v4.model.SheetProperties;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches sheet titles, ids and grid sizes per workbook for a limited time.
+ * <p>
+ * Metadata is fetched with a field mask so only sheet properties are downloaded. Entries expire after the
+ * configured TTL. They are invalidated early only when this library adds sheets, or when a create-or-clear
+ * fails on them; sheets deleted by someone else show until the TTL runs out.
+ * <p>
+ * Grid sizes are not updated by writes, so a write or append that grows a sheet leaves its cached row and
+ * column counts too small until the entry expires. Callers that need the current size call
+ * {@link #invalidate(String)} before {@link #get(String)}, as the exporter does.
+ */
+public class WorkbookMetadataCache {
+
+    private static final Logger logger = LogManager.getLogger(WorkbookMetadataCache.class);
+
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    static final String SHEET_PROPERTIES_FIELDS = "sheets.properties(sheetId,title,index,gridProperties(rowCount,columnCount))";
+
+    private final GoogleClientProvider clientProvider;
+    private final Map<String, WorkbookMetadata> workbooks = new ConcurrentHashMap<>();
+    private volatile Duration ttl = DEFAULT_TTL;
+
+    public WorkbookMetadataCache(GoogleClientProvider clientProvider) {
+        this.clientProvider = clientProvider;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public WorkbookMetadataCache setTtl(Duration ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    /**
+     * Returns the cached metadata of a workbook, fetching it if it is missing or older than the TTL.
+     */
+    public WorkbookMetadata get(String workbookId) throws Exception {
+        WorkbookMetadata metadata = workbooks.get(workbookId);
+        if (metadata != null && !metadata.isExpired(ttl))
+            return metadata;
+        metadata = fetch(workbookId);
+        workbooks.put(workbookId, metadata);
+        return metadata;
+    }
+
+    public void invalidate(String workbookId) {
+        logger.debug("Invalidating metadata of workbook " + workbookId);
+        workbooks.remove(workbookId);
+    }
+
+    public void invalidateAll() {
+        workbooks.clear();
+    }
+
+    private WorkbookMetadata fetch(String workbookId) throws Exception {
+        logger.debug("Fetching metadata of workbook " + workbookId);
+        Sheets sheetService = clientProvider.getSheetService();
+        Spreadsheet spreadsheet = clientProvider.getScheduler().execute(SheetsOperation.METADATA, sheetService
+                .spreadsheets()
+                .get(workbookId)
+                .setFields(SHEET_PROPERTIES_FIELDS));
+        Map<String, SheetInfo> sheets = new LinkedHashMap<>();
+        if (spreadsheet.getSheets() != null) {
+            for (Sheet sheet : spreadsheet.getSheets()) {
+                SheetInfo sheetInfo = SheetInfo.from(sheet.getProperties());
+                sheets.put(sheetInfo.title(), sheetInfo);
+            }
+        }
+        return new WorkbookMetadata(workbookId, System.currentTimeMillis(), sheets);
+    }
+
+    /**
+     * Properties of a single sheet as cached by {@link WorkbookMetadataCache}.
+     */
+    public record SheetInfo(int sheetId, String title, int index, int rowCount, int columnCount) {
+
+        static SheetInfo from(SheetProperties properties) {
+            GridProperties grid = properties.getGridProperties();
+            return new SheetInfo(
+                    properties.getSheetId() != null ? properties.getSheetId() : 0,
+                    properties.getTitle(),
+                    properties.getIndex() != null ? properties.getIndex() : 0,
+                    grid != null && grid.getRowCount() != null ? grid.getRowCount() : 0,
+                    grid != null && grid.getColumnCount() != null ? grid.getColumnCount() : 0);
+        }
+    }
+
+    /**
+     * Snapshot of the sheets of one workbook at the time it was fetched.
+     */
+    public static class WorkbookMetadata {
+
+        private final String workbookId;
+        private final long fetchedAtMillis;
+        private final Map<String, SheetInfo> sheets;
+
+        WorkbookMetadata(String workbookId, long fetchedAtMillis, Map<String, SheetInfo> sheets) {
+            this.workbookId = workbookId;
+            this.fetchedAtMillis = fetchedAtMillis;
+            this.sheets = Collections.unmodifiableMap(sheets);
+        }
+
+        public String getWorkbookId() {
+            return workbookId;
+        }
+
+        public long getFetchedAtMillis() {
+            return fetchedAtMillis;
+        }
+
+        public List<String> getSheetNames() {
+            return new ArrayList<>(sheets.keySet());
+        }
+
+        public SheetInfo getSheet(String title) {
+            return sheets.get(title);
+        }
+
+        public boolean containsSheet(String title) {
+            return sheets.containsKey(title);
+        }
+
+        public Map<String, SheetInfo> getSheets() {
+            return sheets;
+        }
+
+        boolean isExpired(Duration ttl) {
+            return System.currentTimeMillis() - fetchedAtMillis > ttl.toMillis();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import com.google.api.services.sheets.v4.Sheets;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates workbooks from a {@link WorkbookTemplate}, one {@code spreadsheets.create} call per workbook.
+ * <p>
+ * Bulk provisioning runs up to {@code concurrency} creates at a time. Every create is charged to the write
+ * quota through the scheduler, so the rate stays within quota however high the concurrency is set, and
+ * throttled creates (429, or 403 with a rate limit reason), which the API has not applied, are retried with
+ * backoff. A create that fails with a 5xx response or a network error is reported in the result and not
+ * repeated, since the workbook may have been created all the same; look it up by title before creating it
+ * again.
+ */
+public class WorkbookProvisioner {
+
+    private static final Logger logger = LogManager.getLogger(WorkbookProvisioner.class);
+
+    private static final int DEFAULT_CONCURRENCY = 10;
+
+    private final GoogleClientProvider clientProvider;
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    public WorkbookProvisioner(GoogleClientProvider clientProvider) {
+        this.clientProvider = clientProvider;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public WorkbookProvisioner setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+        return this;
+    }
+
+    /**
+     * Creates one workbook titled {@code title} with the layout of {@code template} and returns its id.
+     * Only throttled attempts are retried; on any other failure the exception is thrown even though the
+     * workbook may exist.
+     */
+    public String create(String title, WorkbookTemplate template) throws Exception {
+        logger.debug("Creating workbook " + title + " with " + template.getSheets().size() + " sheets");
+        Sheets sheetService = clientProvider.getSheetService();
+        return clientProvider.getScheduler().execute(SheetsOperation.CREATE, sheetService
+                .spreadsheets()
+                .create(template.toSpreadsheet(title))
+                .setFields("spreadsheetId"))
+                .getSpreadsheetId();
+    }
+
+    /**
+     * Creates one workbook per title, all with the layout of {@code template}, and returns one entry per title
+     * in input order.
+     */
+    public ProvisionResult provision(List<String> titles, WorkbookTemplate template) {
+        logger.debug("Provisioning " + titles.size() + " workbooks with concurrency " + concurrency);
+        long startNanos = System.nanoTime();
+        ProvisionedWorkbook[] workbooks = new ProvisionedWorkbook[titles.size()];
+        if (!titles.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, titles.size()));
+            try {
+                List<Future<?>> futures = new ArrayList<>(titles.size());
+                for (int i = 0; i < titles.size(); i++) {
+                    int index = i;
+                    futures.add(executor.submit(() -> workbooks[index] = createQuietly(titles.get(index), template)));
+                }
+                for (Future<?> future : futures)
+                    future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted while provisioning workbooks");
+            }
+            catch (Exception e) {
+                logger.error("Exception occurred in provisioning workbooks " + e.getMessage(), e);
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+        List<ProvisionedWorkbook> results = new ArrayList<>(workbooks.length);
+        for (int i = 0; i < workbooks.length; i++)
+            results.add(workbooks[i] != null ? workbooks[i] : new ProvisionedWorkbook(titles.get(i), null, "not created"));
+        ProvisionResult result = new ProvisionResult(Collections.unmodifiableList(results), System.nanoTime() - startNanos);
+        logger.debug("Provisioned workbooks " + result);
+        return result;
+    }
+
+    private ProvisionedWorkbook createQuietly(String title, WorkbookTemplate template) {
+        try {
+            return new ProvisionedWorkbook(title, create(title, template), null);
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in creating workbook " + title + " " + e.getMessage(), e);
+            return new ProvisionedWorkbook(title, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Outcome of creating one workbook. {@code workBookId} is set when the workbook was created and
+     * {@code error} when it was not.
+     */
+    public record ProvisionedWorkbook(String title, String workBookId, String error) {
+
+        public boolean isSuccessful() {
+            return workBookId != null;
+        }
+    }
+
+    public static class ProvisionResult {
+
+        private final List<ProvisionedWorkbook> workbooks;
+        private final long elapsedNanos;
+
+        ProvisionResult(List<ProvisionedWorkbook> workbooks, long elapsedNanos) {
+            this.workbooks = workbooks;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * One entry per requested title, in input order.
+         */
+        public List<ProvisionedWorkbook> getWorkbooks() {
+            return workbooks;
+        }
+
+        /**
+         * Ids of the workbooks that were created, in input order.
+         */
+        public List<String> getWorkBookIds() {
+            List<String> ids = new ArrayList<>();
+            for (ProvisionedWorkbook workbook : workbooks) {
+                if (workbook.isSuccessful())
+                    ids.add(workbook.workBookId());
+            }
+            return ids;
+        }
+
+        public List<ProvisionedWorkbook> getFailures() {
+            List<ProvisionedWorkbook> failures = new ArrayList<>();
+            for (ProvisionedWorkbook workbook : workbooks) {
+                if (!workbook.isSuccessful())
+                    failures.add(workbook);
+            }
+            return failures;
+        }
+
+        public boolean isComplete() {
+            return getFailures().isEmpty();
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "ProvisionResult{workbooks=" + workbooks.size() + ", created=" + getWorkBookIds().size()
+                    + ", failed=" + getFailures().size() + ", elapsedMillis=" + getElapsedMillis() + "}";
+        }
+    }
+}
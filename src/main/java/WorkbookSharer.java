@@ -0,0 +1,249 @@
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.Permission;
+import com.google.api.services.drive.model.PermissionList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Grants a role on a workbook to many users using Drive HTTP batch requests.
+ * <p>
+ * Permission creates are packed into multipart batches of up to {@code batchSize} calls and several batches
+ * run concurrently, each charged its full size against the write quota. Entries of a batch that were
+ * throttled are retried one by one through the scheduler; other failures are reported in the result map
+ * rather than retried. That includes server errors, since the permission may have been created all the
+ * same. Sharing again later finds such a permission and reports it as {@link ShareStatus#ALREADY_SHARED}.
+ */
+public class WorkbookSharer {
+
+    private static final Logger logger = LogManager.getLogger(WorkbookSharer.class);
+
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int DEFAULT_CONCURRENT_BATCHES = 2;
+
+    private final GoogleClientProvider clientProvider;
+    private int batchSize = MAX_BATCH_SIZE;
+    private int concurrentBatches = DEFAULT_CONCURRENT_BATCHES;
+
+    public WorkbookSharer(GoogleClientProvider clientProvider) {
+        this.clientProvider = clientProvider;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of permission creates per batch, capped at the Drive limit of 100.
+     */
+    public WorkbookSharer setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        return this;
+    }
+
+    public int getConcurrentBatches() {
+        return concurrentBatches;
+    }
+
+    public WorkbookSharer setConcurrentBatches(int concurrentBatches) {
+        this.concurrentBatches = Math.max(1, concurrentBatches);
+        return this;
+    }
+
+    /**
+     * Shares the workbook with every user and returns one result per distinct user, in input order.
+     *
+     * @param skipExisting when true, users who already hold exactly {@code role} are not sent a new permission
+     */
+    public Map<String, ShareResult> share(String workBookId, List<String> users, String role, boolean skipExisting) {
+        logger.debug("Sharing workbook " + workBookId + " with " + users.size() + " users as " + role);
+        Map<String, ShareResult> results = new ConcurrentHashMap<>();
+        List<String> pending = new ArrayList<>();
+        Drive driveService;
+        try {
+            driveService = clientProvider.getDriveService();
+            Map<String, String> existingRoles = skipExisting ? getExistingRoles(driveService, workBookId) : Map.of();
+            for (String user : new LinkedHashSet<>(users)) {
+                if (role.equals(existingRoles.get(user.toLowerCase(Locale.ROOT))))
+                    results.put(user, new ShareResult(user, ShareStatus.ALREADY_SHARED, null, null));
+                else
+                    pending.add(user);
+            }
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in preparing to share workbook " + workBookId + " " + e.getMessage(), e);
+            return ordered(users, failAll(users, results, e.getMessage()));
+        }
+
+        Set<String> retries = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentBatches);
+        try {
+            List<Future<?>> batches = new ArrayList<>();
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                List<String> batchUsers = pending.subList(from, Math.min(from + batchSize, pending.size()));
+                batches.add(executor.submit(() -> executeBatch(driveService, workBookId, batchUsers, role, results, retries)));
+            }
+            for (Future<?> batch : batches)
+                batch.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while sharing workbook " + workBookId);
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in sharing workbook " + workBookId + " " + e.getMessage(), e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        for (String user : retries)
+            shareIndividually(driveService, workBookId, user, role, results);
+        failAll(users, results, "not shared");
+        logger.debug("Shared workbook " + workBookId + " with " + results.size() + " users");
+        return ordered(users, results);
+    }
+
+    private void executeBatch(Drive driveService, String workBookId, List<String> users, String role,
+                              Map<String, ShareResult> results, Set<String> retries) {
+        try {
+            clientProvider.getScheduler().execute(SheetsOperation.SHARE, users.size(), () -> {
+                BatchRequest batch = driveService.batch();
+                for (String user : users) {
+                    if (results.containsKey(user) || retries.contains(user))
+                        continue;
+                    driveService
+                            .permissions()
+                            .create(workBookId, newPermission(user, role))
+                            .setFields("id")
+                            .queue(batch, new JsonBatchCallback<Permission>() {
+                                @Override
+                                public void onSuccess(Permission permission, HttpHeaders responseHeaders) {
+                                    results.put(user, new ShareResult(user, ShareStatus.SHARED, permission.getId(), null));
+                                }
+
+                                @Override
+                                public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                                    if (isRetryable(error))
+                                        retries.add(user);
+                                    else
+                                        results.put(user, new ShareResult(user, ShareStatus.FAILED, null, error.getMessage()));
+                                }
+                            });
+                }
+                if (batch.size() > 0)
+                    batch.execute();
+                return null;
+            });
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in executing share batch for workbook " + workBookId + " " + e.getMessage(), e);
+            for (String user : users)
+                results.putIfAbsent(user, new ShareResult(user, ShareStatus.FAILED, null, e.getMessage()));
+        }
+    }
+
+    private void shareIndividually(Drive driveService, String workBookId, String user, String role,
+                                   Map<String, ShareResult> results) {
+        logger.debug("Retrying share of workbook " + workBookId + " with user " + user);
+        try {
+            Permission permission = clientProvider.getScheduler().execute(SheetsOperation.SHARE, driveService
+                    .permissions()
+                    .create(workBookId, newPermission(user, role))
+                    .setFields("id"));
+            results.put(user, new ShareResult(user, ShareStatus.SHARED, permission.getId(), null));
+        }
+        catch (Exception e) {
+            logger.error("Exception occurred in sharing workbook " + workBookId + " to user " + user + " " + e.getMessage(), e);
+            results.put(user, new ShareResult(user, ShareStatus.FAILED, null, e.getMessage()));
+        }
+    }
+
+    private Map<String, String> getExistingRoles(Drive driveService, String workBookId) throws Exception {
+        Map<String, String> roles = new HashMap<>();
+        String pageToken = null;
+        do {
+            PermissionList permissions = clientProvider.getScheduler().execute(SheetsOperation.METADATA, driveService
+                    .permissions()
+                    .list(workBookId)
+                    .setPageSize(100)
+                    .setPageToken(pageToken)
+                    .setFields("nextPageToken,permissions(emailAddress,role)"));
+            if (permissions.getPermissions() != null) {
+                for (Permission permission : permissions.getPermissions()) {
+                    if (permission.getEmailAddress() != null)
+                        roles.put(permission.getEmailAddress().toLowerCase(Locale.ROOT), permission.getRole());
+                }
+            }
+            pageToken = permissions.getNextPageToken();
+        } while (pageToken != null);
+        logger.debug("Workbook " + workBookId + " already has " + roles.size() + " user permissions");
+        return roles;
+    }
+
+    private static Permission newPermission(String user, String role) {
+        return new Permission()
+                .setType("user")
+                .setRole(role)
+                .setEmailAddress(user);
+    }
+
+    private static boolean isRetryable(GoogleJsonError error) {
+        if (error.getCode() == 429)
+            return true;
+        if (error.getCode() == 403 && error.getErrors() != null) {
+            for (GoogleJsonError.ErrorInfo errorInfo : error.getErrors()) {
+                if ("rateLimitExceeded".equals(errorInfo.getReason()) || "userRateLimitExceeded".equals(errorInfo.getReason())
+                        || "sharingRateLimitExceeded".equals(errorInfo.getReason()))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, ShareResult> failAll(List<String> users, Map<String, ShareResult> results, String error) {
+        for (String user : users)
+            results.putIfAbsent(user, new ShareResult(user, ShareStatus.FAILED, null, error));
+        return results;
+    }
+
+    private static Map<String, ShareResult> ordered(List<String> users, Map<String, ShareResult> results) {
+        Map<String, ShareResult> ordered = new LinkedHashMap<>();
+        for (String user : users)
+            ordered.put(user, results.get(user));
+        return ordered;
+    }
+
+    public enum ShareStatus {
+        SHARED,
+        ALREADY_SHARED,
+        FAILED
+    }
+
+    /**
+     * Outcome of sharing a workbook with one user. {@code permissionId} is set when a permission was created
+     * and {@code error} when sharing failed.
+     */
+    public record ShareResult(String user, ShareStatus status, String permissionId, String error) {
+
+        public boolean isSuccessful() {
+            return status != ShareStatus.FAILED;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import com.google.api.services.sheets.v4.model.CellData;
+import com.google.api.services.sheets.v4.model.CellFormat;
+import com.google.api.services.sheets.v4.model.DimensionProperties;
+import com.google.api.services.sheets.v4.model.ExtendedValue;
+import com.google.api.services.sheets.v4.model.GridData;
+import com.google.api.services.sheets.v4.model.GridProperties;
+import com.google.api.services.sheets.v4.model.RowData;
+import com.google.api.services.sheets.v4.model.Sheet;
+import com.google.api.services.sheets.v4.model.SheetProperties;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
+import com.google.api.services.sheets.v4.model.SpreadsheetProperties;
+import com.google.api.services.sheets.v4.model.TextFormat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Layout of a new workbook: its sheets, with optional header row, frozen rows and columns and column widths.
+ * <p>
+ * The whole layout is sent in the body of the {@code spreadsheets.create} call, so a workbook is provisioned
+ * in a single request and starts with exactly the listed sheets instead of the default {@code Sheet1}. A
+ * template is not modified by creating workbooks from it and can be shared between threads once built.
+ */
+public class WorkbookTemplate {
+
+    private static final int DEFAULT_COLUMN_COUNT = 26;
+
+    private final List<SheetTemplate> sheets = new ArrayList<>();
+    private String locale;
+    private String timeZone;
+
+    /**
+     * Template with one plain sheet per name.
+     */
+    public static WorkbookTemplate of(List<String> sheetNames) {
+        WorkbookTemplate template = new WorkbookTemplate();
+        sheetNames.forEach(template::addSheet);
+        return template;
+    }
+
+    public List<SheetTemplate> getSheets() {
+        return Collections.unmodifiableList(sheets);
+    }
+
+    public WorkbookTemplate addSheet(String sheetName) {
+        return addSheet(new SheetTemplate(sheetName));
+    }
+
+    public WorkbookTemplate addSheet(SheetTemplate sheet) {
+        sheets.add(sheet);
+        return this;
+    }
+
+    public String getLocale() {
+        return locale;
+    }
+
+    /**
+     * Sets the spreadsheet locale, e.g. {@code en_US}, which decides how {@code USER_ENTERED} values are parsed.
+     */
+    public WorkbookTemplate setLocale(String locale) {
+        this.locale = locale;
+        return this;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public WorkbookTemplate setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+        return this;
+    }
+
+    /**
+     * Builds the {@code spreadsheets.create} body for a workbook titled {@code title}.
+     */
+    Spreadsheet toSpreadsheet(String title) {
+        Spreadsheet spreadsheet = new Spreadsheet()
+                .setProperties(new SpreadsheetProperties()
+                        .setTitle(title)
+                        .setLocale(locale)
+                        .setTimeZone(timeZone));
+        if (!sheets.isEmpty()) {
+            List<Sheet> sheetList = new ArrayList<>(sheets.size());
+            for (int index = 0; index < sheets.size(); index++)
+                sheetList.add(sheets.get(index).toSheet(index));
+            spreadsheet.setSheets(sheetList);
+        }
+        return spreadsheet;
+    }
+
+    public static class SheetTemplate {
+
+        private final String name;
+        private List<Object> headers = Collections.emptyList();
+        private boolean boldHeaders = true;
+        private int frozenRowCount;
+        private int frozenColumnCount;
+        private List<Integer> columnWidths = Collections.emptyList();
+
+        public SheetTemplate(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Object> getHeaders() {
+            return headers;
+        }
+
+        /**
+         * Sets the values of the first row. Numbers and booleans are stored as such, anything else as text.
+         */
+        public SheetTemplate setHeaders(List<?> headers) {
+            this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+            return this;
+        }
+
+        public boolean isBoldHeaders() {
+            return boldHeaders;
+        }
+
+        public SheetTemplate setBoldHeaders(boolean boldHeaders) {
+            this.boldHeaders = boldHeaders;
+            return this;
+        }
+
+        public int getFrozenRowCount() {
+            return frozenRowCount;
+        }
+
+        public SheetTemplate setFrozenRowCount(int frozenRowCount) {
+            this.frozenRowCount = frozenRowCount;
+            return this;
+        }
+
+        public int getFrozenColumnCount() {
+            return frozenColumnCount;
+        }
+
+        public SheetTemplate setFrozenColumnCount(int frozenColumnCount) {
+            this.frozenColumnCount = frozenColumnCount;
+            return this;
+        }
+
+        public List<Integer> getColumnWidths() {
+            return columnWidths;
+        }
+
+        /**
+         * Sets the width in pixels of the leading columns. A {@code null} entry keeps the default width.
+         */
+        public SheetTemplate setColumnWidths(List<Integer> columnWidths) {
+            this.columnWidths = Collections.unmodifiableList(new ArrayList<>(columnWidths));
+            return this;
+        }
+
+        private Sheet toSheet(int index) {
+            GridProperties gridProperties = new GridProperties();
+            if (frozenRowCount > 0)
+                gridProperties.setFrozenRowCount(frozenRowCount);
+            if (frozenColumnCount > 0)
+                gridProperties.setFrozenColumnCount(frozenColumnCount);
+            int columns = Math.max(headers.size(), columnWidths.size());
+            if (columns > DEFAULT_COLUMN_COUNT)
+                gridProperties.setColumnCount(columns);
+            Sheet sheet = new Sheet()
+                    .setProperties(new SheetProperties()
+                            .setTitle(name)
+                            .setIndex(index)
+                            .setGridProperties(gridProperties.isEmpty() ? null : gridProperties));
+            if (columns == 0)
+                return sheet;
+            GridData data = new GridData()
+                    .setStartRow(0)
+                    .setStartColumn(0);
+            if (!headers.isEmpty())
+                data.setRowData(List.of(new RowData().setValues(headerCells())));
+            if (!columnWidths.isEmpty()) {
+                List<DimensionProperties> columnMetadata = new ArrayList<>(columnWidths.size());
+                for (Integer width : columnWidths)
+                    columnMetadata.add(width != null ? new DimensionProperties().setPixelSize(width) : new DimensionProperties());
+                data.setColumnMetadata(columnMetadata);
+            }
+            return sheet.setData(List.of(data));
+        }
+
+        private List<CellData> headerCells() {
+            CellFormat format = boldHeaders ? new CellFormat().setTextFormat(new TextFormat().setBold(true)) : null;
+            List<CellData> cells = new ArrayList<>(headers.size());
+            for (Object header : headers) {
+                ExtendedValue value = new ExtendedValue();
+                if (header instanceof Number number)
+                    value.setNumberValue(number.doubleValue());
+                else if (header instanceof Boolean bool)
+                    value.setBoolValue(bool);
+                else
+                    value.setStringValue(header != null ? header.toString() : "");
+                cells.add(new CellData()
+                        .setUserEnteredValue(value)
+                        .setUserEnteredFormat(format));
+            }
+            return cells;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Column letters, cell references and sheet name quoting of {@link A1Notation}.
+ */
+class A1NotationTest {
+
+    @Test
+    void namesColumnsAcrossLetterBoundaries() {
+        assertEquals("A", A1Notation.columnName(1));
+        assertEquals("Z", A1Notation.columnName(26));
+        assertEquals("AA", A1Notation.columnName(27));
+        assertEquals("AB", A1Notation.columnName(28));
+        assertEquals("AZ", A1Notation.columnName(52));
+        assertEquals("BA", A1Notation.columnName(53));
+        assertEquals("ZZ", A1Notation.columnName(702));
+        assertEquals("AAA", A1Notation.columnName(703));
+        assertEquals("ZZZ", A1Notation.columnName(A1Notation.MAX_COLUMN));
+    }
+
+    @Test
+    void rejectsColumnsOutsideTheGrid() {
+        assertThrows(IllegalArgumentException.class, () -> A1Notation.columnName(0));
+        assertThrows(IllegalArgumentException.class, () -> A1Notation.columnName(A1Notation.MAX_COLUMN + 1));
+        assertThrows(IllegalArgumentException.class, () -> A1Notation.columnNumber("AAAA1"));
+    }
+
+    @Test
+    void columnNamesRoundTrip() {
+        for (int column = 1; column <= A1Notation.MAX_COLUMN; column++)
+            assertEquals(column, A1Notation.columnNumber(A1Notation.columnName(column)), A1Notation.columnName(column));
+    }
+
+    @Test
+    void parsesCellReferences() {
+        assertEquals(28, A1Notation.columnNumber("AB10"));
+        assertEquals(10, A1Notation.rowNumber("AB10"));
+        assertEquals(28, A1Notation.columnNumber("ab10"));
+        assertEquals(A1Notation.MAX_COLUMN, A1Notation.columnNumber("ZZZ1"));
+        assertEquals(0, A1Notation.columnNumber("10"));
+        assertEquals(0, A1Notation.rowNumber("AB"));
+        assertThrows(IllegalArgumentException.class, () -> A1Notation.rowNumber("A1B"));
+    }
+
+    @Test
+    void formatsCellReferences() {
+        assertEquals("AB10", A1Notation.cell(28, 10));
+        assertEquals("AB", A1Notation.cell(28, 0));
+        assertEquals("10", A1Notation.cell(0, 10));
+    }
+
+    @Test
+    void quotesSheetNamesOnlyWhenNeeded() {
+        assertEquals("Sales", A1Notation.quoteSheetName("Sales"));
+        assertEquals("Sales_2024", A1Notation.quoteSheetName("Sales_2024"));
+        assertEquals("'Q1 Sales'", A1Notation.quoteSheetName("Q1 Sales"));
+        assertEquals("'Bob''s Data'", A1Notation.quoteSheetName("Bob's Data"));
+        assertEquals("'AB10'", A1Notation.quoteSheetName("AB10"));
+        assertEquals("'R1C1'", A1Notation.quoteSheetName("R1C1"));
+        assertEquals("'2024'", A1Notation.quoteSheetName("2024"));
+        assertEquals("'Q1 Sales'", A1Notation.quoteSheetName("'Q1 Sales'"));
+    }
+
+    @Test
+    void unquotesSheetNames() {
+        assertEquals("Bob's Data", A1Notation.unquoteSheetName("'Bob''s Data'"));
+        assertEquals("'", A1Notation.unquoteSheetName("''''"));
+        assertEquals("Sales", A1Notation.unquoteSheetName("Sales"));
+        for (String name : new String[]{"Sales", "Q1 Sales", "Bob's Data", "'", "It's!here", "AB10"})
+            assertEquals(name, A1Notation.unquoteSheetName(A1Notation.quoteSheetName(name)));
+    }
+}
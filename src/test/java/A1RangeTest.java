@@ -0,0 +1,116 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parsing, formatting and arithmetic of {@link A1Range}, and the ranges the library derives from it.
+ */
+class A1RangeTest {
+
+    @Test
+    void parsesAndFormatsQuotedSheetNames() {
+        A1Range range = A1Range.parse("'Bob''s Data'!B2:AB10");
+
+        assertEquals(new A1Range("Bob's Data", 2, 2, 28, 10), range);
+        assertEquals("'Bob''s Data'!B2:AB10", range.toA1Notation());
+        assertEquals("It's!here", A1Range.parse("'It''s!here'!A1").sheetName());
+        assertEquals("'It''s!here'!A1", A1Range.parse("'It''s!here'!A1").toA1Notation());
+    }
+
+    @Test
+    void roundTripsEveryRangeShape() {
+        for (String a1 : new String[]{"Data!A1", "Data!AB10:ZZZ20", "Data!A:C", "Data!2:10", "Data!A5:C", "Data",
+                "'Q1 Sales'!Z1:AA2", "'AB10'!AB10"})
+            assertEquals(a1, A1Range.parse(a1).toA1Notation());
+    }
+
+    @Test
+    void parsesOpenBounds() {
+        assertEquals(new A1Range("Data", 1, 0, 3, 0), A1Range.parse("Data!A:C"));
+        assertEquals(new A1Range("Data", 0, 2, 0, 10), A1Range.parse("Data!2:10"));
+        assertEquals(new A1Range("Data", 1, 5, 3, 0), A1Range.parse("Data!A5:C"));
+        assertTrue(A1Range.parse("Data").isWholeSheet());
+        assertEquals(-1, A1Range.parse("Data!A:C").getRowCount());
+    }
+
+    @Test
+    void readsTextWithoutSeparatorAsRangeOrSheet() {
+        assertEquals(new A1Range(null, 2, 2, 4, 10), A1Range.parse("B2:D10"));
+        assertEquals(A1Range.wholeSheet("Sheet1"), A1Range.parse("Sheet1"));
+        assertEquals(A1Range.wholeSheet("Q1 Sales"), A1Range.parse("'Q1 Sales'"));
+    }
+
+    @Test
+    void rejectsInvalidRanges() {
+        assertThrows(IllegalArgumentException.class, () -> A1Range.parse("Data!C3:A1"));
+        assertThrows(IllegalArgumentException.class, () -> A1Range.parse("Data!A1:ZZZZ2"));
+        assertThrows(IllegalArgumentException.class, () -> A1Range.ofSize("Data", "ZZY1", 1, 3));
+        assertThrows(IllegalArgumentException.class, () -> A1Range.ofSize("Data", "A1", 0, 1));
+    }
+
+    @Test
+    void sizesRangesFromMultiLetterStarts() {
+        assertEquals("Data!AB10:AD11", A1Range.ofSize("Data", "AB10", 2, 3).toA1Notation());
+        assertEquals("Data!Z1:AA1", A1Range.ofSize("Data", "Z1", 1, 2).toA1Notation());
+        assertEquals("Data!ZZX1:ZZZ1", A1Range.ofSize("Data", "ZZX1", 1, 3).toA1Notation());
+    }
+
+    @Test
+    void offsetsKeepOpenBoundsOpen() {
+        assertEquals("Data!C3:D4", A1Range.parse("Data!B2:C3").offset(1, 1).toA1Notation());
+        assertEquals("Data!AA:AB", A1Range.parse("Data!Z:AA").offset(5, 1).toA1Notation());
+        assertThrows(IllegalArgumentException.class, () -> A1Range.parse("Data!B2").offset(-2, 0));
+    }
+
+    @Test
+    void splitsAcrossColumnLetterBoundaries() {
+        assertEquals(List.of("Data!A1:B2", "Data!A3:B4", "Data!A5:B5"), notations(A1Range.parse("Data!A1:B5").splitRows(2)));
+        assertEquals(List.of("Data!Y1:Z3", "Data!AA1:AB3"), notations(A1Range.parse("Data!Y1:AB3").splitColumns(2)));
+        assertEquals(List.of("Data!ZZ:AAA"), notations(A1Range.parse("Data!ZZ:AAA").splitColumns(5)));
+        assertThrows(IllegalStateException.class, () -> A1Range.parse("Data!A:C").splitRows(10));
+        assertThrows(IllegalArgumentException.class, () -> A1Range.parse("Data!A1:C3").splitColumns(0));
+    }
+
+    @Test
+    void unionCoversBothRanges() {
+        assertEquals("Data!A1:E6", A1Range.parse("Data!A1:B2").union(A1Range.parse("Data!D5:E6")).toA1Notation());
+        assertEquals("Data!A:D", A1Range.parse("Data!A:A").union(A1Range.parse("Data!C3:D4")).toA1Notation());
+        assertThrows(IllegalArgumentException.class, () -> A1Range.parse("Data!A1").union(A1Range.parse("Other!A1")));
+    }
+
+    @Test
+    void intersectKeepsCommonCells() {
+        assertEquals("Data!B2:C3", A1Range.parse("Data!A1:C3").intersect(A1Range.parse("Data!B2:D4")).toA1Notation());
+        assertEquals("Data!C3", A1Range.parse("Data!A1:C3").intersect(A1Range.parse("Data!C3:E5")).toA1Notation());
+        assertEquals("Data!A2:B3", A1Range.parse("Data!A:B").intersect(A1Range.parse("Data!2:3")).toA1Notation());
+        assertNull(A1Range.parse("Data!A1:C3").intersect(A1Range.parse("Data!D1:E3")));
+        assertNull(A1Range.parse("Data!A5:C").intersect(A1Range.parse("Data!A1:C3")));
+    }
+
+    @Test
+    void writesRaggedRowsFromMultiLetterStart() throws Exception {
+        try (FakeSheetsServer server = new FakeSheetsServer()) {
+            GoogleSheetsUtil sheetsUtil = new GoogleSheetsUtil("test", server.clientProvider());
+            List<List<Object>> rows = List.of(List.of("a"), List.of("b", "c", "d"), List.of());
+
+            sheetsUtil.writeToRange("wb", "Q1 Sales", "AB10", "RAW", rows);
+
+            List<FakeSheetsServer.Request> requests = server.getRequests();
+            assertEquals(1, requests.size());
+            assertTrue(requests.get(0).path().endsWith("/values/'Q1 Sales'!AB10:AD12"), requests.get(0).path());
+        }
+    }
+
+    private static List<String> notations(List<A1Range> ranges) {
+        List<String> notations = new ArrayList<>();
+        for (A1Range range : ranges)
+            notations.add(range.toA1Notation());
+        return notations;
+    }
+}
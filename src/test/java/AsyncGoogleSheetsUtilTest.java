@@ -0,0 +1,85 @@
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Results and failures of {@link AsyncGoogleSheetsUtil} futures, against the logged empty results of
+ * {@link GoogleSheetsUtil}.
+ */
+class AsyncGoogleSheetsUtilTest {
+
+    private FakeSheetsServer server;
+    private GoogleSheetsUtil sheetsUtil;
+    private AsyncGoogleSheetsUtil asyncUtil;
+    private volatile boolean rejecting;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSheetsServer(request -> {
+            if (rejecting && request.path().contains("/values"))
+                return new FakeSheetsServer.Response(400, FakeSheetsServer.BAD_REQUEST_RESPONSE);
+            return FakeSheetsServer.defaultResponse(request);
+        });
+        sheetsUtil = new GoogleSheetsUtil("test", server.clientProvider());
+        asyncUtil = new AsyncGoogleSheetsUtil(sheetsUtil);
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncUtil.close();
+        server.close();
+    }
+
+    @Test
+    void completesWithTheResultOfTheCall() throws Exception {
+        assertEquals(List.of(), await(asyncUtil.readRange("wb", "Data", "A1:C3")));
+        assertEquals("Sheet1!A1", await(asyncUtil.writeToRange("wb", "Data", "A1", "RAW", List.of(List.of("a")))).getUpdatedRange());
+        assertNull(await(asyncUtil.clearSheetData("wb", List.of("Data"))));
+    }
+
+    @Test
+    void completesExceptionallyWhenTheCallFails() {
+        rejecting = true;
+
+        assertRejected(asyncUtil.readRange("wb", "Data", "A1:C3"));
+        assertRejected(asyncUtil.readRanges("wb", List.of(SheetRange.of("Data", "A1:C3"))));
+        assertRejected(asyncUtil.writeToRange("wb", "Data", "A1", "RAW", List.of(List.of("a"))));
+        assertRejected(asyncUtil.writeRanges("wb", Map.of(SheetRange.of("Data", "A1"), List.of(List.of("a"))), "RAW"));
+        assertRejected(asyncUtil.clearSheetData("wb", List.of("Data", "Other")));
+
+        assertEquals(List.of(), sheetsUtil.readRange("wb", "Data", "A1:C3"));
+        assertNull(sheetsUtil.writeToRange("wb", "Data", "A1", "RAW", List.of(List.of("a"))));
+    }
+
+    @Test
+    void clearsEverySheetBeforeFailing() {
+        rejecting = true;
+
+        ExecutionException failure = assertRejected(asyncUtil.clearSheetData("wb", List.of("Data", "Other")));
+
+        assertEquals(2, server.getRequests().stream().filter(request -> request.path().endsWith(":clear")).count());
+        assertEquals(1, failure.getCause().getSuppressed().length);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(15, TimeUnit.SECONDS);
+    }
+
+    private static ExecutionException assertRejected(CompletableFuture<?> future) {
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> await(future));
+        assertInstanceOf(GoogleJsonResponseException.class, failure.getCause());
+        return failure;
+    }
+}
@@ -0,0 +1,120 @@
+import com.google.api.services.sheets.v4.model.ValueRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CSV parsing edge cases of {@link BulkImporter}, checked on the values that reach the sheet.
+ */
+class BulkImporterTest {
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    @TempDir
+    Path directory;
+
+    private FakeSheetsServer server;
+    private BulkImporter importer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSheetsServer();
+        importer = new BulkImporter(new GoogleSheetsUtil("test", server.clientProvider()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void keepsLineBreaksAndQuotesInsideQuotedFields() throws Exception {
+        BulkImporter.ImportResult result = importCsv("id,note\r\n1,\"line one\r\nline two\"\r\n2,\"say \"\"hi\"\"\"\r\n");
+
+        assertTrue(result.isComplete(), String.valueOf(result.getFailure()));
+        assertEquals(List.of(
+                List.of("id", "note"),
+                List.of(1, "line one\r\nline two"),
+                List.of(2, "say \"hi\"")), writtenRows());
+    }
+
+    @Test
+    void keepsEmptyFieldsAndAcceptsAnyLineEnding() throws Exception {
+        BulkImporter.ImportResult result = importCsv("a,,\"\"\rb,c,d\ne,f,g");
+
+        assertTrue(result.isComplete(), String.valueOf(result.getFailure()));
+        assertEquals(3, result.getRowsRead());
+        assertEquals(List.of(
+                List.of("a", "", ""),
+                List.of("b", "c", "d"),
+                List.of("e", "f", "g")), writtenRows());
+    }
+
+    @Test
+    void skipsByteOrderMark() throws Exception {
+        byte[] text = "name,count\nx,3\n".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[UTF8_BOM.length + text.length];
+        System.arraycopy(UTF8_BOM, 0, bytes, 0, UTF8_BOM.length);
+        System.arraycopy(text, 0, bytes, UTF8_BOM.length, text.length);
+        Path file = Files.write(directory.resolve("bom.csv"), bytes);
+
+        BulkImporter.ImportResult result = importer.importCsv("wb", "Data", file, "RAW");
+
+        assertTrue(result.isComplete(), String.valueOf(result.getFailure()));
+        assertEquals(List.of(List.of("name", "count"), List.of("x", 3)), writtenRows());
+    }
+
+    @Test
+    void failsOnUnterminatedQuote() throws Exception {
+        BulkImporter.ImportResult result = importCsv("a,b\n1,\"never closed\n2,3\n");
+
+        assertFalse(result.isComplete());
+        IOException failure = assertInstanceOf(IOException.class, result.getFailure());
+        assertTrue(failure.getMessage().startsWith("Unterminated quoted field"), failure.getMessage());
+    }
+
+    private BulkImporter.ImportResult importCsv(String csv) throws IOException {
+        Path file = Files.writeString(directory.resolve("input.csv"), csv);
+        return importer.importCsv("wb", "Data", file, "RAW");
+    }
+
+    /**
+     * Rows of every values update sent, in the order they were received. Whole numbers come back from JSON
+     * as decimals and are turned back into integers.
+     */
+    private List<List<Object>> writtenRows() {
+        List<List<Object>> rows = new ArrayList<>();
+        for (FakeSheetsServer.Request request : server.getRequests()) {
+            if (!"PUT".equals(request.method()) || !request.path().contains("/values/"))
+                continue;
+            ValueRange valueRange;
+            try {
+                valueRange = request.parse(ValueRange.class);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (List<Object> row : valueRange.getValues()) {
+                List<Object> cells = new ArrayList<>();
+                for (Object cell : row)
+                    cells.add(cell instanceof Number number && number.doubleValue() == number.intValue() ? number.intValue() : cell);
+                rows.add(cells);
+            }
+        }
+        return rows;
+    }
+}
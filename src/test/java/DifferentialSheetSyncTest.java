@@ -0,0 +1,196 @@
+import com.google.api.services.sheets.v4.model.BatchClearValuesRequest;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesRequest;
+import com.google.api.services.sheets.v4.model.GridProperties;
+import com.google.api.services.sheets.v4.model.Sheet;
+import com.google.api.services.sheets.v4.model.SheetProperties;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * What {@link DifferentialSheetSync} sends: everything on a first sync, only the changed cells afterwards,
+ * and clears for the cells and rows a shorter dataset no longer has.
+ */
+class DifferentialSheetSyncTest {
+
+    private FakeSheetsServer server;
+    private DifferentialSheetSync sync;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSheetsServer();
+        sync = new DifferentialSheetSync(new GoogleSheetsUtil("test", server.clientProvider()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void firstSyncClearsTheSheetAndWritesEverything() {
+        DifferentialSheetSync.SyncResult result = sync.sync("wb", "Data", "A1", "RAW", rows(3, 4));
+
+        assertTrue(result.isFullRewrite());
+        assertFalse(result.isFailed());
+        assertEquals(List.of("Data"), clearedRanges());
+        assertEquals(Map.of("Data!A1:D3", rows(3, 4)), writtenRanges());
+    }
+
+    @Test
+    void resyncSendsOnlyChangedCells() {
+        List<List<Object>> rows = rows(5, 4);
+        sync.sync("wb", "Data", "A1", "RAW", rows);
+        server.clearRequests();
+
+        rows.get(1).set(2, "changed");
+        rows.get(2).set(2, "changed too");
+        rows.get(4).set(0, 42);
+        DifferentialSheetSync.SyncResult result = sync.sync("wb", "Data", "A1", "RAW", rows);
+
+        assertFalse(result.isFullRewrite());
+        assertEquals(List.of(), clearedRanges());
+        Map<String, List<List<Object>>> written = writtenRanges();
+        assertEquals(2, written.size());
+        assertEquals(List.of(List.of("changed"), List.of("changed too")), written.get("Data!C2:C3"));
+        assertEquals(List.of(List.of(42)), written.get("Data!A5"));
+        assertEquals(3, result.getCellsWritten());
+    }
+
+    @Test
+    void unchangedResyncSendsNothing() {
+        sync.sync("wb", "Data", "A1", "RAW", rows(5, 4));
+        server.clearRequests();
+
+        DifferentialSheetSync.SyncResult result = sync.sync("wb", "Data", "A1", "RAW", rows(5, 4));
+
+        assertEquals(List.of(), server.getRequests());
+        assertEquals(0, result.getCellsWritten());
+    }
+
+    @Test
+    void shorterDatasetClearsTrimmedCellsAndRows() {
+        sync.sync("wb", "Data", "A1", "RAW", rows(5, 4));
+        server.clearRequests();
+
+        List<List<Object>> rows = rows(3, 4);
+        rows.get(0).remove(3);
+        rows.get(0).remove(2);
+        DifferentialSheetSync.SyncResult result = sync.sync("wb", "Data", "A1", "RAW", rows);
+
+        assertEquals(Map.of("Data!C1:D1", List.of(List.of("", ""))), writtenRanges());
+        assertEquals(List.of("Data!A4:D5"), clearedRanges());
+        assertEquals(2, result.getRowsCleared());
+
+        server.clearRequests();
+        sync.sync("wb", "Data", "A1", "RAW", rows);
+        assertEquals(List.of(), server.getRequests());
+    }
+
+    @Test
+    void rewriteClearsOnlyFromTheStartingCell() {
+        server.setResponder(request -> "GET".equals(request.method()) && request.path().endsWith("/spreadsheets/wb")
+                ? metadata("Data", 8) : FakeSheetsServer.defaultResponse(request));
+
+        DifferentialSheetSync.SyncResult result = sync.sync("wb", "Data", "B5", "RAW", rows(2, 3));
+
+        assertTrue(result.isFullRewrite());
+        assertEquals(List.of("Data!B5:H"), clearedRanges());
+        assertEquals(Map.of("Data!B5:D6", rows(2, 3)), writtenRanges());
+    }
+
+    @Test
+    void failedWriteIsSentAgainOnTheNextSync() {
+        List<List<Object>> rows = rows(3, 2);
+        sync.sync("wb", "Data", "A1", "RAW", rows);
+        rows.get(1).set(1, "lost");
+        server.setResponder(request -> request.path().endsWith("/values:batchUpdate")
+                ? new FakeSheetsServer.Response(400, FakeSheetsServer.BAD_REQUEST_RESPONSE)
+                : FakeSheetsServer.defaultResponse(request));
+        assertTrue(sync.sync("wb", "Data", "A1", "RAW", rows).isFailed());
+
+        server.setResponder(FakeSheetsServer::defaultResponse);
+        server.clearRequests();
+        sync.sync("wb", "Data", "A1", "RAW", rows);
+
+        assertEquals(Map.of("Data!B2", List.of(List.of("lost"))), writtenRanges());
+    }
+
+    private static List<List<Object>> rows(int rowCount, int columnCount) {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            List<Object> values = new ArrayList<>();
+            for (int column = 0; column < columnCount; column++)
+                values.add("r" + row + "c" + column);
+            rows.add(values);
+        }
+        return rows;
+    }
+
+    private List<String> clearedRanges() {
+        List<String> ranges = new ArrayList<>();
+        for (FakeSheetsServer.Request request : server.getRequests()) {
+            if (request.path().endsWith("/values:batchClear"))
+                ranges.addAll(parse(request, BatchClearValuesRequest.class).getRanges());
+        }
+        return ranges;
+    }
+
+    /**
+     * Values sent through batch updates by range. Numbers come back from JSON as decimals, so whole ones are
+     * turned back into integers.
+     */
+    private Map<String, List<List<Object>>> writtenRanges() {
+        Map<String, List<List<Object>>> ranges = new LinkedHashMap<>();
+        for (FakeSheetsServer.Request request : server.getRequests()) {
+            if (!request.path().endsWith("/values:batchUpdate"))
+                continue;
+            for (ValueRange valueRange : parse(request, BatchUpdateValuesRequest.class).getData()) {
+                List<List<Object>> values = new ArrayList<>();
+                for (List<Object> row : valueRange.getValues()) {
+                    List<Object> cells = new ArrayList<>();
+                    for (Object cell : row)
+                        cells.add(cell instanceof Number number && number.doubleValue() == number.intValue() ? number.intValue() : cell);
+                    values.add(cells);
+                }
+                ranges.put(valueRange.getRange(), values);
+            }
+        }
+        return ranges;
+    }
+
+    private static <T> T parse(FakeSheetsServer.Request request, Class<T> type) {
+        try {
+            return request.parse(type);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static FakeSheetsServer.Response metadata(String sheetName, int columnCount) {
+        try {
+            return FakeSheetsServer.json(new Spreadsheet().setSheets(List.of(new Sheet().setProperties(new SheetProperties()
+                    .setSheetId(1)
+                    .setTitle(sheetName)
+                    .setIndex(0)
+                    .setGridProperties(new GridProperties().setRowCount(1000).setColumnCount(columnCount))))));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.sheets.v4.model.BatchClearValuesRequest;
+import com.google.api.services.sheets.v4.model.BatchClearValuesResponse;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesRequest;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesResponse;
+import com.google.api.services.sheets.v4.model.UpdateValuesResponse;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for the Sheets and Drive endpoints, for tests that run the library end to end.
+ * <p>
+ * Answers each request with whatever the test's responder returns, so a test can fail or throttle chosen
+ * calls, and records every request with its decoded query and body for the test to inspect. A responder that returns {@code null} cuts the
+ * response short, which the client sees as a network error.
+ */
+final class FakeSheetsServer implements AutoCloseable {
+
+    static final String UPDATE_RESPONSE = "{\"updatedRange\":\"Sheet1!A1\",\"updatedRows\":0,\"updatedColumns\":0,\"updatedCells\":0}";
+    static final String THROTTLED_RESPONSE = "{\"error\":{\"code\":429,\"message\":\"Quota exceeded\","
+            + "\"errors\":[{\"reason\":\"rateLimitExceeded\"}]}}";
+    static final String SERVER_ERROR_RESPONSE = "{\"error\":{\"code\":503,\"message\":\"Backend unavailable\"}}";
+    static final String BAD_REQUEST_RESPONSE = "{\"error\":{\"code\":400,\"message\":\"Invalid range\"}}";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Request> requests = new ArrayList<>();
+    private volatile Function<Request, Response> responder;
+
+    FakeSheetsServer() throws IOException {
+        this(FakeSheetsServer::defaultResponse);
+    }
+
+    FakeSheetsServer(Function<Request, Response> responder) throws IOException {
+        this.responder = responder;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * A call as the server received it. {@code query} and {@code body} are decoded; {@code body} is empty for
+     * calls without one.
+     */
+    record Request(String method, String path, String query, String body) {
+
+        boolean isValuesGet() {
+            return "GET".equals(method) && path.contains("/values/");
+        }
+
+        <T> T parse(Class<T> type) throws IOException {
+            return GsonFactory.getDefaultInstance().fromString(body, type);
+        }
+    }
+
+    record Response(int status, String body) {
+
+        static Response ok(String body) {
+            return new Response(200, body);
+        }
+    }
+
+    /**
+     * Answers reads with an empty range, batch clears and batch updates with every range of the request as
+     * done, single writes and appends with an empty update, and anything else with an empty object.
+     */
+    static Response defaultResponse(Request request) {
+        try {
+            if (request.isValuesGet())
+                return Response.ok("{\"range\":\"Sheet1!A1\",\"majorDimension\":\"ROWS\"}");
+            if (request.path().endsWith("/values:batchClear")) {
+                BatchClearValuesRequest clear = request.parse(BatchClearValuesRequest.class);
+                return json(new BatchClearValuesResponse().setClearedRanges(clear.getRanges()));
+            }
+            if (request.path().endsWith("/values:batchUpdate")) {
+                BatchUpdateValuesRequest update = request.parse(BatchUpdateValuesRequest.class);
+                List<UpdateValuesResponse> responses = new ArrayList<>();
+                for (ValueRange valueRange : update.getData())
+                    responses.add(new UpdateValuesResponse().setUpdatedRange(valueRange.getRange()));
+                return json(new BatchUpdateValuesResponse().setResponses(responses));
+            }
+            if (request.path().contains("/values/"))
+                return Response.ok(UPDATE_RESPONSE);
+            return Response.ok("{}");
+        }
+        catch (IOException e) {
+            return new Response(400, "{\"error\":{\"code\":400,\"message\":\"" + e.getMessage() + "\"}}");
+        }
+    }
+
+    static Response json(Object model) throws IOException {
+        return Response.ok(GsonFactory.getDefaultInstance().toString(model));
+    }
+
+    FakeSheetsServer setResponder(Function<Request, Response> responder) {
+        this.responder = responder;
+        return this;
+    }
+
+    List<Request> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    void clearRequests() {
+        synchronized (requests) {
+            requests.clear();
+        }
+    }
+
+    /**
+     * Client provider whose requests all go to this server, with the quota set high enough never to wait and
+     * short backoffs so retries stay fast.
+     */
+    GoogleClientProvider clientProvider() {
+        return new GoogleClientProvider("test", new NetHttpTransport(), requestInitializer())
+                .setSchedulerConfig(new RequestScheduler.Config()
+                        .setReadRequestsPerMinute(1_000_000)
+                        .setWriteRequestsPerMinute(1_000_000)
+                        .setInitialBackoffMillis(1)
+                        .setMaxBackoffMillis(5));
+    }
+
+    /**
+     * Request initializer that sends every request to this server instead of the Google endpoints.
+     */
+    HttpRequestInitializer requestInitializer() {
+        int port = server.getAddress().getPort();
+        return request -> request.setInterceptor(intercepted -> {
+            GenericUrl url = intercepted.getUrl();
+            url.setScheme("http");
+            url.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+            url.setPort(port);
+        });
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = in.readAllBytes();
+                }
+            }
+            String query = exchange.getRequestURI().getRawQuery();
+            Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                    query != null ? URLDecoder.decode(query, StandardCharsets.UTF_8) : "",
+                    new String(body, StandardCharsets.UTF_8));
+            synchronized (requests) {
+                requests.add(request);
+            }
+            Response response = responder.apply(request);
+            if (response == null) {
+                cutShort(exchange);
+                return;
+            }
+            byte[] responseBody = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(response.status(), responseBody.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(responseBody);
+            }
+        }
+    }
+
+    /**
+     * Starts a response whose body ends early, so the connection is closed halfway through it. Unlike a
+     * connection closed before the status line, this is not silently repeated by the HTTP client.
+     */
+    private static void cutShort(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, 64);
+        OutputStream out = exchange.getResponseBody();
+        out.write('{');
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,101 @@
+import com.google.api.services.sheets.v4.model.Sheet;
+import com.google.api.services.sheets.v4.model.SheetProperties;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retries of {@link GoogleSheetsUtil#createOrClearSheets(String, List)} when the cached metadata is stale.
+ */
+class GoogleSheetsUtilTest {
+
+    private static final String ALREADY_EXISTS_RESPONSE = "{\"error\":{\"code\":400,\"message\":\"Invalid requests[0].addSheet:"
+            + " A sheet with the name \\\"Data\\\" already exists. Please enter another name.\"}}";
+
+    private FakeSheetsServer server;
+    private GoogleSheetsUtil sheetsUtil;
+    private final List<String> sheetNames = new CopyOnWriteArrayList<>();
+    private final List<FakeSheetsServer.Response> batchUpdateResponses = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSheetsServer(request -> {
+            if ("GET".equals(request.method()) && request.path().endsWith("/spreadsheets/wb"))
+                return metadataResponse();
+            if (request.path().endsWith("/spreadsheets/wb:batchUpdate") && !batchUpdateResponses.isEmpty())
+                return batchUpdateResponses.remove(0);
+            return FakeSheetsServer.defaultResponse(request);
+        });
+        sheetsUtil = new GoogleSheetsUtil("test", server.clientProvider());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void retriesWithFreshMetadataWhenTheSheetWasAddedMeanwhile() {
+        sheetsUtil.getSheetNamesFromWorkbook("wb");
+        sheetNames.add("Data");
+        batchUpdateResponses.add(new FakeSheetsServer.Response(400, ALREADY_EXISTS_RESPONSE));
+
+        assertTrue(sheetsUtil.createOrClearSheets("wb", "Data"));
+
+        List<FakeSheetsServer.Request> updates = batchUpdates();
+        assertEquals(2, updates.size());
+        assertTrue(updates.get(0).body().contains("addSheet"), updates.get(0).body());
+        assertTrue(updates.get(1).body().contains("updateCells"), updates.get(1).body());
+    }
+
+    @Test
+    void doesNotRetryOtherRejections() {
+        batchUpdateResponses.add(new FakeSheetsServer.Response(400, FakeSheetsServer.BAD_REQUEST_RESPONSE));
+
+        assertFalse(sheetsUtil.createOrClearSheets("wb", "Data"));
+
+        assertEquals(1, batchUpdates().size());
+        assertEquals(1, metadataReads());
+    }
+
+    @Test
+    void doesNotRetryServerErrors() {
+        batchUpdateResponses.add(new FakeSheetsServer.Response(503, FakeSheetsServer.SERVER_ERROR_RESPONSE));
+
+        assertFalse(sheetsUtil.createOrClearSheets("wb", "Data"));
+
+        assertEquals(1, batchUpdates().size());
+        assertEquals(1, metadataReads());
+    }
+
+    private FakeSheetsServer.Response metadataResponse() {
+        List<Sheet> sheets = new ArrayList<>();
+        for (String sheetName : sheetNames)
+            sheets.add(new Sheet().setProperties(new SheetProperties().setSheetId(sheets.size()).setTitle(sheetName).setIndex(sheets.size())));
+        try {
+            return FakeSheetsServer.json(new Spreadsheet().setSheets(sheets));
+        }
+        catch (IOException e) {
+            return new FakeSheetsServer.Response(400, FakeSheetsServer.BAD_REQUEST_RESPONSE);
+        }
+    }
+
+    private List<FakeSheetsServer.Request> batchUpdates() {
+        return server.getRequests().stream().filter(request -> request.path().endsWith(":batchUpdate")).toList();
+    }
+
+    private long metadataReads() {
+        return server.getRequests().stream().filter(request -> "GET".equals(request.method())
+                && request.path().endsWith("/spreadsheets/wb")).count();
+    }
+}
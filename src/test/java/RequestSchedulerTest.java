@@ -0,0 +1,154 @@
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.AddSheetRequest;
+import com.google.api.services.sheets.v4.model.BatchUpdateSpreadsheetRequest;
+import com.google.api.services.sheets.v4.model.Request;
+import com.google.api.services.sheets.v4.model.SheetProperties;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
+import com.google.api.services.sheets.v4.model.SpreadsheetProperties;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Which failures {@link RequestScheduler} sends again: throttling for every operation, 5xx responses and
+ * network errors only for idempotent operations, and nothing else.
+ */
+class RequestSchedulerTest {
+
+    private FakeSheetsServer server;
+    private GoogleClientProvider clientProvider;
+    private Sheets sheets;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSheetsServer();
+        clientProvider = server.clientProvider();
+        sheets = clientProvider.getSheetService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void retriesThrottledCallsOfEveryOperation() throws Exception {
+        failFirst(2, new FakeSheetsServer.Response(429, FakeSheetsServer.THROTTLED_RESPONSE));
+
+        assertNotNull(create());
+        assertEquals(3, server.getRequests().size());
+        assertEquals(2, scheduler().getRetries());
+        assertEquals(2, scheduler().getThrottled());
+    }
+
+    @Test
+    void treatsRateLimitedForbiddenAsThrottled() throws Exception {
+        failFirst(1, new FakeSheetsServer.Response(403, "{\"error\":{\"code\":403,\"message\":\"Rate limited\","
+                + "\"errors\":[{\"reason\":\"userRateLimitExceeded\"}]}}"));
+
+        assertNotNull(create());
+        assertEquals(2, server.getRequests().size());
+        assertEquals(1, scheduler().getThrottled());
+    }
+
+    @Test
+    void retriesServerErrorsOfIdempotentOperations() throws Exception {
+        failFirst(2, new FakeSheetsServer.Response(503, FakeSheetsServer.SERVER_ERROR_RESPONSE));
+
+        assertNotNull(read());
+        assertEquals(3, server.getRequests().size());
+        assertEquals(2, scheduler().getRetries());
+        assertEquals(0, scheduler().getThrottled());
+    }
+
+    @Test
+    void doesNotRetryServerErrorsOfCreates() {
+        failFirst(1, new FakeSheetsServer.Response(503, FakeSheetsServer.SERVER_ERROR_RESPONSE));
+
+        HttpResponseException e = assertThrows(HttpResponseException.class, this::create);
+        assertEquals(503, e.getStatusCode());
+        assertEquals(1, server.getRequests().size());
+        assertEquals(0, scheduler().getRetries());
+        assertEquals(1, scheduler().getFailures());
+    }
+
+    @Test
+    void doesNotRetryServerErrorsOfStructuralUpdates() {
+        failFirst(1, new FakeSheetsServer.Response(503, FakeSheetsServer.SERVER_ERROR_RESPONSE));
+
+        HttpResponseException e = assertThrows(HttpResponseException.class, () -> scheduler().execute(SheetsOperation.STRUCTURE,
+                sheets.spreadsheets().batchUpdate("wb", new BatchUpdateSpreadsheetRequest().setRequests(List.of(
+                        new Request().setAddSheet(new AddSheetRequest().setProperties(new SheetProperties().setTitle("Data"))))))));
+        assertEquals(503, e.getStatusCode());
+        assertEquals(1, server.getRequests().size());
+        assertEquals(0, scheduler().getRetries());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        failFirst(1, new FakeSheetsServer.Response(400, FakeSheetsServer.BAD_REQUEST_RESPONSE));
+
+        HttpResponseException e = assertThrows(HttpResponseException.class, this::read);
+        assertEquals(400, e.getStatusCode());
+        assertEquals(1, server.getRequests().size());
+        assertEquals(0, scheduler().getRetries());
+    }
+
+    @Test
+    void retriesNetworkErrorsOfIdempotentOperationsOnly() throws Exception {
+        failFirst(1, null);
+        assertNotNull(read());
+        assertEquals(1, scheduler().getRetries());
+
+        failFirst(1, null);
+        IOException e = assertThrows(IOException.class, this::create);
+        assertFalse(e instanceof HttpResponseException);
+        assertEquals(1, scheduler().getRetries());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        clientProvider.setSchedulerConfig(new RequestScheduler.Config()
+                .setReadRequestsPerMinute(1_000_000)
+                .setMaxAttempts(3)
+                .setInitialBackoffMillis(1)
+                .setMaxBackoffMillis(5));
+        server.setResponder(request -> new FakeSheetsServer.Response(503, FakeSheetsServer.SERVER_ERROR_RESPONSE));
+
+        assertThrows(HttpResponseException.class, this::read);
+        assertEquals(3, server.getRequests().size());
+        assertEquals(2, scheduler().getRetries());
+    }
+
+    /**
+     * Answers the first {@code failures} requests with {@code failure}, or drops them if it is {@code null}.
+     */
+    private void failFirst(int failures, FakeSheetsServer.Response failure) {
+        AtomicInteger count = new AtomicInteger();
+        server.setResponder(request -> count.incrementAndGet() <= failures ? failure : FakeSheetsServer.defaultResponse(request));
+    }
+
+    private RequestScheduler scheduler() {
+        return clientProvider.getScheduler();
+    }
+
+    private ValueRange read() throws IOException {
+        return scheduler().execute(SheetsOperation.READ, sheets.spreadsheets().values().get("wb", "Sheet1!A1:B2"));
+    }
+
+    private Spreadsheet create() throws IOException {
+        return scheduler().execute(SheetsOperation.CREATE, sheets.spreadsheets()
+                .create(new Spreadsheet().setProperties(new SpreadsheetProperties().setTitle("Report"))));
+    }
+}
@@ -0,0 +1,229 @@
+import com.google.api.services.sheets.v4.model.ValueRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Delivery of {@link SheetAppendSink}: batching, spilling while the API fails, and replaying the spilled rows
+ * in order, by the same sink or by the next one on the spill directory.
+ */
+class SheetAppendSinkTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    @TempDir
+    Path spillDirectory;
+
+    private FakeSheetsServer server;
+    private GoogleClientProvider clientProvider;
+    private final List<List<Object>> appended = new CopyOnWriteArrayList<>();
+    private volatile boolean failing;
+    private volatile boolean rejecting;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSheetsServer(request -> {
+            if (!request.path().endsWith(":append"))
+                return FakeSheetsServer.defaultResponse(request);
+            if (failing)
+                return new FakeSheetsServer.Response(503, FakeSheetsServer.SERVER_ERROR_RESPONSE);
+            if (rejecting)
+                return new FakeSheetsServer.Response(400, FakeSheetsServer.BAD_REQUEST_RESPONSE);
+            try {
+                appended.addAll(request.parse(ValueRange.class).getValues());
+            }
+            catch (IOException e) {
+                return new FakeSheetsServer.Response(400, FakeSheetsServer.BAD_REQUEST_RESPONSE);
+            }
+            return FakeSheetsServer.Response.ok("{\"updates\":{\"updatedRows\":1}}");
+        });
+        clientProvider = server.clientProvider();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void appendsQueuedRowsInBatches() throws Exception {
+        List<List<Object>> rows = rows(0, 7);
+        try (SheetAppendSink sink = newSink().setMaxBatchRows(3).start()) {
+            rows.forEach(sink::append);
+
+            assertTrue(sink.flush(TIMEOUT));
+            assertEquals(rows, appended);
+            assertEquals(7, sink.getAppendedRows());
+            assertEquals(3, sink.getAppendCalls());
+        }
+    }
+
+    @Test
+    void spillsWhileFailingAndReplaysInOrder() throws Exception {
+        failing = true;
+        List<List<Object>> rows = rows(0, 12);
+        try (SheetAppendSink sink = newSink().setMaxBatchRows(5).start()) {
+            rows.forEach(sink::append);
+            awaitSpilled(sink, rows.size());
+            assertEquals(List.of(), appended);
+
+            failing = false;
+            assertTrue(sink.flush(TIMEOUT));
+            assertEquals(rows, appended);
+            assertEquals(0, sink.getDiscardedRows());
+            assertEquals(0, spillFiles());
+        }
+    }
+
+    @Test
+    void nextSinkReplaysRowsSpilledAtClose() throws Exception {
+        failing = true;
+        List<List<Object>> rows = rows(0, 8);
+        SheetAppendSink first = newSink().setCloseTimeout(Duration.ofMillis(300)).start();
+        rows.forEach(first::append);
+        first.close();
+        assertEquals(8, first.getSpilledRows());
+        assertEquals(0, first.getDiscardedRows());
+        assertTrue(spillFiles() > 0);
+
+        failing = false;
+        List<List<Object>> more = rows(8, 2);
+        try (SheetAppendSink second = newSink().start()) {
+            more.forEach(second::append);
+
+            assertTrue(second.flush(TIMEOUT));
+            List<List<Object>> expected = new ArrayList<>(rows);
+            expected.addAll(more);
+            assertEquals(expected, appended);
+        }
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    void rejectsRowsOnceClosed() {
+        SheetAppendSink sink = newSink().start();
+        sink.close();
+
+        assertFalse(sink.append(List.of("late")));
+        assertEquals(1, sink.getDroppedRows());
+        assertEquals(0, sink.getQueuedRows());
+    }
+
+    @Test
+    void discardsBatchesTheApiRejectsAndSendsTheRest() throws Exception {
+        rejecting = true;
+        try (SheetAppendSink sink = newSink().setMaxBatchRows(3).start()) {
+            rows(0, 3).forEach(sink::append);
+            assertTrue(sink.flush(TIMEOUT));
+            assertEquals(3, sink.getDiscardedRows());
+
+            rejecting = false;
+            List<List<Object>> rows = rows(3, 2);
+            rows.forEach(sink::append);
+            assertTrue(sink.flush(TIMEOUT));
+            assertEquals(rows, appended);
+            assertEquals(2, sink.getAppendedRows());
+            assertEquals(1, server.getRequests().stream().filter(request -> request.path().endsWith(":append")
+                    && request.body().contains("event 0")).count());
+        }
+    }
+
+    @Test
+    void discardsSpilledRowsTheApiRejects() throws Exception {
+        failing = true;
+        try (SheetAppendSink sink = newSink().setMaxBatchRows(4).start()) {
+            rows(0, 4).forEach(sink::append);
+            awaitSpilled(sink, 4);
+
+            failing = false;
+            rejecting = true;
+            assertTrue(sink.flush(TIMEOUT));
+            assertEquals(4, sink.getDiscardedRows());
+            assertEquals(0, spillFiles());
+
+            rejecting = false;
+            List<List<Object>> rows = rows(4, 2);
+            rows.forEach(sink::append);
+            assertTrue(sink.flush(TIMEOUT));
+            assertEquals(rows, appended);
+        }
+    }
+
+    @Test
+    void rejectsNonFiniteNumbers() throws Exception {
+        try (SheetAppendSink sink = newSink().start()) {
+            assertThrows(IllegalArgumentException.class, () -> sink.append(List.of("event", Double.NaN)));
+            assertThrows(IllegalArgumentException.class, () -> sink.append(List.of(Float.NEGATIVE_INFINITY)));
+            assertTrue(sink.append(List.of("event", 1.5)));
+
+            assertTrue(sink.flush(TIMEOUT));
+            assertEquals(1, appended.size());
+        }
+    }
+
+    @Test
+    void discardsSpillFileWithMalformedNumberAndKeepsDraining() throws Exception {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(spillDirectory.resolve(String.format("%020d", 0) + ".spill")))) {
+            out.writeInt(0x53504C4C);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeByte(2);
+            byte[] text = "NaN".getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+        }
+        List<List<Object>> rows = rows(0, 3);
+        try (SheetAppendSink sink = newSink().start()) {
+            rows.forEach(sink::append);
+
+            assertTrue(sink.flush(TIMEOUT));
+            assertEquals(rows, appended);
+            assertEquals(1, sink.getDiscardedRows());
+        }
+        assertEquals(0, spillFiles());
+    }
+
+    private SheetAppendSink newSink() {
+        return new SheetAppendSink(clientProvider, "wb", "Events")
+                .setFlushInterval(Duration.ofMillis(10))
+                .setSpillDirectory(spillDirectory);
+    }
+
+    private static List<List<Object>> rows(int from, int count) {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int row = from; row < from + count; row++)
+            rows.add(List.of("event " + row, "payload " + row));
+        return rows;
+    }
+
+    private static void awaitSpilled(SheetAppendSink sink, long rows) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (sink.getSpilledRows() < rows && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(rows, sink.getSpilledRows());
+    }
+
+    private long spillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".spill")).count();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Hits, misses, revision checks and eviction of {@link SheetSnapshotCache}.
+ */
+class SheetSnapshotCacheTest {
+
+    private static final List<List<Object>> ROWS = List.of(
+            List.of("name", "count", "active"),
+            List.of("a", new BigDecimal("1"), true),
+            List.of("b", new BigDecimal("2.5"), false));
+
+    @TempDir
+    Path directory;
+
+    private FakeSheetsServer server;
+    private GoogleClientProvider clientProvider;
+    private volatile long version = 1;
+    private volatile String modifiedTime = "2024-01-01T00:00:00.000Z";
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSheetsServer(request -> {
+            if (request.path().startsWith("/drive/"))
+                return FakeSheetsServer.Response.ok("{\"version\":\"" + version + "\",\"modifiedTime\":\"" + modifiedTime + "\"}");
+            if (request.isValuesGet())
+                return FakeSheetsServer.Response.ok("{\"values\":[[\"name\",\"count\",\"active\"],[\"a\",1,true],[\"b\",2.5,false]]}");
+            return FakeSheetsServer.defaultResponse(request);
+        });
+        clientProvider = server.clientProvider();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void servesRepeatedReadsFromTheSnapshot() throws Exception {
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory);
+
+        assertEquals(ROWS, cache.read("wb", "Data", "A1:C3"));
+        assertEquals(1, valuesReads());
+        assertEquals(ROWS, cache.read("wb", "Data", "A1:C3"));
+
+        assertEquals(1, valuesReads());
+        assertEquals(2, revisionChecks());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void rereadsWhenTheVersionChanges() throws Exception {
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory);
+        cache.read("wb", "Data", "A1:C3");
+
+        version = 2;
+        cache.read("wb", "Data", "A1:C3");
+        cache.read("wb", "Data", "A1:C3");
+
+        assertEquals(2, valuesReads());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void rereadsWhenOnlyTheModifiedTimeChanges() throws Exception {
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory);
+        cache.read("wb", "Data", "A1:C3");
+
+        modifiedTime = "2024-01-02T00:00:00.000Z";
+        cache.read("wb", "Data", "A1:C3");
+
+        assertEquals(2, valuesReads());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void reusesRevisionChecksWithinTheInterval() throws Exception {
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory).setRevalidateInterval(Duration.ofMinutes(1));
+        cache.read("wb", "Data", "A1:C3");
+        cache.read("wb", "Data", "A1:C3");
+        cache.read("wb", "Data", "A1:C3");
+
+        assertEquals(1, revisionChecks());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedSnapshot() throws Exception {
+        long size = snapshotSize();
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory, size * 5 / 2);
+        cache.read("wb", "Data", "A1:C3");
+        cache.read("wb", "Data", "A1:C4");
+        cache.read("wb", "Data", "A1:C3");
+        cache.read("wb", "Data", "A1:C5");
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+        server.clearRequests();
+        cache.read("wb", "Data", "A1:C3");
+        cache.read("wb", "Data", "A1:C5");
+        assertEquals(0, valuesReads());
+        cache.read("wb", "Data", "A1:C4");
+        assertEquals(1, valuesReads());
+    }
+
+    @Test
+    void keepsSnapshotsAcrossInstances() throws Exception {
+        new SheetSnapshotCache(clientProvider, directory).read("wb", "Data", "A1:C3");
+        server.clearRequests();
+
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory);
+
+        assertEquals(1, cache.size());
+        assertEquals(ROWS, cache.read("wb", "Data", "A1:C3"));
+        assertEquals(0, valuesReads());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void invalidateDropsTheWorkbooksSnapshots() throws Exception {
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory);
+        cache.read("wb", "Data", "A1:C3");
+        cache.read("other", "Data", "A1:C3");
+
+        cache.invalidate("wb");
+
+        assertEquals(1, cache.size());
+        cache.read("wb", "Data", "A1:C3");
+        assertEquals(3, valuesReads());
+    }
+
+    @Test
+    void refusesSnapshotsAboveTheSizeLimit() throws Exception {
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory).setMaxSnapshotBytes(64);
+
+        assertEquals(ROWS, cache.read("wb", "Data", "A1:C3"));
+        assertEquals(ROWS, cache.read("wb", "Data", "A1:C3"));
+
+        assertEquals(2, valuesReads());
+        assertEquals(0, cache.size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void servesHitsAsReadOnlyRows() throws Exception {
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory);
+        cache.read("wb", "Data", "A1:C3");
+
+        List<List<Object>> rows = cache.read("wb", "Data", "A1:C3");
+
+        assertEquals(1, cache.getHits());
+        assertThrows(UnsupportedOperationException.class, () -> rows.add(List.of()));
+        assertThrows(UnsupportedOperationException.class, () -> rows.get(1).set(0, "changed"));
+    }
+
+    /**
+     * Size of one snapshot of the test rows, taken by a throwaway cache in its own directory.
+     */
+    private long snapshotSize() throws Exception {
+        SheetSnapshotCache cache = new SheetSnapshotCache(clientProvider, directory.resolve("probe"));
+        cache.read("wb", "Data", "A1:C3");
+        server.clearRequests();
+        return cache.getTotalBytes();
+    }
+
+    private long valuesReads() {
+        return server.getRequests().stream().filter(FakeSheetsServer.Request::isValuesGet).count();
+    }
+
+    private long revisionChecks() {
+        return server.getRequests().stream().filter(request -> request.path().startsWith("/drive/")).count();
+    }
+}
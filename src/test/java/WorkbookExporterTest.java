@@ -0,0 +1,160 @@
+import com.google.api.services.sheets.v4.model.GridProperties;
+import com.google.api.services.sheets.v4.model.Sheet;
+import com.google.api.services.sheets.v4.model.SheetProperties;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips of {@link WorkbookExporter}: columnar files read back with {@link WorkbookExporter#readColumnar(Path)}
+ * and CSV files checked byte for byte.
+ */
+class WorkbookExporterTest {
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, List<List<Object>>> sheets = new LinkedHashMap<>();
+    private FakeSheetsServer server;
+    private WorkbookExporter exporter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSheetsServer(request -> {
+            try {
+                if (request.isValuesGet())
+                    return valuesResponse(request.path().substring(request.path().indexOf("/values/") + 8));
+                if ("GET".equals(request.method()) && request.path().endsWith("/spreadsheets/wb"))
+                    return metadataResponse();
+                return FakeSheetsServer.defaultResponse(request);
+            }
+            catch (IOException e) {
+                return new FakeSheetsServer.Response(400, FakeSheetsServer.BAD_REQUEST_RESPONSE);
+            }
+        });
+        exporter = new WorkbookExporter(new GoogleSheetsUtil("test", server.clientProvider()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void columnarKeepsCellTypesAndRaggedRows() throws Exception {
+        List<List<Object>> rows = List.of(
+                List.of("name", "count", "active", "note"),
+                List.of("1", new BigDecimal("1"), true, ""),
+                List.of("true", new BigDecimal("1.50"), false),
+                List.of(),
+                List.of("1", new BigDecimal("-2E+3"), true, "x"),
+                List.of(true),
+                List.of("", "", "", "", "last"));
+        sheets.put("Data", rows);
+
+        WorkbookExporter.ExportResult result = exporter.setFormat(WorkbookExporter.Format.COLUMNAR).setWindowRows(3)
+                .export("wb", directory);
+
+        assertTrue(result.isComplete(), String.valueOf(result.getFailure()));
+        assertEquals(rows.size(), result.getRows());
+        assertEquals(rows, readColumnar("Data.cols"));
+    }
+
+    @Test
+    void columnarSharesDictionaryEntriesAndWritesLargeVarInts() throws Exception {
+        List<List<Object>> rows = new ArrayList<>();
+        String longText = "x".repeat(300);
+        for (int row = 0; row < 400; row++)
+            rows.add(List.of("value " + row, row % 2 == 0 ? "even" : "odd", new BigDecimal(row), longText));
+        sheets.put("Wide", rows);
+
+        WorkbookExporter.ExportResult result = exporter.setFormat(WorkbookExporter.Format.COLUMNAR).export("wb", directory);
+
+        assertTrue(result.isComplete(), String.valueOf(result.getFailure()));
+        assertEquals(rows, readColumnar("Wide.cols"));
+        long bytes = result.getSheets().get(0).getBytes();
+        assertTrue(bytes < rows.size() * longText.length() / 10, "repeated values share one dictionary entry, file was " + bytes + " bytes");
+    }
+
+    @Test
+    void exportsEmptySheets() throws Exception {
+        sheets.put("Empty", List.of());
+
+        WorkbookExporter.ExportResult columnar = exporter.setFormat(WorkbookExporter.Format.COLUMNAR).export("wb", directory);
+        WorkbookExporter.ExportResult csv = exporter.setFormat(WorkbookExporter.Format.CSV).export("wb", directory);
+
+        assertTrue(columnar.isComplete(), String.valueOf(columnar.getFailure()));
+        assertTrue(csv.isComplete(), String.valueOf(csv.getFailure()));
+        try (WorkbookExporter.ColumnarFileReader reader = WorkbookExporter.readColumnar(directory.resolve("Empty.cols"))) {
+            assertEquals("Empty", reader.getSheetName());
+            assertFalse(reader.hasNext());
+        }
+        assertEquals(0, Files.size(directory.resolve("Empty.csv")));
+    }
+
+    @Test
+    void csvQuotesFieldsHoldingTheCustomDelimiter() throws Exception {
+        sheets.put("Data", List.of(
+                List.of("a;b", "c,d", "say \"hi\"", "two\nlines"),
+                List.of(new BigDecimal("1E+3"), true, ""),
+                List.of(),
+                List.of("plain")));
+
+        WorkbookExporter.ExportResult result = exporter.setDelimiter(';').export("wb", directory);
+
+        assertTrue(result.isComplete(), String.valueOf(result.getFailure()));
+        assertEquals("\"a;b\";c,d;\"say \"\"hi\"\"\";\"two\nlines\"\r\n1000;true;\r\n\r\nplain\r\n",
+                Files.readString(directory.resolve("Data.csv")));
+    }
+
+    private List<List<Object>> readColumnar(String fileName) throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        try (WorkbookExporter.ColumnarFileReader reader = WorkbookExporter.readColumnar(directory.resolve(fileName))) {
+            assertEquals(fileName.substring(0, fileName.indexOf('.')), reader.getSheetName());
+            reader.forEachRemaining(rows::add);
+        }
+        return rows;
+    }
+
+    /**
+     * Every sheet with a grid one row taller than its data, so the exporter reads down to a trailing blank row.
+     */
+    private FakeSheetsServer.Response metadataResponse() throws IOException {
+        List<Sheet> sheetList = new ArrayList<>();
+        for (Map.Entry<String, List<List<Object>>> sheet : sheets.entrySet()) {
+            sheetList.add(new Sheet().setProperties(new SheetProperties()
+                    .setSheetId(sheetList.size())
+                    .setTitle(sheet.getKey())
+                    .setIndex(sheetList.size())
+                    .setGridProperties(new GridProperties().setRowCount(sheet.getValue().size() + 1).setColumnCount(26))));
+        }
+        return FakeSheetsServer.json(new Spreadsheet().setSheets(sheetList));
+    }
+
+    private FakeSheetsServer.Response valuesResponse(String a1) throws IOException {
+        A1Range range = A1Range.parse(a1);
+        List<List<Object>> rows = sheets.get(range.sheetName());
+        int from = Math.min(range.startRow() - 1, rows.size());
+        int to = Math.min(range.endRow(), rows.size());
+        ValueRange valueRange = new ValueRange().setRange(a1).setMajorDimension("ROWS");
+        if (from < to)
+            valueRange.setValues(rows.subList(from, to));
+        return FakeSheetsServer.json(valueRange);
+    }
+}